@@ -0,0 +1,53 @@
+package ru.nubowski.timeTracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the auto-stop of the ongoing tasks at the end of the day of their users.
+ * The properties are populated from the application properties file using the prefix "autostop".
+ */
+@Configuration
+@ConfigurationProperties(prefix = "autostop")
+public class AutoStopProperties {
+    private String cronExpression = "0 14,29,44,59 * * * ?";
+    private int windowMinutes = 15;
+
+    /**
+     * Returns the cron expression of the auto-stop runs, each of which stops the time zones at their end of day.
+     *
+     * @return the cron expression
+     */
+    public String getCronExpression() {
+        return cronExpression;
+    }
+
+    /**
+     * Sets the cron expression of the auto-stop runs.
+     *
+     * @param cronExpression the cron expression
+     */
+    public void setCronExpression(String cronExpression) {
+        this.cronExpression = cronExpression;
+    }
+
+    /**
+     * Returns the last minutes of a day during which a run stops the time zone, the interval of the runs,
+     * so each time zone is stopped by a single run a day. The segments of a day that has ended are stopped by any run,
+     * at the midnight that ended it.
+     *
+     * @return the window in minutes
+     */
+    public int getWindowMinutes() {
+        return windowMinutes;
+    }
+
+    /**
+     * Sets the last minutes of a day during which a run stops the time zone.
+     *
+     * @param windowMinutes the window in minutes, the interval of the runs
+     */
+    public void setWindowMinutes(int windowMinutes) {
+        this.windowMinutes = windowMinutes;
+    }
+}
@@ -10,8 +10,26 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 @ConfigurationProperties(prefix = "cleanup")
 public class CleanupProperties {
+    /**
+     * How old time logs are removed.
+     */
+    public enum Mode {
+        /**
+         * Old rows are deleted in chunks.
+         */
+        ROWS,
+        /**
+         * Monthly partitions entirely older than the cutoff are detached and dropped, the rest is deleted in chunks.
+         */
+        PARTITIONS
+    }
+
     private int retentionPeriod;
     private String cronExpression;
+    private int chunkSize = 5000;
+    private long chunkPauseMillis;
+    private int purgeThreads = 4;
+    private Mode mode = Mode.PARTITIONS;
 
     /**
      * Returns the configured retention period.
@@ -49,5 +67,75 @@ public class CleanupProperties {
         this.cronExpression = cronExpression;
     }
 
+    /**
+     * Returns the maximum number of rows deleted by a single statement (and transaction).
+     *
+     * @return the chunk size
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the maximum number of rows deleted by a single statement.
+     *
+     * @param chunkSize the chunk size
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the pause between two delete chunks, used to throttle the clean-up.
+     *
+     * @return the pause in milliseconds
+     */
+    public long getChunkPauseMillis() {
+        return chunkPauseMillis;
+    }
+
+    /**
+     * Sets the pause between two delete chunks.
+     *
+     * @param chunkPauseMillis the pause in milliseconds, 0 for none
+     */
+    public void setChunkPauseMillis(long chunkPauseMillis) {
+        this.chunkPauseMillis = chunkPauseMillis;
+    }
+
+    /**
+     * Returns the number of chunks of old users deleted at once, each on its own thread and connection.
+     *
+     * @return the number of purge threads
+     */
+    public int getPurgeThreads() {
+        return purgeThreads;
+    }
 
+    /**
+     * Sets the number of chunks of old users deleted at once.
+     *
+     * @param purgeThreads the number of purge threads, 1 to delete the chunks one after another
+     */
+    public void setPurgeThreads(int purgeThreads) {
+        this.purgeThreads = purgeThreads;
+    }
+
+    /**
+     * Returns how old time logs are removed.
+     *
+     * @return the clean-up mode
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets how old time logs are removed.
+     *
+     * @param mode the clean-up mode
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
 }
@@ -0,0 +1,51 @@
+package ru.nubowski.timeTracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the maintenance of the monthly time_logs partitions. The properties are populated
+ * from the application properties file using the prefix "partitions".
+ */
+@Configuration
+@ConfigurationProperties(prefix = "partitions")
+public class PartitionProperties {
+    private int monthsAhead = 3;
+    private String cronExpression = "0 0 1 * * ?";
+
+    /**
+     * Returns how many months after the current one must already have a partition.
+     *
+     * @return the number of months
+     */
+    public int getMonthsAhead() {
+        return monthsAhead;
+    }
+
+    /**
+     * Sets how many months after the current one must already have a partition.
+     *
+     * @param monthsAhead the number of months
+     */
+    public void setMonthsAhead(int monthsAhead) {
+        this.monthsAhead = monthsAhead;
+    }
+
+    /**
+     * Returns the cron expression for the scheduled creation of upcoming partitions.
+     *
+     * @return the cron expression
+     */
+    public String getCronExpression() {
+        return cronExpression;
+    }
+
+    /**
+     * Sets the cron expression for the scheduled creation of upcoming partitions.
+     *
+     * @param cronExpression the cron expression
+     */
+    public void setCronExpression(String cronExpression) {
+        this.cronExpression = cronExpression;
+    }
+}
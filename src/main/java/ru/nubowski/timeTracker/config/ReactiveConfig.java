@@ -0,0 +1,58 @@
+package ru.nubowski.timeTracker.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * The non-blocking stack of the reactive profile (application-reactive.properties): WebFlux on Netty, whose few
+ * event-loop threads hold any number of open connections, and R2DBC for the tracking statements.
+ * The JPA stack still starts alongside, for the scheduled jobs and the caches the transitions keep up to date.
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReactiveConfig {
+
+    /**
+     * The JDBC connection pool of the JPA stack, configured by spring.datasource.* as usual.
+     * Spring Boot backs off its own once there is an R2DBC connection factory.
+     *
+     * @param properties the data source properties
+     * @return the Hikari connection pool
+     */
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Serves the requests with Netty instead of Tomcat, which Spring Boot prefers while the servlet stack is
+     * on the classpath too.
+     *
+     * @return the reactive web server factory
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * The client the reactive repositories run their statements with.
+     *
+     * @param connectionFactory the R2DBC connection pool, configured by spring.r2dbc.*
+     * @return the database client
+     */
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+}
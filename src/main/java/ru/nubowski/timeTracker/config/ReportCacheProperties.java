@@ -0,0 +1,53 @@
+package ru.nubowski.timeTracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the cache of the reports over closed date ranges. The properties are populated
+ * from the application properties file using the prefix "reportcache".
+ */
+@Configuration
+@ConfigurationProperties(prefix = "reportcache")
+public class ReportCacheProperties {
+    private long maximumSize = 10_000;
+    private long expireAfterWriteSeconds = 86_400;
+
+    /**
+     * Returns the maximum number of cached reports, the least used ones are evicted beyond it.
+     *
+     * @return the maximum number of cached reports
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Sets the maximum number of cached reports, the least used ones are evicted beyond it.
+     *
+     * @param maximumSize the maximum number of cached reports
+     */
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Returns the time after which a cached report is computed again, the bound on changes the evictions miss
+     * (e.g. made by another instance of the application).
+     *
+     * @return the time in seconds
+     */
+    public long getExpireAfterWriteSeconds() {
+        return expireAfterWriteSeconds;
+    }
+
+    /**
+     * Sets the time after which a cached report is computed again, the bound on changes the evictions miss
+     * (e.g. made by another instance of the application).
+     *
+     * @param expireAfterWriteSeconds the time in seconds
+     */
+    public void setExpireAfterWriteSeconds(long expireAfterWriteSeconds) {
+        this.expireAfterWriteSeconds = expireAfterWriteSeconds;
+    }
+}
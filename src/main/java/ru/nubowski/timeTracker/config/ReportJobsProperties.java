@@ -0,0 +1,110 @@
+package ru.nubowski.timeTracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the asynchronous report jobs. The properties are populated from the application
+ * properties file using the prefix "reportjobs".
+ */
+@Configuration
+@ConfigurationProperties(prefix = "reportjobs")
+public class ReportJobsProperties {
+    private int threads = 2;
+    private int queueCapacity = 100;
+    private int maximumJobs = 1000;
+    private long retentionSeconds = 3600;
+    private String purgeCronExpression = "0 * * * * ?";
+
+    /**
+     * Returns the number of threads computing the reports, each holding a database connection while it does.
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads computing the reports, each holding a database connection while it does.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the number of jobs waiting for a thread, beyond which new jobs are rejected.
+     *
+     * @return the capacity of the queue
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the number of jobs waiting for a thread, beyond which new jobs are rejected.
+     *
+     * @param queueCapacity the capacity of the queue
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Returns the number of jobs kept at once, waiting, running or finished, beyond which new jobs are rejected.
+     * It bounds the memory held by the results.
+     *
+     * @return the maximum number of jobs
+     */
+    public int getMaximumJobs() {
+        return maximumJobs;
+    }
+
+    /**
+     * Sets the number of jobs kept at once, waiting, running or finished, beyond which new jobs are rejected.
+     * It bounds the memory held by the results.
+     *
+     * @param maximumJobs the maximum number of jobs
+     */
+    public void setMaximumJobs(int maximumJobs) {
+        this.maximumJobs = maximumJobs;
+    }
+
+    /**
+     * Returns how long a finished job and its result are kept for download.
+     *
+     * @return the time in seconds
+     */
+    public long getRetentionSeconds() {
+        return retentionSeconds;
+    }
+
+    /**
+     * Sets how long a finished job and its result are kept for download.
+     *
+     * @param retentionSeconds the time in seconds
+     */
+    public void setRetentionSeconds(long retentionSeconds) {
+        this.retentionSeconds = retentionSeconds;
+    }
+
+    /**
+     * Returns the cron expression of the purge of the finished jobs past their retention.
+     *
+     * @return the cron expression
+     */
+    public String getPurgeCronExpression() {
+        return purgeCronExpression;
+    }
+
+    /**
+     * Sets the cron expression of the purge of the finished jobs past their retention.
+     *
+     * @param purgeCronExpression the cron expression
+     */
+    public void setPurgeCronExpression(String purgeCronExpression) {
+        this.purgeCronExpression = purgeCronExpression;
+    }
+}
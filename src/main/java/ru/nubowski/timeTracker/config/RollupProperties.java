@@ -0,0 +1,51 @@
+package ru.nubowski.timeTracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the daily effort rollup. The properties are populated from the application
+ * properties file (or the command line) using the prefix "rollup".
+ */
+@Configuration
+@ConfigurationProperties(prefix = "rollup")
+public class RollupProperties {
+    private boolean rebuild;
+    private int rebuildThreads = 4;
+
+    /**
+     * Returns whether the rollup is rebuilt from the time logs on startup.
+     *
+     * @return true to rebuild
+     */
+    public boolean isRebuild() {
+        return rebuild;
+    }
+
+    /**
+     * Sets whether the rollup is rebuilt from the time logs on startup.
+     *
+     * @param rebuild true to rebuild
+     */
+    public void setRebuild(boolean rebuild) {
+        this.rebuild = rebuild;
+    }
+
+    /**
+     * Returns the number of months rebuilt in parallel.
+     *
+     * @return the number of threads
+     */
+    public int getRebuildThreads() {
+        return rebuildThreads;
+    }
+
+    /**
+     * Sets the number of months rebuilt in parallel.
+     *
+     * @param rebuildThreads the number of threads
+     */
+    public void setRebuildThreads(int rebuildThreads) {
+        this.rebuildThreads = rebuildThreads;
+    }
+}
@@ -0,0 +1,52 @@
+package ru.nubowski.timeTracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the locks of the scheduled jobs shared by all instances of the application.
+ * The properties are populated from the application properties file using the prefix "schedulerlock".
+ */
+@Configuration
+@ConfigurationProperties(prefix = "schedulerlock")
+public class SchedulerLockProperties {
+    private boolean enabled = true;
+    private long minimumHoldMillis = 30000;
+
+    /**
+     * Returns whether a run of a shared job takes its lock first, so a single instance runs it per trigger.
+     *
+     * @return true if the jobs are locked
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets whether a run of a shared job takes its lock first.
+     *
+     * @param enabled false to run the jobs on every instance
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the minimum time a lock is held from the start of a run, longer than the clocks of the instances
+     * may differ, so a quick run is not repeated by an instance whose trigger fires a little later.
+     *
+     * @return the minimum hold in milliseconds
+     */
+    public long getMinimumHoldMillis() {
+        return minimumHoldMillis;
+    }
+
+    /**
+     * Sets the minimum time a lock is held from the start of a run.
+     *
+     * @param minimumHoldMillis the minimum hold in milliseconds, 0 to release the lock as soon as the run ends
+     */
+    public void setMinimumHoldMillis(long minimumHoldMillis) {
+        this.minimumHoldMillis = minimumHoldMillis;
+    }
+}
@@ -0,0 +1,66 @@
+package ru.nubowski.timeTracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the threads running the requests and the background work. The properties are
+ * populated from the application properties file using the prefix "threads".
+ */
+@Configuration
+@ConfigurationProperties(prefix = "threads")
+public class ThreadsProperties {
+    /**
+     * Which threads run the requests, the scheduled jobs and the async work.
+     */
+    public enum Mode {
+        /**
+         * The pools of platform threads configured by Spring Boot (server.tomcat.threads.*, spring.task.*).
+         */
+        PLATFORM,
+        /**
+         * A virtual thread per request and per async task, scheduled jobs on virtual threads. Needs Java 21.
+         * The connection pool becomes the bound on the concurrent work instead of the thread count.
+         */
+        VIRTUAL
+    }
+
+    private Mode mode = Mode.PLATFORM;
+    private int schedulerPoolSize = 1;
+
+    /**
+     * Returns the mode of the threads.
+     *
+     * @return the mode
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets the mode of the threads.
+     *
+     * @param mode the mode
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Returns how many scheduled jobs may run at once in {@link Mode#VIRTUAL} mode.
+     *
+     * @return the number of scheduler threads
+     */
+    public int getSchedulerPoolSize() {
+        return schedulerPoolSize;
+    }
+
+    /**
+     * Sets how many scheduled jobs may run at once in {@link Mode#VIRTUAL} mode.
+     *
+     * @param schedulerPoolSize the number of scheduler threads
+     */
+    public void setSchedulerPoolSize(int schedulerPoolSize) {
+        this.schedulerPoolSize = schedulerPoolSize;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.nubowski.timeTracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the in-memory registry of the running task timers. The properties are populated
+ * from the application properties file using the prefix "timers".
+ */
+@Configuration
+@ConfigurationProperties(prefix = "timers")
+public class TimersProperties {
+    private String reconcileCronExpression = "0 * * * * ?";
+
+    /**
+     * Returns the cron expression for the scheduled reconciliation of the registry with the database.
+     *
+     * @return the cron expression
+     */
+    public String getReconcileCronExpression() {
+        return reconcileCronExpression;
+    }
+
+    /**
+     * Sets the cron expression for the scheduled reconciliation of the registry with the database.
+     *
+     * @param reconcileCronExpression the cron expression
+     */
+    public void setReconcileCronExpression(String reconcileCronExpression) {
+        this.reconcileCronExpression = reconcileCronExpression;
+    }
+}
@@ -0,0 +1,51 @@
+package ru.nubowski.timeTracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the consistency check of the running task totals. The properties are populated
+ * from the application properties file using the prefix "totals".
+ */
+@Configuration
+@ConfigurationProperties(prefix = "totals")
+public class TotalsProperties {
+    private String cronExpression = "0 30 2 * * ?";
+    private boolean repair = true;
+
+    /**
+     * Returns the cron expression for the scheduled consistency check.
+     *
+     * @return the cron expression
+     */
+    public String getCronExpression() {
+        return cronExpression;
+    }
+
+    /**
+     * Sets the cron expression for the scheduled consistency check.
+     *
+     * @param cronExpression the cron expression
+     */
+    public void setCronExpression(String cronExpression) {
+        this.cronExpression = cronExpression;
+    }
+
+    /**
+     * Returns whether mismatching totals are recomputed from the time logs, or only reported.
+     *
+     * @return true if they are repaired
+     */
+    public boolean isRepair() {
+        return repair;
+    }
+
+    /**
+     * Sets whether mismatching totals are recomputed from the time logs, or only reported.
+     *
+     * @param repair true to repair them
+     */
+    public void setRepair(boolean repair) {
+        this.repair = repair;
+    }
+}
@@ -0,0 +1,51 @@
+package ru.nubowski.timeTracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the cache of the users by username. The properties are populated
+ * from the application properties file using the prefix "usercache".
+ */
+@Configuration
+@ConfigurationProperties(prefix = "usercache")
+public class UserCacheProperties {
+    private long maximumSize = 10_000;
+    private long expireAfterWriteSeconds = 300;
+
+    /**
+     * Returns the maximum number of cached users, the least used ones are evicted beyond it.
+     *
+     * @return the maximum number of cached users
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Sets the maximum number of cached users, the least used ones are evicted beyond it.
+     *
+     * @param maximumSize the maximum number of cached users
+     */
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Returns the time after which a cached user is read again, the bound on how stale it can be.
+     *
+     * @return the time in seconds
+     */
+    public long getExpireAfterWriteSeconds() {
+        return expireAfterWriteSeconds;
+    }
+
+    /**
+     * Sets the time after which a cached user is read again, the bound on how stale it can be.
+     *
+     * @param expireAfterWriteSeconds the time in seconds
+     */
+    public void setExpireAfterWriteSeconds(long expireAfterWriteSeconds) {
+        this.expireAfterWriteSeconds = expireAfterWriteSeconds;
+    }
+}
@@ -0,0 +1,90 @@
+package ru.nubowski.timeTracker.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import ru.nubowski.timeTracker.util.VirtualThreads;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Runs the requests, the async work and the scheduled jobs on virtual threads, with {@code threads.mode=VIRTUAL}.
+ * Needs Java 21 at runtime (fails at startup otherwise), the code itself still targets Java 17.
+ * <p>
+ * Every request and every async task gets its own virtual thread, so the thread count no longer bounds the
+ * concurrent work: the connection pool does. Requests beyond it wait for a connection, at most
+ * spring.datasource.hikari.connection-timeout. Async tasks are limited to the size of the pool right away,
+ * they would only queue for its connections otherwise.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "threads", name = "mode", havingValue = "VIRTUAL")
+public class VirtualThreadsConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadsConfig.class);
+    /**
+     * Size of the connection pool assumed when it is not a Hikari pool, Hikari's default.
+     */
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    /**
+     * Hands the request processing of Tomcat to a virtual thread per task.
+     * Virtual threads are daemon threads, the executor needs no shutdown of its own.
+     *
+     * @param dataSource the data source, whose pool now bounds the concurrent requests
+     * @return the customizer of the Tomcat protocol handler
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsProtocolHandlerCustomizer(DataSource dataSource) {
+        LOGGER.info("Requests run on virtual threads, bounded by the {} connections of the pool", connectionPoolSize(dataSource));
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-vt-"));
+    }
+
+    /**
+     * The executor of the async work (and of Spring MVC async requests), a virtual thread per task,
+     * at most as many at once as there are connections in the pool.
+     *
+     * @param dataSource the data source, whose pool size is the limit
+     * @return the task executor
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public SimpleAsyncTaskExecutor applicationTaskExecutor(DataSource dataSource) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(VirtualThreads.factory("task-vt-"));
+        executor.setConcurrencyLimit(connectionPoolSize(dataSource));
+        return executor;
+    }
+
+    /**
+     * The scheduler of the {@code @Scheduled} jobs, its threads virtual.
+     *
+     * @param threadsProperties the properties giving the number of scheduler threads
+     * @return the task scheduler
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(ThreadsProperties threadsProperties) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(threadsProperties.getSchedulerPoolSize());
+        scheduler.setThreadFactory(VirtualThreads.factory("scheduling-vt-"));
+        return scheduler;
+    }
+
+    private static int connectionPoolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Can't read the size of the connection pool, assuming {}", DEFAULT_POOL_SIZE, e);
+        }
+        return DEFAULT_POOL_SIZE;
+    }
+}
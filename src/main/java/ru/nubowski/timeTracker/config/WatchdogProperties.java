@@ -0,0 +1,71 @@
+package ru.nubowski.timeTracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the watchdog auto-stopping the segments that run past their maximum length.
+ * The properties are populated from the application properties file using the prefix "watchdog".
+ */
+@Configuration
+@ConfigurationProperties(prefix = "watchdog")
+public class WatchdogProperties {
+    private boolean enabled = true;
+    private long tickMillis = 1000;
+    private int defaultMaxSegmentMinutes = 0;
+
+    /**
+     * Returns whether the watchdog auto-stops the segments running past their maximum length.
+     *
+     * @return true if the watchdog is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets whether the watchdog auto-stops the segments running past their maximum length.
+     *
+     * @param enabled false to leave the ongoing tasks to the end of day auto-stop
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the tick of the timing wheel of the watchdog, both the resolution of the deadlines and the delay
+     * between two advances of the wheel. Read once at startup.
+     *
+     * @return the tick in milliseconds
+     */
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Sets the tick of the timing wheel of the watchdog.
+     *
+     * @param tickMillis the tick in milliseconds
+     */
+    public void setTickMillis(long tickMillis) {
+        this.tickMillis = tickMillis;
+    }
+
+    /**
+     * Returns the maximum length of a segment of the tasks and users that have none of their own.
+     *
+     * @return the maximum in minutes, 0 for no maximum
+     */
+    public int getDefaultMaxSegmentMinutes() {
+        return defaultMaxSegmentMinutes;
+    }
+
+    /**
+     * Sets the maximum length of a segment of the tasks and users that have none of their own.
+     *
+     * @param defaultMaxSegmentMinutes the maximum in minutes, 0 for no maximum
+     */
+    public void setDefaultMaxSegmentMinutes(int defaultMaxSegmentMinutes) {
+        this.defaultMaxSegmentMinutes = defaultMaxSegmentMinutes;
+    }
+}
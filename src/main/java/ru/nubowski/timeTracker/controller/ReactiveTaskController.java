@@ -0,0 +1,98 @@
+package ru.nubowski.timeTracker.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import ru.nubowski.timeTracker.dto.response.TaskStateResponse;
+import ru.nubowski.timeTracker.service.impl.ReactiveTaskService;
+
+import java.time.Duration;
+
+/**
+ * Reactive counterpart of the tracking endpoints of {@link TaskController}, served by WebFlux in the reactive profile:
+ * same paths, same responses, same errors. The other endpoints are served by the servlet stack only.
+ */
+@RestController
+@RequestMapping("/tasks")
+@Profile("reactive")
+public class ReactiveTaskController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveTaskController.class);
+    private final ReactiveTaskService reactiveTaskService;
+
+    public ReactiveTaskController(ReactiveTaskService reactiveTaskService) {
+        this.reactiveTaskService = reactiveTaskService;
+    }
+
+    /**
+     * Starts the task with the given id.
+     *
+     * @param taskId the id of the task to start.
+     * @return the started task.
+     */
+    @PostMapping("/start/{taskId}")
+    public Mono<ResponseEntity<TaskStateResponse>> startTask(@PathVariable Long taskId) {
+        LOGGER.info("Received request to start task with id {}", taskId);
+        return reactiveTaskService.startTask(taskId)
+                .map(transition -> new ResponseEntity<>(new TaskStateResponse(transition), HttpStatus.CREATED));
+    }
+
+    /**
+     * Stops the task with the given id.
+     *
+     * @param taskId the id of the task to stop.
+     * @return the stopped task.
+     */
+    @PostMapping("/stop/{taskId}")
+    public Mono<ResponseEntity<TaskStateResponse>> stopTask(@PathVariable Long taskId) {
+        LOGGER.info("Received request to stop task with id {}", taskId);
+        return reactiveTaskService.stopTask(taskId)
+                .map(transition -> ResponseEntity.ok(new TaskStateResponse(transition)));
+    }
+
+    /**
+     * Pauses the task with the given id.
+     *
+     * @param taskId the id of the task to pause.
+     * @return the paused task.
+     */
+    @PostMapping("/pause/{taskId}")
+    public Mono<ResponseEntity<TaskStateResponse>> pauseTask(@PathVariable Long taskId) {
+        LOGGER.info("Received request to pause task with id {}", taskId);
+        return reactiveTaskService.pauseTask(taskId)
+                .map(transition -> ResponseEntity.ok(new TaskStateResponse(transition)));
+    }
+
+    /**
+     * Resumes the task with the given id.
+     *
+     * @param taskId the id of the task to resume.
+     * @return the resumed task.
+     */
+    @PostMapping("/resume/{taskId}")
+    public Mono<ResponseEntity<TaskStateResponse>> resumeTask(@PathVariable Long taskId) {
+        LOGGER.info("Received request to resume task with id {}", taskId);
+        return reactiveTaskService.resumeTask(taskId)
+                .map(transition -> ResponseEntity.ok(new TaskStateResponse(transition)));
+    }
+
+    /**
+     * Returns the time elapsed for the task with the given id.
+     *
+     * @param taskId the id of the task to retrieve time elapsed.
+     * @return the time elapsed for the task.
+     */
+    @GetMapping("/{taskId}/time_elapsed")
+    public Mono<ResponseEntity<Duration>> getTaskTimeElapsed(@PathVariable Long taskId) {
+        LOGGER.info("Received request to get time elapsed for task with id {}", taskId);
+        return reactiveTaskService.getTaskTimeElapsed(taskId)
+                .map(ResponseEntity::ok);
+    }
+}
@@ -0,0 +1,71 @@
+package ru.nubowski.timeTracker.controller;
+
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.nubowski.timeTracker.dto.request.ReportJobRequest;
+import ru.nubowski.timeTracker.dto.response.ReportJobResponse;
+import ru.nubowski.timeTracker.service.ReportJobService;
+
+import java.net.URI;
+
+/**
+ * Controller for the asynchronous report jobs, for date ranges too large to wait for.
+ */
+@RestController
+@RequestMapping("/reports")
+@Profile("!reactive")
+public class ReportController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportController.class);
+    private final ReportJobService reportJobService;
+
+    public ReportController(ReportJobService reportJobService) {
+        this.reportJobService = reportJobService;
+    }
+
+    /**
+     * Queues a report job.
+     *
+     * @param request the report (date_range or work_effort), the username and the parameters of the report.
+     * @return the queued job, with its location to poll.
+     */
+    @PostMapping
+    public ResponseEntity<ReportJobResponse> submitReport(@Valid @RequestBody ReportJobRequest request) {
+        LOGGER.info("Received request to queue a {} report of user {} from {} to {}",
+                request.getReport(), request.getUsername(), request.getStart(), request.getEnd());
+        ReportJobService.ReportJob job = reportJobService.submit(request);
+        return ResponseEntity.accepted()
+                .location(URI.create("/reports/" + job.getId()))
+                .body(new ReportJobResponse(job));
+    }
+
+    /**
+     * Returns a report job, with the report once it is done.
+     *
+     * @param id the id of the job.
+     * @return the job: 202 while it is queued or running, 200 once it is finished.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ReportJobResponse> getReport(@PathVariable String id) {
+        LOGGER.debug("Received request to get report job {}", id);
+        ReportJobService.ReportJob job = reportJobService.getJob(id);
+        HttpStatus status = job.isFinished() ? HttpStatus.OK : HttpStatus.ACCEPTED;
+        return new ResponseEntity<>(new ReportJobResponse(job), status);
+    }
+
+    /**
+     * Cancels a report job that is not finished yet, and drops the job and its result either way.
+     *
+     * @param id the id of the job.
+     * @return the job as it was left.
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<ReportJobResponse> cancelReport(@PathVariable String id) {
+        LOGGER.info("Received request to cancel report job {}", id);
+        return ResponseEntity.ok(new ReportJobResponse(reportJobService.cancel(id)));
+    }
+}
@@ -3,12 +3,17 @@ package ru.nubowski.timeTracker.controller;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.nubowski.timeTracker.dto.TaskToResponse;
+import ru.nubowski.timeTracker.dto.TaskTransition;
 import ru.nubowski.timeTracker.dto.request.TaskCreateRequest;
+import ru.nubowski.timeTracker.dto.request.TaskUpdateRequest;
+import ru.nubowski.timeTracker.dto.response.ActiveTimerResponse;
 import ru.nubowski.timeTracker.dto.response.TaskCreateResponse;
+import ru.nubowski.timeTracker.dto.response.TaskDetailsResponse;
 import ru.nubowski.timeTracker.dto.response.TaskStateResponse;
 import ru.nubowski.timeTracker.mapper.TaskMapper;
 import ru.nubowski.timeTracker.model.Task;
@@ -19,13 +24,14 @@ import ru.nubowski.timeTracker.service.impl.UserService;
 
 import java.time.Duration;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Controller for handling task related endpoints.
+ * Not in the reactive profile, where {@link ReactiveTaskController} serves the tracking endpoints.
  */
 @RestController
 @RequestMapping("/tasks")
+@Profile("!reactive")
 public class TaskController {
     private static final  Logger LOGGER = LoggerFactory.getLogger(TaskController.class);
     private final TaskMapper taskMapper;
@@ -40,35 +46,56 @@ public class TaskController {
         this.timeLogService = timeLogService;
     }
 
-    // seems lise useless as is. should to return .size()
     /**
-     * Returns all tasks.
+     * Returns one page of tasks ordered by id, optionally only the tasks of one user.
+     * The next page is requested with the id of the last task as {@code after}; a short page is the last one.
      *
-     * @return a list of all tasks.
+     * @param username the username to filter by, all users if absent.
+     * @param after the id of the last task of the previous page, absent for the first page.
+     * @param size the page size, at most 1000.
+     * @return a list of at most {@code size} tasks.
      */
     @GetMapping
-    public ResponseEntity<List<TaskToResponse>> getAllTasks() {
-        LOGGER.info("Received request to get all tasks");
-        List<Task> tasks = taskService.getAllTasks();
-        List<TaskToResponse> responses = tasks.stream()
-                .map(taskMapper::mapTaskToResponse)
-                .collect(Collectors.toList());
+    public ResponseEntity<List<TaskToResponse>> getAllTasks(
+            @RequestParam(value = "username", required = false) String username,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "size", required = false, defaultValue = "100") int size) {
+        LOGGER.info("Received request to get tasks of user {} after id {}", username, after);
+        List<TaskToResponse> responses = taskService.getTaskResponses(username, after, size);
         LOGGER.info("Responding with {} tasks", responses.size());
         return ResponseEntity.ok(responses);
     }
 
     /**
-     * Returns the task with the given id.
+     * Returns the running timers, optionally only those of one user, served from memory without the database.
+     *
+     * @param userId the id of the user to filter by, all users if absent.
+     * @return a list of the running timers ordered by task id.
+     */
+    @GetMapping("/active")
+    public ResponseEntity<List<ActiveTimerResponse>> getActiveTimers(
+            @RequestParam(value = "user_id", required = false) Long userId) {
+        LOGGER.info("Received request to get the active timers of user {}", userId);
+        List<ActiveTimerResponse> timers = taskService.getActiveTimers(userId);
+        LOGGER.info("Responding with {} active timers", timers.size());
+        return ResponseEntity.ok(timers);
+    }
+
+    /**
+     * Returns the task with the given id and its most recent time logs.
      *
      * @param id the id of the task to retrieve.
+     * @param logs the maximum number of recent time logs to include.
      * @return the task with the given id.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Task> getTask(@PathVariable Long id) {
+    public ResponseEntity<TaskDetailsResponse> getTask(@PathVariable Long id,
+                                                       @RequestParam(value = "logs", required = false, defaultValue = "20") int logs) {
         LOGGER.info("Received request to get task with id: {}", id);
-        Task task = taskService.getTask(id);
-        LOGGER.info("Responding with task: {}", task);
-        return ResponseEntity.ok(task);
+        Task task = taskService.getTaskWithUser(id);
+        List<TimeLog> recentTimeLogs = timeLogService.getRecentTimeLogsForTask(id, logs);
+        LOGGER.info("Responding with task {} and {} recent time logs", id, recentTimeLogs.size());
+        return ResponseEntity.ok(new TaskDetailsResponse(task, recentTimeLogs));
     }
 
     /**
@@ -98,7 +125,7 @@ public class TaskController {
      * @return the updated task.
      */
     @PutMapping("/{id}")
-    public ResponseEntity<TaskCreateResponse> updateTask(@PathVariable Long id, @RequestBody TaskCreateRequest request) {
+    public ResponseEntity<TaskCreateResponse> updateTask(@PathVariable Long id, @Valid @RequestBody TaskUpdateRequest request) {
         LOGGER.info("Received request to update task with id: {}", id);
         if (!taskService.taskIsPresent(id)) {
             LOGGER.error("Task not found with id: {}", id);
@@ -133,10 +160,9 @@ public class TaskController {
     public ResponseEntity<TaskStateResponse> startTask(@PathVariable Long taskId) {
         LOGGER.info("Received request to start task with id {}", taskId);
         try {
-            Task task = taskService.getTask(taskId);
-            TimeLog timeLog = taskService.startTask(task);
+            TaskTransition transition = taskService.startTask(taskId);
             LOGGER.info("Task with id {} has been started", taskId);  // don't think its necessary coz of custom ex, but just in case
-            TaskStateResponse responseDTO = new TaskStateResponse(timeLog);
+            TaskStateResponse responseDTO = new TaskStateResponse(transition);
             return new ResponseEntity<>(responseDTO, HttpStatus.CREATED);
         } catch (Exception e) {
             LOGGER.error("Error occurred while starting task with id {}", taskId, e);
@@ -153,10 +179,9 @@ public class TaskController {
     @PostMapping("/stop/{taskId}")
     public ResponseEntity<TaskStateResponse> stopTask(@PathVariable Long taskId) {
         LOGGER.info("Received request to stop task with id {}", taskId);
-        Task task = taskService.getTask(taskId);
-        TimeLog timeLog = taskService.stopTask(task);
+        TaskTransition transition = taskService.stopTask(taskId);
         LOGGER.info("Task with id {} has been stopped", taskId);
-        TaskStateResponse responseDTO = new TaskStateResponse(timeLog);
+        TaskStateResponse responseDTO = new TaskStateResponse(transition);
         return ResponseEntity.ok(responseDTO);
     }
 
@@ -169,10 +194,9 @@ public class TaskController {
     @PostMapping("/pause/{taskId}")
     public ResponseEntity<TaskStateResponse> pauseTask(@PathVariable Long taskId) {
         LOGGER.info("Received request to pause task with id {}", taskId);
-        Task task = taskService.getTask(taskId);
-        TimeLog timeLog = taskService.pauseTask(task);
+        TaskTransition transition = taskService.pauseTask(taskId);
         LOGGER.info("Task with id {} has been paused", taskId);
-        TaskStateResponse responseDTO = new TaskStateResponse(timeLog);
+        TaskStateResponse responseDTO = new TaskStateResponse(transition);
         return ResponseEntity.ok(responseDTO);
     }
 
@@ -185,10 +209,9 @@ public class TaskController {
     @PostMapping("/resume/{taskId}")
     public ResponseEntity<TaskStateResponse> resumeTask(@PathVariable Long taskId) {
         LOGGER.info("Received request to resume task with id {}", taskId);
-        Task task = taskService.getTask(taskId);
-        TimeLog timeLog = taskService.resumeTask(task);
+        TaskTransition transition = taskService.resumeTask(taskId);
         LOGGER.info("Task with id {} has been resumed", taskId);
-        TaskStateResponse responseDTO = new TaskStateResponse(timeLog);
+        TaskStateResponse responseDTO = new TaskStateResponse(transition);
         return ResponseEntity.ok(responseDTO);
     }
 
@@ -201,8 +224,7 @@ public class TaskController {
     @GetMapping("/{taskId}/time_elapsed")
     public ResponseEntity<Duration> getTaskTimeElapsed(@PathVariable Long taskId) {
         LOGGER.info("Received request to get time elapsed for task with id {}", taskId);
-        Task task = taskService.getTask(taskId);
-        Duration timeElapsed = timeLogService.getTaskTimeElapsed(task);
+        Duration timeElapsed = timeLogService.getTaskTimeElapsed(taskId);
         LOGGER.info("Time elapsed for task with id {} is {}", taskId, timeElapsed);
         return ResponseEntity.ok(timeElapsed);
     }
@@ -1,11 +1,18 @@
 package ru.nubowski.timeTracker.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.nubowski.timeTracker.dto.TimeLogCursor;
 import ru.nubowski.timeTracker.dto.response.TimeLogByIdResponse;
+import ru.nubowski.timeTracker.dto.response.TimeLogItemResponse;
+import ru.nubowski.timeTracker.dto.response.TimeLogPageResponse;
 import ru.nubowski.timeTracker.dto.response.TimeLogsByTaskResponse;
 import ru.nubowski.timeTracker.mapper.TimeLogMapper;
 import ru.nubowski.timeTracker.model.Task;
@@ -13,6 +20,9 @@ import ru.nubowski.timeTracker.model.TimeLog;
 import ru.nubowski.timeTracker.service.impl.TaskService;
 import ru.nubowski.timeTracker.service.impl.TimeLogService;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -21,29 +31,67 @@ import java.util.stream.Collectors;
  */
 @RestController
 @RequestMapping("/time_logs")
+@Profile("!reactive")
 public class TimeLogController {
     private static final Logger LOGGER = LoggerFactory.getLogger(TimeLogController.class);
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
     private final TimeLogMapper timeLogMapper;
     private final TimeLogService timeLogService;
     private final TaskService taskService;
+    private final ObjectMapper objectMapper;
 
-    public TimeLogController(TimeLogMapper timeLogMapper, TimeLogService timeLogService, TaskService taskService) {
+    public TimeLogController(TimeLogMapper timeLogMapper, TimeLogService timeLogService, TaskService taskService, ObjectMapper objectMapper) {
         this.timeLogMapper = timeLogMapper;
         this.timeLogService = timeLogService;
         this.taskService = taskService;
+        this.objectMapper = objectMapper;
     }
 
     /**
-     * Returns all time logs.
+     * Returns one page of time logs ordered by start time, using keyset (cursor) paging.
      *
-     * @return a list of all time logs.
+     * @param cursor the {@code nextCursor} of the previous page, omit for the first page.
+     * @param size the page size, at most {@link TimeLogService#MAX_PAGE_SIZE}.
+     * @return the page of time logs with the cursor of the next page.
      */
     @GetMapping
-    public ResponseEntity<List<TimeLog>> getAllTimeLogs() {
-        LOGGER.info("Received request to get all time logs");
-        List<TimeLog> timeLogs = timeLogService.getAllTimeLogs();
-        LOGGER.info("Responding with {} time logs", timeLogs.size());
-        return ResponseEntity.ok(timeLogs);
+    public ResponseEntity<TimeLogPageResponse> getTimeLogsPage(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false, defaultValue = "100") int size) {
+        LOGGER.info("Received request to get time logs page after cursor {} with size {}", cursor, size);
+        TimeLogCursor after = (cursor == null || cursor.isEmpty()) ? null : TimeLogCursor.decode(cursor);
+        List<TimeLog> timeLogs = timeLogService.getTimeLogsPage(after, size);
+        List<TimeLogItemResponse> items = timeLogs.stream()
+                .map(TimeLogItemResponse::new)
+                .collect(Collectors.toList());
+        String nextCursor = timeLogs.size() < TimeLogService.pageLimit(size)
+                ? null
+                : TimeLogCursor.after(timeLogs.get(timeLogs.size() - 1)).encode();
+        LOGGER.info("Responding with {} time logs", items.size());
+        return ResponseEntity.ok(new TimeLogPageResponse(items, nextCursor));
+    }
+
+    /**
+     * Streams all time logs as newline delimited JSON, one time log per line.
+     * Rows are written as they are read, so the first bytes go out immediately and memory stays flat.
+     *
+     * @return the streamed time logs.
+     */
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAllTimeLogs() {
+        LOGGER.info("Received request to stream all time logs");
+        StreamingResponseBody body = outputStream -> timeLogService.forEachTimeLog(timeLog ->
+                writeLine(outputStream, new TimeLogItemResponse(timeLog)));
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private void writeLine(OutputStream outputStream, Object item) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(item));
+            outputStream.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // client went away, abort the stream (and the transaction)
+        }
     }
 
     /**
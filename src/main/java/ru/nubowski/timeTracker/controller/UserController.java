@@ -7,25 +7,26 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.nubowski.timeTracker.dto.CachedReport;
+import ru.nubowski.timeTracker.dto.TaskToResponse;
 import ru.nubowski.timeTracker.dto.request.UserCreateRequest;
 import ru.nubowski.timeTracker.dto.request.UserUpdateRequest;
 import ru.nubowski.timeTracker.dto.response.UsersGetResponse;
 import ru.nubowski.timeTracker.mapper.UserMapper;
-import ru.nubowski.timeTracker.model.Task;
-import ru.nubowski.timeTracker.model.TimeLog;
+import ru.nubowski.timeTracker.model.TaskState;
 import ru.nubowski.timeTracker.model.User;
 import ru.nubowski.timeTracker.service.ProcessService;
-import ru.nubowski.timeTracker.service.impl.TimeLogService;
+import ru.nubowski.timeTracker.service.impl.ReportService;
+import ru.nubowski.timeTracker.service.impl.TaskService;
 import ru.nubowski.timeTracker.service.impl.UserService;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -33,18 +34,22 @@ import java.util.stream.Collectors;
  */
 @RestController
 @RequestMapping("/users")
+@Profile("!reactive")
 public class UserController {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserController.class);
     private final UserService userService;
     private final UserMapper userMapper;
     private final ProcessService processService;
-    private final TimeLogService timeLogService;
+    private final TaskService taskService;
+    private final ReportService reportService;
 
-    public UserController(UserService userService, UserMapper userMapper, ProcessService processService, TimeLogService timeLogService) {
+    public UserController(UserService userService, UserMapper userMapper, ProcessService processService,
+                          TaskService taskService, ReportService reportService) {
         this.userService = userService;
         this.userMapper = userMapper;
         this.processService = processService;
-        this.timeLogService = timeLogService;
+        this.taskService = taskService;
+        this.reportService = reportService;
     }
 
     /**
@@ -72,7 +77,7 @@ public class UserController {
     @GetMapping("/{username}")
     public ResponseEntity<User> getUser(@PathVariable String username) {
         LOGGER.info("Received request to get user with username: {}", username);
-        User user = userService.getUser(username);
+        User user = userService.getUserWithTasks(username);
         LOGGER.info("Responding with user {}", user);
         return ResponseEntity.ok(user);
     }
@@ -135,7 +140,7 @@ public class UserController {
     }
 
     /**
-     * Deletes the user and their tasks with the given username.
+     * Deletes the user and their tasks with the given username, in three set-based statements.
      *
      * @param username the username of the user and their tasks to be deleted.
      * @return a response entity with HTTP status 204.
@@ -143,8 +148,7 @@ public class UserController {
     @DeleteMapping("/{username}/delete")
     public ResponseEntity<Void> deleteUserAndTasks(@PathVariable String username) {
         LOGGER.info("Received request to delete user with username: {} and all the their tasks", username);
-        processService.deleteTimeLogsAndTasks(username);
-        userService.deleteUser(username); // doubt about double controller reset/delete, should be 1 with keys
+        processService.purgeUser(username);
         LOGGER.info("Deleted user with username: {} and all their tasks", username);
         return ResponseEntity.noContent().build(); // maybe add some feedback with string or 204 is enough
     }
@@ -160,19 +164,43 @@ public class UserController {
         LOGGER.info("Received request to delete user with username: {} and all the their tasks", username);
         processService.deleteTimeLogsAndTasks(username);
         LOGGER.info("Deleted user with username: {} and all their tasks", username);
-        User user = userService.getUser(username);
+        User user = userService.getUserWithTasks(username);
         return ResponseEntity.ok(user);
     }
 
+    /**
+     * Returns one page of the tasks of the user ordered by id, optionally only those in the given current state.
+     * The next page is requested with the id of the last task as {@code after}; a short page is the last one.
+     *
+     * @param username the username of the user.
+     * @param state the current state to filter by, e.g. ONGOING for the running tasks; all tasks if absent.
+     * @param after the id of the last task of the previous page, absent for the first page.
+     * @param size the page size, at most 1000.
+     * @return a list of at most {@code size} tasks.
+     */
+    @GetMapping("/{username}/tasks")
+    public ResponseEntity<List<TaskToResponse>> getTasksByState(
+            @PathVariable String username,
+            @RequestParam(value = "state", required = false) TaskState state,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "size", required = false, defaultValue = "100") int size) {
+        LOGGER.info("Received request to get tasks of user {} in state {} after id {}", username, state, after);
+        User user = userService.getUser(username);
+        List<TaskToResponse> responses = taskService.getTaskResponsesByState(user, state, after, size);
+        LOGGER.info("Responding with {} tasks of user {}", responses.size(), username);
+        return ResponseEntity.ok(responses);
+    }
+
     /**
      * Returns the time logs of the user within the given date range.
+     * A range ending in the past is answered from the report cache, with a strong ETag.
      *
      * @param username the username of the user.
      * @param start the start date of the range.
      * @param end the end date of the range.
      * @param sort the sort order of the time logs.
      * @param output the output format of the time logs.
-     * @return a list of time logs of the user within the given date range.
+     * @return a list of time logs of the user within the given date range, or 304 if it matches the If-None-Match header.
      */
     @GetMapping("/{username}/time_logs/date_range")
     public ResponseEntity<List<String>> getTimeLogsByUserAndDateRange(
@@ -184,20 +212,19 @@ public class UserController {
 
         LOGGER.info("Fetching time logs for user {} in date range from {} to {}", username, start, end);
         User user = userService.getUser(username);
-        List<TimeLog> timeLogs = timeLogService.getTimeLogsByUserAndDateRange(user, start, end);
-        List<Map.Entry<Task, Long>> sortedTimeLogs = timeLogService.sortTimeLogs(timeLogs, sort, end);
-        List<String> formattedTimeLogs = timeLogService.formatTimeLogs(timeLogs, sortedTimeLogs, output);
-        LOGGER.info("Fetched {} time logs for user {} in date range from {} to {}", formattedTimeLogs.size(), username, start, end);
-        return ResponseEntity.ok(formattedTimeLogs);
+        CachedReport<List<String>> report = reportService.getTimeLogsReport(user, start, end, sort, output);
+        LOGGER.info("Fetched {} time logs for user {} in date range from {} to {}", report.getBody().size(), username, start, end);
+        return withETag(report);
     }
 
     /**
      * Returns the total work effort of the user within the given date range.
+     * A range ending in the past is answered from the report cache, with a strong ETag.
      *
      * @param username the username of the user.
      * @param start the start date of the range.
      * @param end the end date of the range.
-     * @return the total work effort of the user within the given date range.
+     * @return the total work effort of the user within the given date range, or 304 if it matches the If-None-Match header.
      */
     @GetMapping("{username}/work_effort")
     public ResponseEntity<String> getTotalWorkEffortByUserAndDateRange(
@@ -211,10 +238,19 @@ public class UserController {
 
         LOGGER.info("Calculating total work effort for user {} in date range from {} to {}", username, start, end);
         User user = userService.getUser(username);
-        Duration totalWorkEffort = timeLogService.getTotalWorkEffortByUserAndDataRange(user, start, end);
-        String formattedTotalWorkEffort = String.format("%02d:%02d", totalWorkEffort.toHours(), totalWorkEffort.toMinutesPart());
-        LOGGER.info("Total work effort for user {} in date range from {} to {} is {}", username, start, end, formattedTotalWorkEffort);
-        return ResponseEntity.ok(formattedTotalWorkEffort);
+        CachedReport<String> report = reportService.getWorkEffortReport(user, start, end);
+        LOGGER.info("Total work effort for user {} in date range from {} to {} is {}", username, start, end, report.getBody());
+        return withETag(report);
+    }
+
+    /**
+     * Answers with the report and its ETag, if it has one. Spring answers 304 instead when it matches If-None-Match.
+     */
+    private static <T> ResponseEntity<T> withETag(CachedReport<T> report) {
+        if (report.getETag() == null) {
+            return ResponseEntity.ok(report.getBody());
+        }
+        return ResponseEntity.ok().eTag(report.getETag()).body(report.getBody());
     }
 
 }
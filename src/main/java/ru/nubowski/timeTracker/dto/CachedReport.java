@@ -0,0 +1,29 @@
+package ru.nubowski.timeTracker.dto;
+
+/**
+ * A report body together with the strong ETag of its JSON representation.
+ *
+ * @param <T> the type of the body
+ */
+public class CachedReport<T> {
+    private final T body;
+    private final String eTag;
+
+    public CachedReport(T body, String eTag) {
+        this.body = body;
+        this.eTag = eTag;
+    }
+
+    public T getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the ETag of the report, null if the report covers a range that is not closed yet and is not cached.
+     *
+     * @return the ETag, without quotes, or null
+     */
+    public String getETag() {
+        return eTag;
+    }
+}
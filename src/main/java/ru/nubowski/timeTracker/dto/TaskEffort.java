@@ -0,0 +1,12 @@
+package ru.nubowski.timeTracker.dto;
+
+/**
+ * Projection of one row of the per-task effort report: a task and the seconds spent on it within a date range.
+ */
+public interface TaskEffort {
+    Long getTaskId();
+
+    String getTaskName();
+
+    Long getSeconds();
+}
@@ -0,0 +1,43 @@
+package ru.nubowski.timeTracker.dto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Projection of the timer of a task: its owner and running totals, as of a version of the task row.
+ * The timer is running while the task has an open segment.
+ */
+public interface TaskTimer extends TaskTotals {
+    Long getTaskId();
+
+    Long getUserId();
+
+    long getVersion();
+
+    /**
+     * Returns the maximum length of a segment of the task: its own, else its user's.
+     *
+     * @return the maximum in minutes, null if neither the task nor its user has one
+     */
+    Integer getMaxSegmentMinutes();
+
+    /**
+     * Returns whether the task has an open segment.
+     *
+     * @return true if the timer is running
+     */
+    default boolean isRunning() {
+        return getOpenSegmentStart() != null;
+    }
+
+    /**
+     * Returns the time elapsed on the task: its closed total plus the open segment up to now.
+     *
+     * @param now the end of the open segment
+     * @return the time elapsed
+     */
+    default Duration getElapsed(LocalDateTime now) {
+        Duration closed = Duration.ofMillis(getClosedMillis());
+        return isRunning() ? closed.plus(Duration.between(getOpenSegmentStart(), now)) : closed;
+    }
+}
@@ -1,6 +1,7 @@
 package ru.nubowski.timeTracker.dto;
 
 import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TaskState;
 
 import java.time.LocalDateTime;
 
@@ -13,6 +14,20 @@ public class TaskToResponse {
     private String description;
     private LocalDateTime createdAt;
     private String username;
+    private TaskState state;
+
+    /**
+     * Constructor used by the JPQL projection of the task listing, filled straight from the joined columns.
+     */
+    public TaskToResponse(Long id, String name, String description, LocalDateTime createdAt, String username,
+                          TaskState state) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.createdAt = createdAt;
+        this.username = username;
+        this.state = state;
+    }
 
     // BIG NAMING QUESTION. it's a DTO for GET all tasks... and should be different with GET one exactly task, but naming
     public TaskToResponse(Task task) {
@@ -21,6 +36,7 @@ public class TaskToResponse {
         this.description = task.getDescription();
         this.createdAt = task.getCreatedAt();
         this.username = task.getUser().getUsername();
+        this.state = task.getCurrentState();
     }
 
     public Long getId() {
@@ -62,4 +78,12 @@ public class TaskToResponse {
     public void setUsername(String username) {
         this.username = username;
     }
+
+    public TaskState getState() {
+        return state;
+    }
+
+    public void setState(TaskState state) {
+        this.state = state;
+    }
 }
\ No newline at end of file
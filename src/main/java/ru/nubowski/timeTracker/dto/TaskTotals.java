@@ -0,0 +1,12 @@
+package ru.nubowski.timeTracker.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of the running totals of a task: the milliseconds of its closed time logs and the start of its open one.
+ */
+public interface TaskTotals {
+    long getClosedMillis();
+
+    LocalDateTime getOpenSegmentStart();
+}
@@ -0,0 +1,26 @@
+package ru.nubowski.timeTracker.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of a task whose running totals or current state differ from its time logs: the stored and the recomputed values.
+ */
+public interface TaskTotalsMismatch {
+    Long getTaskId();
+
+    long getClosedMillis();
+
+    long getExpectedClosedMillis();
+
+    LocalDateTime getOpenSegmentStart();
+
+    LocalDateTime getExpectedOpenSegmentStart();
+
+    String getCurrentState();
+
+    String getExpectedCurrentState();
+
+    Long getCurrentLogId();
+
+    Long getExpectedCurrentLogId();
+}
@@ -0,0 +1,19 @@
+package ru.nubowski.timeTracker.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of the time log written by a task state transition, with the name of its task
+ * and the timer of the task as the transition left it.
+ */
+public interface TaskTransition extends TaskTimer {
+    Long getId();
+
+    String getTaskName();
+
+    LocalDateTime getStartTime();
+
+    LocalDateTime getEndTime();
+
+    String getTaskState();
+}
@@ -0,0 +1,74 @@
+package ru.nubowski.timeTracker.dto;
+
+import ru.nubowski.timeTracker.exception.InvalidCursorException;
+import ru.nubowski.timeTracker.model.TimeLog;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for paging through time logs ordered by (start time, id).
+ * Encoded as url-safe base64 so clients just pass it back as is.
+ */
+public class TimeLogCursor {
+    private static final String SEPARATOR = "|";
+    private final LocalDateTime startTime;
+    private final Long id;
+
+    public TimeLogCursor(LocalDateTime startTime, Long id) {
+        this.startTime = startTime;
+        this.id = id;
+    }
+
+    /**
+     * Builds a cursor pointing right after the given time log.
+     *
+     * @param timeLog the last time log of the current page
+     * @return the cursor for the next page
+     */
+    public static TimeLogCursor after(TimeLog timeLog) {
+        return new TimeLogCursor(timeLog.getStartTime(), timeLog.getId());
+    }
+
+    /**
+     * Decodes a cursor previously returned by {@link #encode()}.
+     *
+     * @param value the encoded cursor
+     * @return the decoded cursor
+     * @throws InvalidCursorException if the value is not a valid cursor
+     */
+    public static TimeLogCursor decode(String value) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new InvalidCursorException(value);
+            }
+            return new TimeLogCursor(
+                    LocalDateTime.parse(decoded.substring(0, separator)),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) { // NumberFormatException is IAE too
+            throw new InvalidCursorException(value);
+        }
+    }
+
+    /**
+     * Encodes the cursor to the opaque string handed out to clients.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        String raw = startTime + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.nubowski.timeTracker.dto;
+
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TimeLog;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of the stored segment of a time log: its task and period as they are in the database,
+ * whatever a managed instance of the time log holds in the meantime.
+ */
+public interface TimeLogSegment {
+    Long getTaskId();
+
+    LocalDateTime getStartTime();
+
+    LocalDateTime getEndTime();
+
+    /**
+     * Returns the segment as a detached time log, only its task id and period set.
+     *
+     * @return the time log
+     */
+    default TimeLog toTimeLog() {
+        Task task = new Task();
+        task.setId(getTaskId());
+        TimeLog timeLog = new TimeLog();
+        timeLog.setTask(task);
+        timeLog.setStartTime(getStartTime());
+        timeLog.setEndTime(getEndTime());
+        return timeLog;
+    }
+}
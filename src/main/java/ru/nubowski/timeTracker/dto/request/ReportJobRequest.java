@@ -0,0 +1,77 @@
+package ru.nubowski.timeTracker.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for submitting a report job, with the parameters of the synchronous report endpoints of the users.
+ */
+public class ReportJobRequest {
+    @NotBlank(message = "Report is required")
+    @Pattern(regexp = "date_range|work_effort", message = "Report must be date_range or work_effort")
+    private String report;
+
+    @NotBlank(message = "Username is required")
+    private String username;
+
+    @NotNull(message = "Start is required")
+    private LocalDateTime start;
+
+    @NotNull(message = "End is required")
+    private LocalDateTime end;
+
+    private String sort = "duration";
+
+    private String output = "duration";
+
+    public String getReport() {
+        return report;
+    }
+
+    public void setReport(String report) {
+        this.report = report;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public void setStart(LocalDateTime start) {
+        this.start = start;
+    }
+
+    public LocalDateTime getEnd() {
+        return end;
+    }
+
+    public void setEnd(LocalDateTime end) {
+        this.end = end;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = output;
+    }
+}
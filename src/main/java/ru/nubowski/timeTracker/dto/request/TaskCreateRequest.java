@@ -1,6 +1,7 @@
 package ru.nubowski.timeTracker.dto.request;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 
 /**
  * DTO for creating a task.
@@ -12,6 +13,9 @@ public class TaskCreateRequest {
     @NotBlank(message = "Description is required")
     private String description;
 
+    @Positive(message = "Maximum segment length must be positive")
+    private Integer maxSegmentMinutes;
+
     public String getName() {
         return name;
     }
@@ -27,5 +31,13 @@ public class TaskCreateRequest {
     public void setDescription(String description) {
         this.description = description;
     }
+
+    public Integer getMaxSegmentMinutes() {
+        return maxSegmentMinutes;
+    }
+
+    public void setMaxSegmentMinutes(Integer maxSegmentMinutes) {
+        this.maxSegmentMinutes = maxSegmentMinutes;
+    }
 }
 
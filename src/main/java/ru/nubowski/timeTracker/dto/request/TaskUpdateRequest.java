@@ -0,0 +1,43 @@
+package ru.nubowski.timeTracker.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.PositiveOrZero;
+
+/**
+ * DTO for updating a task.
+ * A left out maximum segment length keeps the current one, 0 clears it.
+ */
+public class TaskUpdateRequest {
+    @NotBlank(message = "Task name is required")
+    private String name;
+
+    @NotBlank(message = "Description is required")
+    private String description;
+
+    @PositiveOrZero(message = "Maximum segment length must be positive, or 0 to clear it")
+    private Integer maxSegmentMinutes;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Integer getMaxSegmentMinutes() {
+        return maxSegmentMinutes;
+    }
+
+    public void setMaxSegmentMinutes(Integer maxSegmentMinutes) {
+        this.maxSegmentMinutes = maxSegmentMinutes;
+    }
+}
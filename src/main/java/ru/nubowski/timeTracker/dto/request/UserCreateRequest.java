@@ -2,6 +2,7 @@ package ru.nubowski.timeTracker.dto.request;
 
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 
 /**
  * DTO for creating a user.
@@ -14,6 +15,9 @@ public class UserCreateRequest {
     private String email;
     @NotBlank(message = "Display name is required")
     private String displayName;
+    private String timeZone;
+    @Positive(message = "Maximum segment length must be positive")
+    private Integer maxSegmentMinutes;
 
     public String getUsername() {
         return username;
@@ -38,4 +42,20 @@ public class UserCreateRequest {
     public void setDisplayName(String displayName) {
         this.displayName = displayName;
     }
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public Integer getMaxSegmentMinutes() {
+        return maxSegmentMinutes;
+    }
+
+    public void setMaxSegmentMinutes(Integer maxSegmentMinutes) {
+        this.maxSegmentMinutes = maxSegmentMinutes;
+    }
 }
@@ -1,14 +1,19 @@
 package ru.nubowski.timeTracker.dto.request;
 
 import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.PositiveOrZero;
 
 /**
  * DTO for updating a user.
+ * A left out maximum segment length keeps the current one, 0 clears it.
  */
 public class UserUpdateRequest {
     @Email(message = "Invalid email format")
     private String email;
     private String displayName;
+    private String timeZone;
+    @PositiveOrZero(message = "Maximum segment length must be positive, or 0 to clear it")
+    private Integer maxSegmentMinutes;
 
     public String getEmail() {
         return email;
@@ -25,5 +30,20 @@ public class UserUpdateRequest {
     public void setDisplayName(String displayName) {
         this.displayName = displayName;
     }
-}
 
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public Integer getMaxSegmentMinutes() {
+        return maxSegmentMinutes;
+    }
+
+    public void setMaxSegmentMinutes(Integer maxSegmentMinutes) {
+        this.maxSegmentMinutes = maxSegmentMinutes;
+    }
+}
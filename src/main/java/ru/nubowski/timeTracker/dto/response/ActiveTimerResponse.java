@@ -0,0 +1,56 @@
+package ru.nubowski.timeTracker.dto.response;
+
+import ru.nubowski.timeTracker.dto.TaskTimer;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * DTO for response containing a running timer: the task, its owner, the start of its open segment
+ * and the time elapsed on the task so far.
+ */
+public class ActiveTimerResponse {
+    private Long taskId;
+    private Long userId;
+    private LocalDateTime startedAt;
+    private Duration timeElapsed;
+
+    public ActiveTimerResponse(TaskTimer timer, LocalDateTime now) {
+        this.taskId = timer.getTaskId();
+        this.userId = timer.getUserId();
+        this.startedAt = timer.getOpenSegmentStart();
+        this.timeElapsed = timer.getElapsed(now);
+    }
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(Long taskId) {
+        this.taskId = taskId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Duration getTimeElapsed() {
+        return timeElapsed;
+    }
+
+    public void setTimeElapsed(Duration timeElapsed) {
+        this.timeElapsed = timeElapsed;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.nubowski.timeTracker.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import ru.nubowski.timeTracker.service.ReportJobService;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for response containing the state of a report job, and its result once it is done.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReportJobResponse {
+    private final String id;
+    private final String report;
+    private final String username;
+    private final String status;
+    private final LocalDateTime submittedAt;
+    private final LocalDateTime finishedAt;
+    private final Object result;
+    private final String error;
+
+    public ReportJobResponse(ReportJobService.ReportJob job) {
+        this.id = job.getId();
+        this.report = job.getReport();
+        this.username = job.getUsername();
+        this.status = job.getStatus().name();
+        this.submittedAt = job.getSubmittedAt();
+        this.finishedAt = job.getFinishedAt();
+        this.result = job.getResult();
+        this.error = job.getError();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getReport() {
+        return report;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Returns the report, as the synchronous endpoint answers it: a list of lines for date_range, "hh:mm" for work_effort.
+     *
+     * @return the report, null unless the job is done
+     */
+    public Object getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
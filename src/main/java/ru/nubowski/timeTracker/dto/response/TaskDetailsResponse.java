@@ -0,0 +1,89 @@
+package ru.nubowski.timeTracker.dto.response;
+
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TaskState;
+import ru.nubowski.timeTracker.model.TimeLog;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for response when getting one task, with a bounded page of its most recent time logs instead of the whole history.
+ */
+public class TaskDetailsResponse {
+    private Long id;
+    private String name;
+    private String description;
+    private LocalDateTime createdAt;
+    private String username;
+    private TaskState state;
+    private List<TimeLogItemResponse> recentTimeLogs;
+
+    public TaskDetailsResponse(Task task, List<TimeLog> recentTimeLogs) {
+        this.id = task.getId();
+        this.name = task.getName();
+        this.description = task.getDescription();
+        this.createdAt = task.getCreatedAt();
+        this.username = task.getUser().getUsername();
+        this.state = task.getCurrentState();
+        this.recentTimeLogs = recentTimeLogs.stream()
+                .map(TimeLogItemResponse::new)
+                .toList();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public TaskState getState() {
+        return state;
+    }
+
+    public void setState(TaskState state) {
+        this.state = state;
+    }
+
+    public List<TimeLogItemResponse> getRecentTimeLogs() {
+        return recentTimeLogs;
+    }
+
+    public void setRecentTimeLogs(List<TimeLogItemResponse> recentTimeLogs) {
+        this.recentTimeLogs = recentTimeLogs;
+    }
+}
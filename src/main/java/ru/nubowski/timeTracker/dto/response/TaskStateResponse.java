@@ -1,5 +1,6 @@
 package ru.nubowski.timeTracker.dto.response;
 
+import ru.nubowski.timeTracker.dto.TaskTransition;
 import ru.nubowski.timeTracker.model.TimeLog;
 
 import java.time.LocalDateTime;
@@ -22,6 +23,14 @@ public class TaskStateResponse {
         this.taskState = timeLog.getTaskState().name();
     }
 
+    public TaskStateResponse (TaskTransition transition) {
+        this.taskId = transition.getTaskId();
+        this.taskName = transition.getTaskName();
+        this.startedAt = transition.getStartTime();
+        this.stoppedAt = transition.getEndTime();
+        this.taskState = transition.getTaskState();
+    }
+
     public Long getTaskId() {
         return taskId;
     }
@@ -0,0 +1,65 @@
+package ru.nubowski.timeTracker.dto.response;
+
+import ru.nubowski.timeTracker.model.TimeLog;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for a single time log in paged and streamed listings.
+ * Carries only the task id, so the task itself is never loaded.
+ */
+public class TimeLogItemResponse {
+    private Long id;
+    private Long taskId;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private String taskState;
+
+    public TimeLogItemResponse(TimeLog timeLog) {
+        this.id = timeLog.getId();
+        this.taskId = timeLog.getTask().getId(); // proxy id, no select
+        this.startTime = timeLog.getStartTime();
+        this.endTime = timeLog.getEndTime();
+        this.taskState = timeLog.getTaskState() != null ? timeLog.getTaskState().name() : null;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(Long taskId) {
+        this.taskId = taskId;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+
+    public String getTaskState() {
+        return taskState;
+    }
+
+    public void setTaskState(String taskState) {
+        this.taskState = taskState;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.nubowski.timeTracker.dto.response;
+
+import java.util.List;
+
+/**
+ * DTO for one keyset page of time logs.
+ * {@code nextCursor} is null when there are no more pages.
+ */
+public class TimeLogPageResponse {
+    private List<TimeLogItemResponse> items;
+    private String nextCursor;
+
+    public TimeLogPageResponse(List<TimeLogItemResponse> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<TimeLogItemResponse> getItems() {
+        return items;
+    }
+
+    public void setItems(List<TimeLogItemResponse> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -12,6 +12,8 @@ public class UsersGetResponse {
     private String username;
     private String mail;
     private String displayName;
+    private String timeZone;
+    private Integer maxSegmentMinutes;
 
     private LocalDateTime createdAt;
 
@@ -20,6 +22,8 @@ public class UsersGetResponse {
         this.username = user.getUsername();
         this.mail = user.getEmail();
         this.displayName = user.getDisplayName();
+        this.timeZone = user.getTimeZone();
+        this.maxSegmentMinutes = user.getMaxSegmentMinutes();
         this.createdAt = user.getCreatedAt();
     }
 
@@ -63,4 +67,20 @@ public class UsersGetResponse {
         this.displayName = displayName;
     }
 
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public Integer getMaxSegmentMinutes() {
+        return maxSegmentMinutes;
+    }
+
+    public void setMaxSegmentMinutes(Integer maxSegmentMinutes) {
+        this.maxSegmentMinutes = maxSegmentMinutes;
+    }
+
 }
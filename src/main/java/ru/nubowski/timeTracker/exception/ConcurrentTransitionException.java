@@ -0,0 +1,7 @@
+package ru.nubowski.timeTracker.exception;
+
+public class ConcurrentTransitionException extends RuntimeException{
+    public ConcurrentTransitionException(Long taskId, int attempts) {
+        super("Task with ID " + taskId + " kept changing concurrently, gave up after " + attempts + " attempts");
+    }
+}
@@ -0,0 +1,7 @@
+package ru.nubowski.timeTracker.exception;
+
+public class InvalidTimeZoneException extends RuntimeException{
+    public InvalidTimeZoneException(String timeZone) {
+        super("Invalid time zone: " + timeZone);
+    }
+}
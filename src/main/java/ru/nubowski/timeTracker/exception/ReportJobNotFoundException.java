@@ -0,0 +1,7 @@
+package ru.nubowski.timeTracker.exception;
+
+public class ReportJobNotFoundException extends RuntimeException{
+    public ReportJobNotFoundException(String id) {
+        super("Report job with ID " + id + " not found, or its result is no longer kept");
+    }
+}
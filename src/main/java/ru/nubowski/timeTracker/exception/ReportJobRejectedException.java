@@ -0,0 +1,7 @@
+package ru.nubowski.timeTracker.exception;
+
+public class ReportJobRejectedException extends RuntimeException{
+    public ReportJobRejectedException(String reason) {
+        super("Report job rejected: " + reason + ", try again later");
+    }
+}
@@ -0,0 +1,7 @@
+package ru.nubowski.timeTracker.exception;
+
+public class TaskAlreadyStartedException extends RuntimeException{
+    public TaskAlreadyStartedException(Long taskId) {
+        super("Task with ID " + taskId + " is already started. Stop or pause it first");
+    }
+}
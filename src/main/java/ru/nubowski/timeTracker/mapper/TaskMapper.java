@@ -34,6 +34,7 @@ public class TaskMapper {
         task.setUser(userService.getUserByUsernameNotOptional(username));
         task.setName(request.getName());
         task.setDescription(request.getDescription());
+        task.setMaxSegmentMinutes(request.getMaxSegmentMinutes());
         return task;
     }
     /**
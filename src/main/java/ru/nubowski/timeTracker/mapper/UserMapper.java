@@ -4,8 +4,12 @@ import org.springframework.stereotype.Service;
 import ru.nubowski.timeTracker.dto.request.UserCreateRequest;
 import ru.nubowski.timeTracker.dto.request.UserUpdateRequest;
 import ru.nubowski.timeTracker.dto.response.UsersGetResponse;
+import ru.nubowski.timeTracker.exception.InvalidTimeZoneException;
 import ru.nubowski.timeTracker.model.User;
 
+import java.time.DateTimeException;
+import java.time.ZoneId;
+
 /**
  * Mapper service for User related objects.
  */
@@ -23,6 +27,10 @@ public class UserMapper {
         user.setUsername(request.getUsername());
         user.setEmail(request.getEmail());
         user.setDisplayName(request.getDisplayName());
+        if (request.getTimeZone() != null && !request.getTimeZone().isEmpty()) {
+            user.setTimeZone(toTimeZone(request.getTimeZone()));
+        }
+        user.setMaxSegmentMinutes(request.getMaxSegmentMinutes());
         // set other..
         return user;
     }
@@ -43,10 +51,29 @@ public class UserMapper {
         if (request.getDisplayName() != null && !request.getDisplayName().isEmpty()) {
             user.setDisplayName(request.getDisplayName());
         }
+        if (request.getTimeZone() != null && !request.getTimeZone().isEmpty()) {
+            user.setTimeZone(toTimeZone(request.getTimeZone()));
+        }
+        user.setMaxSegmentMinutes(request.getMaxSegmentMinutes()); // null keeps the current one, 0 clears it
         // set other if needed...
         return user;
     }
 
+    /**
+     * Checks a time zone of a request, normalizing it to the id of its zone.
+     *
+     * @param timeZone the time zone, an IANA id such as Europe/Moscow or an offset such as +03:00
+     * @return the id of the zone
+     * @throws InvalidTimeZoneException if it is no time zone
+     */
+    private String toTimeZone(String timeZone) {
+        try {
+            return ZoneId.of(timeZone).getId();
+        } catch (DateTimeException e) {
+            throw new InvalidTimeZoneException(timeZone);
+        }
+    }
+
     /**
      * Maps a User object to a UsersGetResponse object.
      *
@@ -0,0 +1,83 @@
+package ru.nubowski.timeTracker.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Represents the time spent on a task during one day, summed over its closed time logs.
+ * A rollup of the time_logs table, maintained with native statements whenever a segment is closed.
+ */
+@Entity
+@Table(name = "daily_effort")
+@IdClass(DailyEffortId.class)
+public class DailyEffort {
+    /**
+     * The task the time was spent on.
+     */
+    @Id
+    @Column(name = "task_id")
+    private Long taskId;
+    /**
+     * The day (server local) the time was spent.
+     */
+    @Id
+    @Column(name = "day")
+    private LocalDate day;
+    /**
+     * The owner of the task, denormalized so reports don't need to join the tasks.
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    /**
+     * The seconds spent on the task during the day.
+     */
+    @Column(name = "seconds", nullable = false)
+    private double seconds;
+    /**
+     * The earliest start of a time log overlapping the day, orders reports by start time.
+     */
+    @Column(name = "first_start", nullable = false)
+    private LocalDateTime firstStart;
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(Long taskId) {
+        this.taskId = taskId;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public double getSeconds() {
+        return seconds;
+    }
+
+    public void setSeconds(double seconds) {
+        this.seconds = seconds;
+    }
+
+    public LocalDateTime getFirstStart() {
+        return firstStart;
+    }
+
+    public void setFirstStart(LocalDateTime firstStart) {
+        this.firstStart = firstStart;
+    }
+}
@@ -0,0 +1,45 @@
+package ru.nubowski.timeTracker.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Composite identifier of a {@link DailyEffort} row: a task and a day.
+ */
+public class DailyEffortId implements Serializable {
+    private Long taskId;
+    private LocalDate day;
+
+    public DailyEffortId() {
+    }
+
+    public DailyEffortId(Long taskId, LocalDate day) {
+        this.taskId = taskId;
+        this.day = day;
+    }
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DailyEffortId other)) {
+            return false;
+        }
+        return Objects.equals(taskId, other.taskId) && Objects.equals(day, other.day);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(taskId, day);
+    }
+}
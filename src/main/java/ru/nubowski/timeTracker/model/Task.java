@@ -3,15 +3,24 @@ package ru.nubowski.timeTracker.model;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
- * Represents a task in the time tracking system
+ * Represents a task in the time tracking system.
+ * The running totals of the table (closed_millis, open_segment_start) are not mapped, they are only
+ * changed by the atomic statements of the repositories (which bump the version) and read through projections.
+ * Its current state is mapped read-only for the same reason.
+ * Kept in the second-level cache with the id of its user, its time logs collection is not. The native statements
+ * bypass the cache: the transitions evict the task themselves, the others declare the tasks table as what they change.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "tasks")
 public class Task {
     /**
@@ -36,6 +45,28 @@ public class Task {
 
     @Column
     private LocalDateTime createdAt;
+    /**
+     * The maximum length of a segment of the task in minutes, before its user's. Null for its user's.
+     */
+    @Column(name = "max_segment_minutes")
+    private Integer maxSegmentMinutes;
+    /**
+     * The version of the task row, bumped by every state transition and every update.
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+    /**
+     * The state of the latest time log of the task, null until it is first started.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "current_state", insertable = false, updatable = false)
+    private TaskState currentState;
+    /**
+     * The id of the latest time log of the task, null until it is first started.
+     */
+    @Column(name = "current_log_id", insertable = false, updatable = false)
+    private Long currentLogId;
     /**
      * The user associated with the task.
      */
@@ -44,9 +75,10 @@ public class Task {
     @JsonBackReference
     private User user;
     /**
-     * The set of time logs associated with the task.
+     * The set of time logs associated with the task. Lazy, each use case picks its own fetch plan.
+     * Deleted with the task by the cascade of their foreign key, not loaded for that.
      */
-    @OneToMany(mappedBy = "task", cascade = CascadeType.REMOVE, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "task", fetch = FetchType.LAZY)
     @JsonManagedReference
     private Set<TimeLog> timeLogs = new HashSet<>();
 
@@ -82,6 +114,30 @@ public class Task {
         this.description = description;
     }
 
+    public Integer getMaxSegmentMinutes() {
+        return maxSegmentMinutes;
+    }
+
+    public void setMaxSegmentMinutes(Integer maxSegmentMinutes) {
+        this.maxSegmentMinutes = maxSegmentMinutes;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public TaskState getCurrentState() {
+        return currentState;
+    }
+
+    public Long getCurrentLogId() {
+        return currentLogId;
+    }
+
     public User getUser() {
         return user;
     }
@@ -13,14 +13,16 @@ import java.time.LocalDateTime;
 public class TimeLog {
     /**
      * The unique identifier of the time log
+     * Taken one at a time from time_logs_seq, which the transition statements of the repository also draw from.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "time_logs_seq")
+    @SequenceGenerator(name = "time_logs_seq", sequenceName = "time_logs_seq", allocationSize = 1)
     private Long id;
     /**
-     * The start time of the time log.
+     * The start time of the time log, also the partition key of the time_logs table.
      */
-    @Column(name = "start_time")
+    @Column(name = "start_time", nullable = false)
     private LocalDateTime startTime;
     /**
      * The end time of the time log.
@@ -42,7 +44,7 @@ public class TimeLog {
     /**
      * The task associated with the time log.
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY) // listings only need task_id, don't drag the task (and its logs) along
     @JoinColumn(name = "task_id", nullable = false)
     @JsonBackReference
     private Task task;
@@ -1,6 +1,8 @@
 package ru.nubowski.timeTracker.model;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -8,8 +10,11 @@ import java.util.Set;
 
 /**
  * Represents a user in the time tracking system.
+ * Kept in the second-level cache, its tasks collection is not.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "app_user")
 public class User {
     /**
@@ -33,6 +38,16 @@ public class User {
      */
     @Column(name = "email")
     private String email;
+    /**
+     * The time zone of the user, whose ongoing tasks are auto-stopped at its end of day. Null for the server's.
+     */
+    @Column(name = "time_zone")
+    private String timeZone;
+    /**
+     * The maximum length of a segment of the user's tasks in minutes, unless a task has its own. Null for the default.
+     */
+    @Column(name = "max_segment_minutes")
+    private Integer maxSegmentMinutes;
     /**
      * The timestamp when the user was created.
      */
@@ -53,6 +68,8 @@ public class User {
                 ", username = '" + username + '\'' +
                 ", displayName = '" + displayName + '\'' +
                 ", email = '" + email + '\'' +
+                ", timeZone = '" + timeZone + '\'' +
+                ", maxSegmentMinutes = " + maxSegmentMinutes +
                 ", createdAt = " + createdAt +
                 ", tasks size = " + (tasks != null ? tasks.size() : 0) +
                 " }";
@@ -84,6 +101,22 @@ public class User {
         this.email = email;
     }
 
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public Integer getMaxSegmentMinutes() {
+        return maxSegmentMinutes;
+    }
+
+    public void setMaxSegmentMinutes(Integer maxSegmentMinutes) {
+        this.maxSegmentMinutes = maxSegmentMinutes;
+    }
+
     public Set<Task> getTasks() {
         return tasks;
     }
@@ -0,0 +1,192 @@
+package ru.nubowski.timeTracker.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import ru.nubowski.timeTracker.dto.TaskEffort;
+import ru.nubowski.timeTracker.model.DailyEffort;
+import ru.nubowski.timeTracker.model.DailyEffortId;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Interface for performing database operations on the {@link DailyEffort} rollup.
+ * It extends Spring Data JPA {@link JpaRepository}, gaining methods like save(), findAll(), and findById().
+ * <p>
+ * Report queries take the range [:start, :end) split into its full days [:d1, :d2) and the partial edge days around them:
+ * full days are summed from the rollup, the edges and the still open segments from the raw time logs.
+ * The native inserts name the tables they read and change, so the cached users are not invalidated by them.
+ */
+public interface DailyEffortRepository extends JpaRepository<DailyEffort, DailyEffortId> {
+    /**
+     * The table of the rollup, as a query space of the native statements.
+     */
+    String DAILY_EFFORT_TABLE = "daily_effort";
+
+    /**
+     * Seconds a time log contributes to a report outside the rollup: its parts within the edges,
+     * plus its part within the full days if it is still open (open segments are not rolled up yet).
+     */
+    String EDGE_SECONDS = "GREATEST(EXTRACT(EPOCH FROM (LEAST(COALESCE(t.end_time, :now), :d1) - GREATEST(t.start_time, :start))), 0) " +
+            "+ GREATEST(EXTRACT(EPOCH FROM (LEAST(COALESCE(t.end_time, :now), :end) - GREATEST(t.start_time, :d2))), 0) " +
+            "+ CASE WHEN t.end_time IS NULL " +
+            "THEN GREATEST(EXTRACT(EPOCH FROM (LEAST(CAST(:now AS TIMESTAMP), CAST(:d2 AS TIMESTAMP)) - GREATEST(t.start_time, :d1))), 0) ELSE 0 END";
+
+    /**
+     * The time logs of a user overlapping an edge, or still open. The ranges are served by the gist index on time_log_range.
+     */
+    String EDGE_LOGS = "FROM time_logs t INNER JOIN tasks task ON task.id = t.task_id " +
+            "WHERE task.user_id = :user_id AND t.start_time < :end " +
+            "AND (time_log_range(t.start_time, t.end_time) && tsrange(CAST(:start AS TIMESTAMP), CAST(:d1 AS TIMESTAMP)) " +
+            "OR time_log_range(t.start_time, t.end_time) && tsrange(CAST(:d2 AS TIMESTAMP), CAST(:end AS TIMESTAMP)) " +
+            "OR t.end_time IS NULL) ";
+
+    /**
+     * Rows of the per-task report: rolled up full days and raw edge contributions, each with the earliest start of its time logs.
+     */
+    String TASK_EFFORT_QUERY = "SELECT task.id AS \"taskId\", task.name AS \"taskName\", CAST(SUM(e.seconds) AS BIGINT) AS \"seconds\" " +
+            "FROM (SELECT d.task_id, d.seconds, d.first_start FROM daily_effort d " +
+            "WHERE d.user_id = :user_id AND d.day >= :d1 AND d.day < :d2 " +
+            "UNION ALL SELECT t.task_id, " + EDGE_SECONDS + ", t.start_time " + EDGE_LOGS + ") e " +
+            "INNER JOIN tasks task ON task.id = e.task_id " +
+            "GROUP BY task.id, task.name HAVING SUM(e.seconds) > 0 ";
+
+    /**
+     * Adds a closed segment to the rollup, split at midnight into one row per day it touches.
+     * Taking a segment back out leaves the first start of its days as is, until they are rebuilt.
+     *
+     * @param taskId the id of the task of the segment
+     * @param start the start of the segment
+     * @param end the end of the segment
+     * @param factor 1 to add the segment, -1 to take it back out
+     * @return the number of days touched
+     */
+    @Modifying
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = DAILY_EFFORT_TABLE),
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TaskRepository.TASKS_TABLE)})
+    @Query(value = "INSERT INTO daily_effort (task_id, day, user_id, seconds, first_start) " +
+            "SELECT task.id, CAST(d AS DATE), task.user_id, " +
+            ":factor * EXTRACT(EPOCH FROM (LEAST(CAST(:end AS TIMESTAMP), d + INTERVAL '1 day') - GREATEST(CAST(:start AS TIMESTAMP), d))), " +
+            "CAST(:start AS TIMESTAMP) " +
+            "FROM tasks task " +
+            "CROSS JOIN generate_series(date_trunc('day', CAST(:start AS TIMESTAMP)), CAST(:end AS TIMESTAMP), INTERVAL '1 day') d " +
+            "WHERE task.id = :task_id AND LEAST(CAST(:end AS TIMESTAMP), d + INTERVAL '1 day') > GREATEST(CAST(:start AS TIMESTAMP), d) " +
+            "ON CONFLICT (task_id, day) DO UPDATE SET seconds = daily_effort.seconds + EXCLUDED.seconds, " +
+            "first_start = LEAST(daily_effort.first_start, EXCLUDED.first_start)",
+            nativeQuery = true)
+    int addSegment(@Param("task_id") Long taskId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                   @Param("factor") int factor);
+
+    /**
+     * Deletes the rollup of the days before the given one, used by the retention clean-up.
+     *
+     * @param day the first day to keep
+     * @return the number of deleted rows
+     */
+    @Modifying
+    @Query("DELETE FROM DailyEffort d WHERE d.day < :day")
+    int deleteByDayBefore(@Param("day") LocalDate day);
+
+    /**
+     * Deletes the rollup of the days within [from, to), before they are rebuilt.
+     *
+     * @param from the first day
+     * @param to the day after the last day
+     * @return the number of deleted rows
+     */
+    @Modifying
+    @Query("DELETE FROM DailyEffort d WHERE d.day >= :from AND d.day < :to")
+    int deleteByDayBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Deletes the rollup of the days outside [from, to), before the days within are rebuilt.
+     *
+     * @param from the first day to keep
+     * @param to the day after the last day to keep
+     * @return the number of deleted rows
+     */
+    @Modifying
+    @Query("DELETE FROM DailyEffort d WHERE d.day < :from OR d.day >= :to")
+    int deleteByDayNotBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Rebuilds the rollup of the days within [from, to) from the closed time logs. The days must be empty before.
+     *
+     * @param from the start of the first day
+     * @param to the start of the day after the last day
+     * @return the number of inserted rows
+     */
+    @Modifying
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = DAILY_EFFORT_TABLE),
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TaskRepository.TASKS_TABLE),
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TimeLogRepository.TIME_LOGS_TABLE)})
+    @Query(value = "INSERT INTO daily_effort (task_id, day, user_id, seconds, first_start) " +
+            "SELECT t.task_id, CAST(d AS DATE), MIN(task.user_id), " +
+            "SUM(EXTRACT(EPOCH FROM (LEAST(t.end_time, d + INTERVAL '1 day') - GREATEST(t.start_time, d)))), " +
+            "MIN(t.start_time) " +
+            "FROM time_logs t INNER JOIN tasks task ON task.id = t.task_id " +
+            "CROSS JOIN LATERAL generate_series(date_trunc('day', GREATEST(t.start_time, :from)), LEAST(t.end_time, :to), INTERVAL '1 day') d " +
+            "WHERE t.end_time IS NOT NULL AND t.start_time < :to AND t.end_time > :from AND d < :to " +
+            "AND LEAST(t.end_time, d + INTERVAL '1 day') > GREATEST(t.start_time, d) " +
+            "GROUP BY t.task_id, d",
+            nativeQuery = true)
+    int rebuildDays(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Fetches the total work effort in seconds of a user within [start, end), full days from the rollup.
+     *
+     * @param userId the id of the user
+     * @param start the start of the range
+     * @param end the end of the range
+     * @param d1 the start of the first full day within the range
+     * @param d2 the end of the last full day within the range, not before d1
+     * @param now the end of the time logs that are still open
+     * @return the total work effort in seconds
+     */
+    @Query(value = "SELECT COALESCE((SELECT SUM(d.seconds) FROM daily_effort d " +
+            "WHERE d.user_id = :user_id AND d.day >= :d1 AND d.day < :d2), 0) " +
+            "+ COALESCE((SELECT SUM(" + EDGE_SECONDS + ") " + EDGE_LOGS + "), 0)",
+            nativeQuery = true)
+    double getTotalEffortSeconds(@Param("user_id") Long userId, @Param("start") LocalDateTime start,
+                                 @Param("end") LocalDateTime end, @Param("d1") LocalDateTime d1,
+                                 @Param("d2") LocalDateTime d2, @Param("now") LocalDateTime now);
+
+    /**
+     * Fetches the effort per task of a user within [start, end), the longest first. Full days come from the rollup.
+     *
+     * @param userId the id of the user
+     * @param start the start of the range
+     * @param end the end of the range
+     * @param d1 the start of the first full day within the range
+     * @param d2 the end of the last full day within the range, not before d1
+     * @param now the end of the time logs that are still open
+     * @return a list of task efforts
+     */
+    @Query(value = TASK_EFFORT_QUERY + "ORDER BY \"seconds\" DESC, task.id", nativeQuery = true)
+    List<TaskEffort> getTaskEffortsOrderBySeconds(@Param("user_id") Long userId, @Param("start") LocalDateTime start,
+                                                  @Param("end") LocalDateTime end, @Param("d1") LocalDateTime d1,
+                                                  @Param("d2") LocalDateTime d2, @Param("now") LocalDateTime now);
+
+    /**
+     * Fetches the effort per task of a user within [start, end), the earliest started first.
+     * Within the full days the earliest start comes from the rollup.
+     *
+     * @param userId the id of the user
+     * @param start the start of the range
+     * @param end the end of the range
+     * @param d1 the start of the first full day within the range
+     * @param d2 the end of the last full day within the range, not before d1
+     * @param now the end of the time logs that are still open
+     * @return a list of task efforts
+     */
+    @Query(value = TASK_EFFORT_QUERY + "ORDER BY MIN(e.first_start), task.id", nativeQuery = true)
+    List<TaskEffort> getTaskEffortsOrderByStartTime(@Param("user_id") Long userId, @Param("start") LocalDateTime start,
+                                                    @Param("end") LocalDateTime end, @Param("d1") LocalDateTime d1,
+                                                    @Param("d2") LocalDateTime d2, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,204 @@
+package ru.nubowski.timeTracker.repository;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+import ru.nubowski.timeTracker.dto.TaskTotals;
+import ru.nubowski.timeTracker.dto.TaskTransition;
+import ru.nubowski.timeTracker.model.TaskState;
+
+import java.time.LocalDateTime;
+
+/**
+ * Non-blocking counterpart of the task state transitions of {@link TimeLogRepository} and the totals reads of
+ * {@link TaskRepository}, over R2DBC, for the reactive profile.
+ * It runs the very same statements, so both stacks can serve the same tasks side by side.
+ * Every statement runs on its own, in auto-commit: each transition is a single statement already.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveTaskRepository {
+    private static final String EXISTS_WITH_STATE = "SELECT EXISTS (SELECT 1 FROM time_logs t " +
+            "WHERE t.task_id = :task_id AND t.task_state = :task_state)";
+    private static final String EXISTS_ANY = "SELECT EXISTS (SELECT 1 FROM time_logs t WHERE t.task_id = :task_id)";
+    private final DatabaseClient databaseClient;
+
+    /**
+     * Constructor for ReactiveTaskRepository.
+     *
+     * @param databaseClient the client of the R2DBC connection pool
+     */
+    public ReactiveTaskRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Starts a task in one statement, see {@link TimeLogRepository#startSegment}.
+     *
+     * @param taskId the id of the task
+     * @param now the start time to set
+     * @return the started time log, empty if the task is missing, already started or changed concurrently
+     */
+    public Mono<TaskTransition> startSegment(Long taskId, LocalDateTime now) {
+        return databaseClient.sql(TimeLogRepository.START_SEGMENT)
+                .bind("task_id", taskId)
+                .bind("now", now)
+                .map(ReactiveTaskRepository::toTransition)
+                .one();
+    }
+
+    /**
+     * Resumes a paused task in one statement, see {@link TimeLogRepository#resumeSegment}.
+     *
+     * @param taskId the id of the task
+     * @param now the start time to set
+     * @return the started time log, empty if the task is missing, not paused or changed concurrently
+     */
+    public Mono<TaskTransition> resumeSegment(Long taskId, LocalDateTime now) {
+        return databaseClient.sql(TimeLogRepository.RESUME_SEGMENT)
+                .bind("task_id", taskId)
+                .bind("now", now)
+                .map(ReactiveTaskRepository::toTransition)
+                .one();
+    }
+
+    /**
+     * Stops or pauses a task in one statement, see {@link TimeLogRepository#closeSegment}.
+     *
+     * @param taskId the id of the task
+     * @param now the end time to set
+     * @param taskState the state to set, USER_STOPPED or PAUSED
+     * @return the closed time log, empty if the task is missing, has no open segment or changed concurrently
+     */
+    public Mono<TaskTransition> closeSegment(Long taskId, LocalDateTime now, TaskState taskState) {
+        return databaseClient.sql(TimeLogRepository.CLOSE_SEGMENT)
+                .bind("task_id", taskId)
+                .bind("now", now)
+                .bind("task_state", taskState.name())
+                .map(ReactiveTaskRepository::toTransition)
+                .one();
+    }
+
+    /**
+     * Fetches the running totals of a task.
+     *
+     * @param id the id of the task
+     * @return the totals, empty if there is no such task
+     */
+    public Mono<TaskTotals> findTotalsById(Long id) {
+        return databaseClient.sql(TaskRepository.FIND_TOTALS)
+                .bind("id", id)
+                .map(row -> (TaskTotals) new Totals(row.get("closedMillis", Long.class),
+                        row.get("openSegmentStart", LocalDateTime.class)))
+                .one();
+    }
+
+    /**
+     * Checks whether the specified task has a time log in the given state.
+     *
+     * @param taskId the id of the task
+     * @param taskState the state of the time log
+     * @return TRUE if it has one and FALSE if not
+     */
+    public Mono<Boolean> existsByTaskIdAndTaskState(Long taskId, TaskState taskState) {
+        return databaseClient.sql(EXISTS_WITH_STATE)
+                .bind("task_id", taskId)
+                .bind("task_state", taskState.name())
+                .map(row -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    /**
+     * Checks whether the specified task has any time log.
+     *
+     * @param taskId the id of the task
+     * @return TRUE if it has one and FALSE if not
+     */
+    public Mono<Boolean> existsByTaskId(Long taskId) {
+        return databaseClient.sql(EXISTS_ANY)
+                .bind("task_id", taskId)
+                .map(row -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    private static TaskTransition toTransition(Readable row) {
+        return new Transition(row.get("id", Long.class), row.get("taskId", Long.class), row.get("taskName", String.class),
+                row.get("startTime", LocalDateTime.class), row.get("endTime", LocalDateTime.class),
+                row.get("taskState", String.class), row.get("userId", Long.class), row.get("closedMillis", Long.class),
+                row.get("openSegmentStart", LocalDateTime.class), row.get("version", Long.class),
+                row.get("maxSegmentMinutes", Integer.class));
+    }
+
+    private record Totals(long closedMillis, LocalDateTime openSegmentStart) implements TaskTotals {
+        @Override
+        public long getClosedMillis() {
+            return closedMillis;
+        }
+
+        @Override
+        public LocalDateTime getOpenSegmentStart() {
+            return openSegmentStart;
+        }
+    }
+
+    private record Transition(Long id, Long taskId, String taskName, LocalDateTime startTime, LocalDateTime endTime,
+                              String taskState, Long userId, long closedMillis, LocalDateTime openSegmentStart,
+                              long version, Integer maxSegmentMinutes) implements TaskTransition {
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public Long getTaskId() {
+            return taskId;
+        }
+
+        @Override
+        public String getTaskName() {
+            return taskName;
+        }
+
+        @Override
+        public LocalDateTime getStartTime() {
+            return startTime;
+        }
+
+        @Override
+        public LocalDateTime getEndTime() {
+            return endTime;
+        }
+
+        @Override
+        public String getTaskState() {
+            return taskState;
+        }
+
+        @Override
+        public Long getUserId() {
+            return userId;
+        }
+
+        @Override
+        public long getClosedMillis() {
+            return closedMillis;
+        }
+
+        @Override
+        public LocalDateTime getOpenSegmentStart() {
+            return openSegmentStart;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public Integer getMaxSegmentMinutes() {
+            return maxSegmentMinutes;
+        }
+    }
+}
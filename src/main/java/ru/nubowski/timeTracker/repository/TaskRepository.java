@@ -1,24 +1,335 @@
 package ru.nubowski.timeTracker.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.nubowski.timeTracker.dto.TaskTimer;
+import ru.nubowski.timeTracker.dto.TaskToResponse;
+import ru.nubowski.timeTracker.dto.TaskTotals;
+import ru.nubowski.timeTracker.dto.TaskTotalsMismatch;
 import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TaskState;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Interface for performing database operations on {@link Task} entities.
  * It extends Spring Data JPA {@link JpaRepository}, gaining methods like save(), findAll(), and findById().
+ * Statements changing the open segment of a task also bump its version, the compare-and-set token of the state
+ * transitions. Changes of the closed total alone don't, an increment is re-evaluated on the current row anyway.
+ * Resetting the totals doesn't either, it only comes before the task is deleted.
+ * The native updates of the task rows name the tables they read and change: only those are flushed before them,
+ * and only the cached tasks are invalidated after them instead of the whole second-level cache.
  */
 public interface TaskRepository extends JpaRepository <Task, Long> {
+    /**
+     * The table of the tasks, as a query space of the native statements.
+     */
+    String TASKS_TABLE = "tasks";
+
+    /**
+     * Milliseconds of a time log's [start_time, end_time), the unit of the running totals.
+     * Every statement maintaining or checking the totals uses this expression, so they agree to the millisecond.
+     */
+    String LOG_MILLIS = "CAST(FLOOR(EXTRACT(EPOCH FROM (t.end_time - t.start_time)) * 1000) AS BIGINT)";
+
+    /**
+     * Milliseconds of the segment [:start, :end), rounded like a stored time log.
+     */
+    String SEGMENT_MILLIS = "CAST(FLOOR(EXTRACT(EPOCH FROM (CAST(:end AS TIMESTAMP) - CAST(:start AS TIMESTAMP))) * 1000) AS BIGINT)";
+
+    /**
+     * Milliseconds of the open segment of a task, from its start up to :now, rounded like a stored time log.
+     */
+    String OPEN_SEGMENT_MILLIS = "CAST(FLOOR(EXTRACT(EPOCH FROM (CAST(:now AS TIMESTAMP) - cur.open_segment_start)) * 1000) AS BIGINT)";
+
+    /**
+     * Order of the time logs of a task that puts its current one, the latest, first.
+     */
+    String LATEST_FIRST = "t.start_time DESC, t.id DESC";
+
+    /**
+     * The running totals and the current state of every task that has time logs, recomputed from them.
+     */
+    String EXPECTED_TOTALS = "SELECT t.task_id, " +
+            "COALESCE(SUM(" + LOG_MILLIS + ") FILTER (WHERE t.end_time IS NOT NULL), 0) AS closed_millis, " +
+            "MAX(t.start_time) FILTER (WHERE t.end_time IS NULL) AS open_segment_start, " +
+            "(ARRAY_AGG(t.task_state ORDER BY " + LATEST_FIRST + "))[1] AS current_state, " +
+            "(ARRAY_AGG(t.id ORDER BY " + LATEST_FIRST + "))[1] AS current_log_id " +
+            "FROM time_logs t GROUP BY t.task_id";
 
     /**
-     * Finds all tasks created before the specified cutoff time.
+     * Finds a task by id together with its user, in one statement. The time logs are not loaded.
+     *
+     * @param id the id of the task
+     * @return an optional task
+     */
+    @EntityGraph(attributePaths = "user")
+    Optional<Task> findWithUserById(Long id);
+
+    /**
+     * Finds all tasks together with their users, in one statement. The time logs are not loaded.
+     *
+     * @return a list of all tasks
+     */
+    @Override
+    @EntityGraph(attributePaths = "user")
+    List<Task> findAll();
+
+    /**
+     * Fetches one keyset page of the task listing, read straight into response rows joined with the owner's username.
+     * No entity is loaded, so there is neither a per-task user select nor any time log.
+     *
+     * @param afterId only tasks with a greater id are returned, the id of the last task of the previous page
+     * @param pageable the page size (its page number is ignored)
+     * @return a list of task rows ordered by id
+     */
+    @Query("SELECT new ru.nubowski.timeTracker.dto.TaskToResponse(t.id, t.name, t.description, t.createdAt, u.username, " +
+            "t.currentState) FROM Task t JOIN t.user u WHERE t.id > :afterId ORDER BY t.id")
+    List<TaskToResponse> findResponsesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Same as {@link #findResponsesAfter}, only the tasks of one user.
+     *
+     * @param username the username of the owner
+     * @param afterId only tasks with a greater id are returned, the id of the last task of the previous page
+     * @param pageable the page size (its page number is ignored)
+     * @return a list of task rows ordered by id
+     */
+    @Query("SELECT new ru.nubowski.timeTracker.dto.TaskToResponse(t.id, t.name, t.description, t.createdAt, u.username, " +
+            "t.currentState) FROM Task t JOIN t.user u WHERE u.username = :username AND t.id > :afterId ORDER BY t.id")
+    List<TaskToResponse> findResponsesByUsernameAfter(@Param("username") String username, @Param("afterId") Long afterId,
+                                                      Pageable pageable);
+
+    /**
+     * Same as {@link #findResponsesAfter}, only the tasks of one user in the given current state,
+     * read from the (user_id, current_state, id) index without touching any time log.
+     *
+     * @param userId the id of the owner
+     * @param state the current state of the tasks
+     * @param afterId only tasks with a greater id are returned, the id of the last task of the previous page
+     * @param pageable the page size (its page number is ignored)
+     * @return a list of task rows ordered by id
+     */
+    @Query("SELECT new ru.nubowski.timeTracker.dto.TaskToResponse(t.id, t.name, t.description, t.createdAt, u.username, " +
+            "t.currentState) FROM Task t JOIN t.user u " +
+            "WHERE t.user.id = :userId AND t.currentState = :state AND t.id > :afterId ORDER BY t.id")
+    List<TaskToResponse> findResponsesByUserIdAndStateAfter(@Param("userId") Long userId, @Param("state") TaskState state,
+                                                            @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Finds the ids of at most {@code limit} tasks created before the specified cutoff time, and locks these tasks
+     * in id order, as the transitions do, until the end of the surrounding transaction which deletes them.
      *
      * @param cutoff the time to check tasks against
-     * @return a list of tasks created before the cutoff time
+     * @param limit the maximum number of ids to return
+     * @return a list of ids of tasks created before the cutoff time, ascending
+     */
+    @Query(value = "SELECT t.id FROM tasks t WHERE t.created_at < :cutoff ORDER BY t.id LIMIT :limit FOR UPDATE",
+            nativeQuery = true)
+    List<Long> findIdsCreatedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    /**
+     * Deletes a task in one statement, its time logs and daily efforts by the cascade of their foreign keys.
+     * Bypasses the second-level cache.
+     *
+     * @param id the id of the task
+     * @return the id of the user of the deleted task, empty if there was no such task
+     */
+    @Transactional
+    @Query(value = "DELETE FROM tasks t WHERE t.id = :id RETURNING t.user_id", nativeQuery = true)
+    Optional<Long> deleteReturningUserId(@Param("id") Long id);
+
+    /**
+     * Deletes the tasks with the given ids in one statement, their time logs and daily efforts by the cascade of
+     * their foreign keys.
+     *
+     * @param ids the ids of the tasks to delete
+     * @return the number of deleted tasks
+     */
+    @Modifying
+    @Query("DELETE FROM Task t WHERE t.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes all tasks of the given users in one statement. Their time logs must be deleted before,
+     * or are by the cascade of their foreign key. Flushes and clears the persistence context, which may still hold them.
+     *
+     * @param userIds the ids of the users
+     * @return the number of deleted tasks
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Task t WHERE t.user.id IN :userIds")
+    int deleteByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * The statement of {@link #findTotalsById}, with the named parameter id. Shared with {@link ReactiveTaskRepository}.
+     */
+    String FIND_TOTALS = "SELECT task.closed_millis AS \"closedMillis\", task.open_segment_start AS \"openSegmentStart\" " +
+            "FROM tasks task WHERE task.id = :id";
+
+    /**
+     * Fetches the running totals of a task.
+     *
+     * @param id the id of the task
+     * @return the totals, empty if there is no such task
+     */
+    @Query(value = FIND_TOTALS, nativeQuery = true)
+    Optional<TaskTotals> findTotalsById(@Param("id") Long id);
+
+    /**
+     * The maximum segment length of a task row aliased task: its own, else its user's, else null.
+     */
+    String MAX_SEGMENT_MINUTES = "COALESCE(task.max_segment_minutes, " +
+            "(SELECT u.max_segment_minutes FROM app_user u WHERE u.id = task.user_id)) AS \"maxSegmentMinutes\"";
+
+    /**
+     * Columns of the timer of a task, read into {@link TaskTimer}.
+     */
+    String TIMER_COLUMNS = "SELECT task.id AS \"taskId\", task.user_id AS \"userId\", task.closed_millis AS \"closedMillis\", " +
+            "task.open_segment_start AS \"openSegmentStart\", task.version AS \"version\", " + MAX_SEGMENT_MINUTES + " " +
+            "FROM tasks task ";
+
+    /**
+     * Finds the timers of all tasks with an open segment, from the partial index on them.
+     *
+     * @return a list of the running timers
      */
-    List<Task> findByCreatedAtBefore(LocalDateTime cutoff);
+    @Query(value = TIMER_COLUMNS + "WHERE task.open_segment_start IS NOT NULL", nativeQuery = true)
+    List<TaskTimer> findRunningTimers();
+
+    /**
+     * Finds the timers of the given tasks, running or not.
+     *
+     * @param ids the ids of the tasks
+     * @return a list of the timers of the tasks that exist
+     */
+    @Query(value = TIMER_COLUMNS + "WHERE task.id IN (:ids)", nativeQuery = true)
+    List<TaskTimer> findTimersByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Marks a segment of the task as open.
+     *
+     * @param id the id of the task
+     * @param start the start of the open segment
+     * @return the number of updated tasks
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TASKS_TABLE))
+    @Query(value = "UPDATE tasks SET open_segment_start = :start, version = version + 1 WHERE id = :id", nativeQuery = true)
+    int openSegment(@Param("id") Long id, @Param("start") LocalDateTime start);
+
+    /**
+     * Adds a closed segment to the closed total of the task, or takes it back out.
+     *
+     * @param id the id of the task
+     * @param start the start of the segment
+     * @param end the end of the segment
+     * @param factor 1 to add the segment, -1 to take it back out
+     * @return the number of updated tasks
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TASKS_TABLE))
+    @Query(value = "UPDATE tasks SET closed_millis = closed_millis + :factor * " + SEGMENT_MILLIS + " WHERE id = :id",
+            nativeQuery = true)
+    int addClosedSegment(@Param("id") Long id, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                         @Param("factor") int factor);
+
+    /**
+     * Forgets the open segment of the task, if it is the one starting at the given time.
+     *
+     * @param id the id of the task
+     * @param start the start of the open segment
+     * @return the number of updated tasks
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TASKS_TABLE))
+    @Query(value = "UPDATE tasks SET open_segment_start = NULL, version = version + 1 " +
+            "WHERE id = :id AND open_segment_start = CAST(:start AS TIMESTAMP)",
+            nativeQuery = true)
+    int clearOpenSegment(@Param("id") Long id, @Param("start") LocalDateTime start);
+
+    /**
+     * Resets the running totals and the current state of the task, after all its time logs are deleted.
+     *
+     * @param id the id of the task
+     * @return the number of updated tasks
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TASKS_TABLE))
+    @Query(value = "UPDATE tasks SET closed_millis = 0, open_segment_start = NULL, current_state = NULL, " +
+            "current_log_id = NULL WHERE id = :id", nativeQuery = true)
+    int resetTotals(@Param("id") Long id);
+
+    /**
+     * Sets the current state of the task to the state of its latest time log, or clears it if it has none left.
+     * Used after a time log is saved or deleted out of a transition.
+     *
+     * @param id the id of the task
+     * @return the number of updated tasks
+     */
+    @Modifying
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TASKS_TABLE),
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TimeLogRepository.TIME_LOGS_TABLE)})
+    @Query(value = "UPDATE tasks task SET (current_state, current_log_id) = (" +
+            "SELECT t.task_state, t.id FROM time_logs t WHERE t.task_id = task.id ORDER BY " + LATEST_FIRST + " LIMIT 1) " +
+            "WHERE task.id = :id", nativeQuery = true)
+    int refreshCurrentState(@Param("id") Long id);
+
+    /**
+     * Finds the tasks whose running totals or current state differ from their time logs, read in one snapshot.
+     *
+     * @return a list of the mismatching tasks with their stored and recomputed totals
+     */
+    @Query(value = "SELECT task.id AS \"taskId\", task.closed_millis AS \"closedMillis\", " +
+            "COALESCE(e.closed_millis, 0) AS \"expectedClosedMillis\", task.open_segment_start AS \"openSegmentStart\", " +
+            "e.open_segment_start AS \"expectedOpenSegmentStart\", task.current_state AS \"currentState\", " +
+            "e.current_state AS \"expectedCurrentState\", task.current_log_id AS \"currentLogId\", " +
+            "e.current_log_id AS \"expectedCurrentLogId\" " +
+            "FROM tasks task LEFT JOIN (" + EXPECTED_TOTALS + ") e ON e.task_id = task.id " +
+            "WHERE task.closed_millis <> COALESCE(e.closed_millis, 0) " +
+            "OR task.open_segment_start IS DISTINCT FROM e.open_segment_start " +
+            "OR task.current_state IS DISTINCT FROM e.current_state " +
+            "OR task.current_log_id IS DISTINCT FROM e.current_log_id " +
+            "ORDER BY task.id", nativeQuery = true)
+    List<TaskTotalsMismatch> findTotalsMismatches();
+
+    /**
+     * Recomputes the running totals and the current state of a task from its time logs,
+     * unless they changed since they were found mismatching.
+     *
+     * @param id the id of the task
+     * @param closedMillis the closed total found mismatching
+     * @param openSegmentStart the open segment start found mismatching
+     * @param currentLogId the current time log id found mismatching
+     * @return the number of updated tasks, 0 if the totals changed in the meantime
+     */
+    @Modifying
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TASKS_TABLE),
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TimeLogRepository.TIME_LOGS_TABLE)})
+    @Query(value = "UPDATE tasks task SET " +
+            "closed_millis = COALESCE((SELECT SUM(" + LOG_MILLIS + ") FROM time_logs t " +
+            "WHERE t.task_id = task.id AND t.end_time IS NOT NULL), 0), " +
+            "open_segment_start = (SELECT MAX(t.start_time) FROM time_logs t WHERE t.task_id = task.id AND t.end_time IS NULL), " +
+            "(current_state, current_log_id) = (SELECT t.task_state, t.id FROM time_logs t WHERE t.task_id = task.id " +
+            "ORDER BY " + LATEST_FIRST + " LIMIT 1), " +
+            "version = task.version + 1 " +
+            "WHERE task.id = :id AND task.closed_millis = :closed_millis " +
+            "AND task.open_segment_start IS NOT DISTINCT FROM CAST(:open_segment_start AS TIMESTAMP) " +
+            "AND task.current_log_id IS NOT DISTINCT FROM CAST(:current_log_id AS BIGINT)", nativeQuery = true)
+    int repairTotals(@Param("id") Long id, @Param("closed_millis") long closedMillis,
+                     @Param("open_segment_start") LocalDateTime openSegmentStart,
+                     @Param("current_log_id") Long currentLogId);
 
     /**
      * Finds all tasks associated with a specific user.
@@ -28,4 +339,13 @@ public interface TaskRepository extends JpaRepository <Task, Long> {
      */
     List<Task> findByUserId (Long id);
 
+    /**
+     * Finds the ids of all tasks of the given users, without loading the tasks.
+     *
+     * @param userIds the ids of the users
+     * @return a list of the ids of the users' tasks
+     */
+    @Query("SELECT t.id FROM Task t WHERE t.user.id IN (:userIds)")
+    List<Long> findIdsByUserIds(@Param("userIds") Collection<Long> userIds);
+
 }
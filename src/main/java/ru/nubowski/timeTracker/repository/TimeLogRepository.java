@@ -1,16 +1,26 @@
 package ru.nubowski.timeTracker.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.nubowski.timeTracker.dto.TaskTransition;
+import ru.nubowski.timeTracker.dto.TimeLogSegment;
 import ru.nubowski.timeTracker.model.Task;
 import ru.nubowski.timeTracker.model.TaskState;
 import ru.nubowski.timeTracker.model.TimeLog;
 import ru.nubowski.timeTracker.model.User;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * TimeLogRepository is an interface for performing database operations on {@link TimeLog} entities.
@@ -18,11 +28,14 @@ import java.util.Optional;
  */
 public interface TimeLogRepository extends JpaRepository <TimeLog, Long> {
     /**
-     * Finds the most recent time log for the specified task that has not yet ended.
-     * @param task The task for which to find the time log.
-     * @return An optional time log that matches these criteria.
+     * The table of the time logs, as a query space of the native statements.
+     */
+    String TIME_LOGS_TABLE = "time_logs";
+
+    /**
+     * JDBC fetch size used for streamed reads, so the driver pulls rows in batches instead of the whole result.
      */
-    Optional<TimeLog> findFirstByTaskAndEndTimeIsNullOrderByStartTimeDesc (Task task);
+    String STREAM_FETCH_SIZE = "500";
 
     /**
      * Finds time logs where the end time is null (meaning the task is ongoing) and the task state matches the specified value.
@@ -32,26 +45,345 @@ public interface TimeLogRepository extends JpaRepository <TimeLog, Long> {
     List<TimeLog> findByEndTimeIsNullAndTaskStateEquals(TaskState taskState); // -> LIST
 
     /**
-     * Finds time logs for a specific task and task state.
-     * @param task The task for which to find the time logs.
-     * @param taskState The state of the task.
-     * @return An OPTIONAL time log that matches these criteria.
+     * Columns returned by the transition statements, read into {@link TaskTransition}.
      */
-    Optional<TimeLog> findByTaskAndTaskState(Task task, TaskState taskState);
+    String TRANSITION_COLUMNS = "SELECT s.id AS \"id\", s.task_id AS \"taskId\", task.name AS \"taskName\", " +
+            "s.start_time AS \"startTime\", s.end_time AS \"endTime\", s.task_state AS \"taskState\", " +
+            "task.user_id AS \"userId\", task.closed_millis AS \"closedMillis\", " +
+            "task.open_segment_start AS \"openSegmentStart\", task.version AS \"version\", " +
+            TaskRepository.MAX_SEGMENT_MINUTES + " ";
 
     /**
-     * Finds the most recent time log for the specified task.
-     * @param task The task for which to find the time log.
-     * @return A time log that matches these criteria.
+     * Columns of the task row returned by the "cas" CTE of the transition statements, after its update.
+     */
+    String CAS_RETURNING = "RETURNING task.id, task.name, task.user_id, task.closed_millis, task.open_segment_start, task.version, " +
+            "task.max_segment_minutes";
+
+    /**
+     * Adds the segments of a preceding "stopped" CTE to the daily effort rollup, split at midnight.
+     */
+    String ROLL_UP_STOPPED = "rolled_up AS (" +
+            "INSERT INTO daily_effort (task_id, day, user_id, seconds, first_start) " +
+            "SELECT s.task_id, CAST(d AS DATE), MIN(task.user_id), " +
+            "SUM(EXTRACT(EPOCH FROM (LEAST(s.end_time, d + INTERVAL '1 day') - GREATEST(s.start_time, d)))), MIN(s.start_time) " +
+            "FROM stopped s INNER JOIN tasks task ON task.id = s.task_id " +
+            "CROSS JOIN LATERAL generate_series(date_trunc('day', s.start_time), s.end_time, INTERVAL '1 day') d " +
+            "WHERE LEAST(s.end_time, d + INTERVAL '1 day') > GREATEST(s.start_time, d) " +
+            "GROUP BY s.task_id, d " +
+            "ON CONFLICT (task_id, day) DO UPDATE SET seconds = daily_effort.seconds + EXCLUDED.seconds, " +
+            "first_start = LEAST(daily_effort.first_start, EXCLUDED.first_start)) ";
+
+    /**
+     * Moves the segments of a preceding "stopped" CTE from the open segment of their tasks to the closed totals,
+     * and marks the tasks AUTO_STOPPED.
+     */
+    String CLOSE_STOPPED_TOTALS = "totals AS (" +
+            "UPDATE tasks task SET closed_millis = task.closed_millis + s.millis, open_segment_start = NULL, " +
+            "current_state = 'AUTO_STOPPED', version = task.version + 1 " +
+            "FROM (SELECT t.task_id, SUM(" + TaskRepository.LOG_MILLIS + ") AS millis FROM stopped t GROUP BY t.task_id) s " +
+            "WHERE task.id = s.task_id) ";
+
+    /**
+     * Running tasks that have an ongoing time log, the condition of the "locked" CTE of the auto-stop statements.
+     */
+    String RUNNING_WITH_ONGOING_LOG = "task.open_segment_start IS NOT NULL AND EXISTS (SELECT 1 FROM time_logs o " +
+            "WHERE o.task_id = task.id AND o.end_time IS NULL AND o.task_state = 'ONGOING') ";
+
+    /**
+     * Auto-stops the ongoing time logs of the tasks locked by a preceding "locked" CTE, at :end.
+     * The task rows are locked first, in the order of their ids, like the transitions lock the task row before its
+     * time log: an auto-stop and a transition of the same task then wait for each other instead of deadlocking.
+     * A task stopped by its user meanwhile is no longer running once its lock is granted, and is skipped.
+     */
+    String STOP_LOCKED = "stopped AS (" +
+            "UPDATE time_logs t SET end_time = :end, task_state = 'AUTO_STOPPED' FROM locked " +
+            "WHERE t.task_id = locked.id AND t.end_time IS NULL AND t.task_state = 'ONGOING' " +
+            "RETURNING t.task_id, t.start_time, t.end_time), ";
+
+    /**
+     * Takes the time logs of a preceding "deleted" CTE out of the running totals of their tasks, locked beforehand:
+     * the closed ones out of the closed total, an open one out of the open segment, and sets the current state of
+     * the tasks from their latest time log left (the statement still sees the deleted ones, hence the anti-join).
+     */
+    String SUBTRACT_DELETED = "subtracted AS (" +
+            "UPDATE tasks task SET closed_millis = task.closed_millis - d.millis, " +
+            "open_segment_start = CASE WHEN task.open_segment_start = d.open_segment_start THEN NULL " +
+            "ELSE task.open_segment_start END, " +
+            "(current_state, current_log_id) = (SELECT t.task_state, t.id FROM time_logs t WHERE t.task_id = task.id " +
+            "AND NOT EXISTS (SELECT 1 FROM deleted x WHERE x.id = t.id) ORDER BY " + TaskRepository.LATEST_FIRST + " LIMIT 1), " +
+            "version = task.version + 1 " +
+            "FROM (SELECT t.task_id, COALESCE(SUM(" + TaskRepository.LOG_MILLIS + ") FILTER (WHERE t.end_time IS NOT NULL), 0) AS millis, " +
+            "MAX(t.start_time) FILTER (WHERE t.end_time IS NULL) AS open_segment_start FROM deleted t GROUP BY t.task_id) d " +
+            "WHERE task.id = d.task_id) ";
+
+    /**
+     * Auto-stops the ongoing time logs of at most {@code limit} running tasks in one statement, all with the same
+     * end time, and adds the stopped segments to the daily effort rollup and the running totals of their tasks
+     * in the same statement. See {@link #STOP_LOCKED} for the order of the locks.
+     * @param end The end time to set.
+     * @param limit The maximum number of tasks to stop.
+     * @return The number of stopped time logs.
      */
-    List<TimeLog> findByTaskOrderByStartTimeAsc(Task task);
+    @Transactional
+    @Query(value = "WITH locked AS (" +
+            "SELECT task.id FROM tasks task WHERE " + RUNNING_WITH_ONGOING_LOG +
+            "ORDER BY task.id LIMIT :limit FOR UPDATE), " +
+            STOP_LOCKED +
+            ROLL_UP_STOPPED + ", " + CLOSE_STOPPED_TOTALS +
+            "SELECT COUNT(*) FROM stopped",
+            nativeQuery = true)
+    int autoStopOngoingChunk(@Param("end") LocalDateTime end, @Param("limit") int limit);
+
+    /**
+     * Finds the time zones of the users with ongoing time logs, served from the index of the ongoing logs.
+     * @param serverZone The time zone of the server, standing for the users without one.
+     * @return The distinct time zones.
+     */
+    @Query(value = "SELECT DISTINCT COALESCE(u.time_zone, :serverZone) FROM time_logs t " +
+            "JOIN tasks k ON k.id = t.task_id JOIN app_user u ON u.id = k.user_id " +
+            "WHERE t.end_time IS NULL AND t.task_state = 'ONGOING'", nativeQuery = true)
+    List<String> findOngoingTimeZones(@Param("serverZone") String serverZone);
+
+    /**
+     * Auto-stops the ongoing time logs of at most {@code limit} running tasks of the users in the given time zone,
+     * whose open segment started before the given end time, as {@link #autoStopOngoingChunk} does for all of them.
+     * @param end The end time to set, only the segments started before it are stopped.
+     * @param zone The time zone whose users' logs are stopped.
+     * @param serverZone The time zone of the server, standing for the users without one.
+     * @param limit The maximum number of tasks to stop.
+     * @return The number of stopped time logs.
+     */
+    @Transactional
+    @Query(value = "WITH locked AS (" +
+            "SELECT task.id FROM tasks task JOIN app_user u ON u.id = task.user_id WHERE " + RUNNING_WITH_ONGOING_LOG +
+            "AND COALESCE(u.time_zone, :serverZone) = :zone AND task.open_segment_start < :end " +
+            "ORDER BY task.id LIMIT :limit FOR UPDATE OF task), " +
+            STOP_LOCKED +
+            ROLL_UP_STOPPED + ", " + CLOSE_STOPPED_TOTALS +
+            "SELECT COUNT(*) FROM stopped",
+            nativeQuery = true)
+    int autoStopOngoingChunkInZone(@Param("end") LocalDateTime end, @Param("zone") String zone,
+                                   @Param("serverZone") String serverZone, @Param("limit") int limit);
+
+    /**
+     * Compare-and-set of a task row against the version read by a preceding "cur" CTE. After waiting for a concurrent
+     * transition of the same task the version no longer matches, the CAS updates nothing and neither does anything
+     * gated on it, so the caller retries with a fresh snapshot.
+     */
+    String CAS_TASK = "UPDATE tasks task SET version = task.version + 1, ";
+
+    /**
+     * Makes the time log pre-allocated by a preceding "cur" CTE (its log_id) the current ongoing one of the task.
+     */
+    String CURRENT_ONGOING = "current_state = 'ONGOING', current_log_id = cur.log_id ";
 
     /**
-     * Finds time logs where the start time is before the specified cutoff.
+     * The statement of {@link #startSegment}, with the named parameters task_id and now.
+     * Shared with {@link ReactiveTaskRepository}.
+     */
+    String START_SEGMENT = "WITH cur AS (" +
+            "SELECT task.id, task.version, nextval('time_logs_seq') AS log_id FROM tasks task " +
+            "WHERE task.id = :task_id AND task.open_segment_start IS NULL), " +
+            "cas AS (" + CAS_TASK + "open_segment_start = CAST(:now AS TIMESTAMP), " + CURRENT_ONGOING +
+            "FROM cur WHERE task.id = cur.id AND task.version = cur.version " + CAS_RETURNING + ", task.current_log_id), " +
+            "started AS (" +
+            "INSERT INTO time_logs (id, task_id, start_time, task_state, ended_by_user) " +
+            "SELECT cas.current_log_id, cas.id, CAST(:now AS TIMESTAMP), 'ONGOING', FALSE FROM cas " +
+            "RETURNING id, task_id, start_time, end_time, task_state) " +
+            TRANSITION_COLUMNS + "FROM started s INNER JOIN cas task ON task.id = s.task_id";
+
+    /**
+     * The statement of {@link #resumeSegment}, with the named parameters task_id and now.
+     * Shared with {@link ReactiveTaskRepository}.
+     */
+    String RESUME_SEGMENT = "WITH cur AS (" +
+            "SELECT task.id, task.version, nextval('time_logs_seq') AS log_id FROM tasks task " +
+            "WHERE task.id = :task_id AND task.open_segment_start IS NULL " +
+            "AND EXISTS (SELECT 1 FROM time_logs p WHERE p.task_id = task.id AND p.task_state = 'PAUSED')), " +
+            "cas AS (" + CAS_TASK + "open_segment_start = CAST(:now AS TIMESTAMP), " + CURRENT_ONGOING +
+            "FROM cur WHERE task.id = cur.id AND task.version = cur.version " + CAS_RETURNING + ", task.current_log_id), " +
+            "resumed AS (" +
+            "UPDATE time_logs SET task_state = 'USER_STOPPED' WHERE task_id IN (SELECT id FROM cas) AND task_state = 'PAUSED'), " +
+            "started AS (" +
+            "INSERT INTO time_logs (id, task_id, start_time, task_state, ended_by_user) " +
+            "SELECT cas.current_log_id, cas.id, CAST(:now AS TIMESTAMP), 'ONGOING', FALSE FROM cas " +
+            "RETURNING id, task_id, start_time, end_time, task_state) " +
+            TRANSITION_COLUMNS + "FROM started s INNER JOIN cas task ON task.id = s.task_id";
+
+    /**
+     * Closes the open segment of the task selected by a preceding "cur" CTE (its id, version and open_segment_start),
+     * with the named parameters now and task_state: the rest of the statements closing a segment.
+     */
+    String CLOSE_CUR_SEGMENT = "cas AS (" +
+            CAS_TASK + "closed_millis = task.closed_millis + " + TaskRepository.OPEN_SEGMENT_MILLIS + ", " +
+            "open_segment_start = NULL, current_state = :task_state " +
+            "FROM cur WHERE task.id = cur.id AND task.version = cur.version " +
+            CAS_RETURNING + ", cur.open_segment_start AS closed_segment_start), " +
+            "stopped AS (" +
+            "UPDATE time_logs t SET end_time = CAST(:now AS TIMESTAMP), task_state = :task_state FROM cas " +
+            "WHERE t.task_id = cas.id AND t.start_time = cas.closed_segment_start AND t.end_time IS NULL " +
+            "RETURNING t.id, t.task_id, t.start_time, t.end_time, t.task_state), " +
+            ROLL_UP_STOPPED +
+            TRANSITION_COLUMNS + "FROM stopped s INNER JOIN cas task ON task.id = s.task_id";
+
+    /**
+     * The statement of {@link #closeSegment}, with the named parameters task_id, now and task_state.
+     * Shared with {@link ReactiveTaskRepository}.
+     */
+    String CLOSE_SEGMENT = "WITH cur AS (" +
+            "SELECT task.id, task.version, task.open_segment_start FROM tasks task " +
+            "WHERE task.id = :task_id AND task.open_segment_start IS NOT NULL), " + CLOSE_CUR_SEGMENT;
+
+    /**
+     * The statement of {@link #closeSegmentStartedAt}, with the named parameters task_id, segment_start, now
+     * and task_state.
+     */
+    String CLOSE_SEGMENT_STARTED_AT = "WITH cur AS (" +
+            "SELECT task.id, task.version, task.open_segment_start FROM tasks task " +
+            "WHERE task.id = :task_id AND task.open_segment_start = CAST(:segment_start AS TIMESTAMP)), " +
+            CLOSE_CUR_SEGMENT;
+
+    /**
+     * Starts a task in one statement: claims the task row if it has no open segment, then inserts the new ongoing
+     * time log as its open segment and current time log.
+     * @param taskId The id of the task.
+     * @param now The start time to set.
+     * @return The started time log, empty if the task is missing, already started or changed concurrently.
+     */
+    @Transactional
+    @Query(value = START_SEGMENT, nativeQuery = true)
+    Optional<TaskTransition> startSegment(@Param("task_id") Long taskId, @Param("now") LocalDateTime now);
+
+    /**
+     * Resumes a paused task in one statement: claims the task row if it has no open segment but a paused time log,
+     * tags its paused time logs USER_STOPPED and inserts a new ongoing one as its open segment and current time log.
+     * @param taskId The id of the task.
+     * @param now The start time to set.
+     * @return The started time log, empty if the task is missing, not paused or changed concurrently.
+     */
+    @Transactional
+    @Query(value = RESUME_SEGMENT, nativeQuery = true)
+    Optional<TaskTransition> resumeSegment(@Param("task_id") Long taskId, @Param("now") LocalDateTime now);
+
+    /**
+     * Stops or pauses a task in one statement: claims the task row if it has an open segment, moves the segment to its
+     * closed total, closes the time log of the segment (found by task and start, so in one partition) with the given
+     * state, which becomes the current state of the task, and adds it to the daily effort rollup.
+     * @param taskId The id of the task.
+     * @param now The end time to set.
+     * @param taskState The state to set, USER_STOPPED or PAUSED.
+     * @return The closed time log, empty if the task is missing, has no open segment or changed concurrently.
+     */
+    @Transactional
+    @Query(value = CLOSE_SEGMENT, nativeQuery = true)
+    Optional<TaskTransition> closeSegment(@Param("task_id") Long taskId, @Param("now") LocalDateTime now,
+                                          @Param("task_state") String taskState);
+
+    /**
+     * Closes one given segment of a task in one statement, like {@link #closeSegment}, if it is still the open one:
+     * a segment closed meanwhile, even if the task was started again since, is left alone.
+     * @param taskId The id of the task.
+     * @param segmentStart The start of the segment to close.
+     * @param now The end time to set.
+     * @param taskState The state to set.
+     * @return The closed time log, empty if the task is missing, has another or no open segment or changed concurrently.
+     */
+    @Transactional
+    @Query(value = CLOSE_SEGMENT_STARTED_AT, nativeQuery = true)
+    Optional<TaskTransition> closeSegmentStartedAt(@Param("task_id") Long taskId,
+                                                   @Param("segment_start") LocalDateTime segmentStart,
+                                                   @Param("now") LocalDateTime now, @Param("task_state") String taskState);
+
+    /**
+     * Checks whether the specified task has a time log in the given state.
+     * @param taskId The id of the task.
+     * @param taskState The state of the time log.
+     * @return TRUE if it has one and FALSE if not.
+     */
+    boolean existsByTaskIdAndTaskState(Long taskId, TaskState taskState);
+
+    /**
+     * Finds the earliest start of a closed time log.
+     * @return The start time, or null if there is no closed time log.
+     */
+    @Query("SELECT MIN(t.startTime) FROM TimeLog t WHERE t.endTime IS NOT NULL")
+    LocalDateTime findMinClosedStartTime();
+
+    /**
+     * Finds the latest end of a time log.
+     * @return The end time, or null if there is no closed time log.
+     */
+    @Query("SELECT MAX(t.endTime) FROM TimeLog t")
+    LocalDateTime findMaxEndTime();
+
+    /**
+     * Finds the stored segment of a time log, bypassing any managed instance of it.
+     * Pending changes are not flushed before, so a modified managed instance still reads as its previous version.
+     * @param id The id of the time log.
+     * @return An OPTIONAL segment.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    @Query(value = "SELECT t.task_id AS \"taskId\", t.start_time AS \"startTime\", t.end_time AS \"endTime\" " +
+            "FROM time_logs t WHERE t.id = :id", nativeQuery = true)
+    Optional<TimeLogSegment> findSegmentById(@Param("id") Long id);
+
+    /**
+     * Checks whether the specified task has any time log.
+     * @param taskId The id of the task.
+     * @return TRUE if it has one and FALSE if not.
+     */
+    boolean existsByTaskId(Long taskId);
+
+    /**
+     * Deletes at most {@code limit} time logs started before the specified cutoff, in one statement,
+     * and takes them out of the running totals of their tasks.
+     * The tasks are locked before their time logs, in the order of their ids, like the transitions lock them.
      * @param cutoff The cutoff time.
+     * @param limit The maximum number of time logs to delete.
+     * @return The number of deleted time logs.
+     */
+    @Transactional
+    @Query(value = "WITH picked AS (SELECT t.id, t.task_id FROM time_logs t WHERE t.start_time < :cutoff LIMIT :limit), " +
+            "locked AS (SELECT task.id FROM tasks task WHERE task.id IN (SELECT p.task_id FROM picked p) " +
+            "ORDER BY task.id FOR UPDATE), " +
+            "deleted AS (DELETE FROM time_logs t USING picked p, locked WHERE t.id = p.id AND t.task_id = locked.id " +
+            "RETURNING t.id, t.task_id, t.start_time, t.end_time), " +
+            SUBTRACT_DELETED +
+            "SELECT COUNT(*) FROM deleted",
+            nativeQuery = true)
+    int deleteChunkStartedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    /**
+     * Deletes all time logs of all tasks of the given users in one statement.
+     * Flushes and clears the persistence context, which may still hold them.
+     * @param userIds The ids of the users.
+     * @return The number of deleted time logs.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM TimeLog t WHERE t.task.id IN (SELECT k.id FROM Task k WHERE k.user.id IN :userIds)")
+    int deleteByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Deletes all time logs of a task and its daily effort rows in one statement, the task row locked first as the
+     * transitions do. Its running totals are left to reset.
+     * @param taskId The id of the task.
+     * @return The number of deleted time logs.
+     */
+    @Transactional
+    @Query(value = "WITH locked AS (SELECT task.id FROM tasks task WHERE task.id = :taskId FOR UPDATE), " +
+            "deleted AS (DELETE FROM time_logs t USING locked WHERE t.task_id = locked.id RETURNING t.id), " +
+            "efforts AS (DELETE FROM daily_effort d USING locked WHERE d.task_id = locked.id) " +
+            "SELECT COUNT(*) FROM deleted",
+            nativeQuery = true)
+    int deleteByTaskId(@Param("taskId") Long taskId);
+
+    /**
+     * Finds the most recent time logs of a task, newest first.
+     * @param taskId The id of the task.
+     * @param pageable The page to fetch, bounds the number of time logs.
      * @return A list of time logs that matches these criteria.
      */
-    List<TimeLog> findByStartTimeBefore(LocalDateTime cutoff);
+    List<TimeLog> findByTaskIdOrderByStartTimeDesc(Long taskId, Pageable pageable);
 
     /**
      * Finds the most recent time log for the specified task.
@@ -68,24 +400,26 @@ public interface TimeLogRepository extends JpaRepository <TimeLog, Long> {
     List<TimeLog> findByTask(Task task);
 
     /**
-     * Finds all time logs for a specific task.
+     * Finds all time logs for a specific task, the most recent first.
      * @param task The task for which to find the time logs.
      * @return A list of time logs that matches the specified criteria.
      */
-    List<TimeLog> findAllByTask(Task task);
+    List<TimeLog> findAllByTaskOrderByStartTimeDescIdDesc(Task task);
 
 
 
     /**
      * Deprecated method. Please refer to {@link #getTotalWorkEffortInSeconds} instead.
+     * (which itself is superseded by the rollup-backed {@link DailyEffortRepository#getTotalEffortSeconds})
      */
-    @Query("SELECT t FROM TimeLog t WHERE t.task.user = :user AND ((t.startTime < :end AND t.endTime > :start) OR (t.endTime is NULL AND t.startTime < :end))")
+    @Query("SELECT t FROM TimeLog t WHERE t.task.user = :user AND t.startTime < :end AND (t.endTime > :start OR t.endTime IS NULL)")
     List<TimeLog> findTST (User user, LocalDateTime start, LocalDateTime end);
 
     // TODO: too complex and unreadable for newbies (like me). But MUCH faster and independent of traffic
 
     /**
      * Fetches the total work effort in seconds by a user within a specified time range. This query uses native SQL for performance and data transfer reason reasons ^-^
+     * The start_time bound is kept outside the OR, so partitions of months after the range are pruned.
      *
      * @param id The id of the user.
      * @param start The start of the time range.
@@ -95,9 +429,43 @@ public interface TimeLogRepository extends JpaRepository <TimeLog, Long> {
     @Query(value = "SELECT SUM(EXTRACT(EPOCH FROM (LEAST(COALESCE(t.end_time, CURRENT_TIMESTAMP), :end) - GREATEST(t.start_time, :start)))) " +
             "FROM time_logs t " +
             "INNER JOIN tasks task ON t.task_id = task.id " +
-            "WHERE task.user_id = :user_id AND ((t.start_time < :end AND t.end_time > :start) OR (t.end_time IS NULL AND t.start_time < :end)) " +
+            "WHERE task.user_id = :user_id AND t.start_time < :end AND (t.end_time > :start OR t.end_time IS NULL) " +
             "HAVING SUM(EXTRACT(EPOCH FROM (LEAST(COALESCE(t.end_time, CURRENT_TIMESTAMP), :end) - GREATEST(t.start_time, :start)))) > 0",
             nativeQuery = true)
     Long getTotalWorkEffortInSeconds(@Param("user_id") Long id, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
+    /**
+     * Fetches the first keyset page of time logs ordered by start time and id.
+     * Logs without a start time can't be positioned by the cursor, so they are skipped.
+     *
+     * @param limit The maximum number of time logs to return.
+     * @return A list of at most {@code limit} time logs.
+     */
+    @Query(value = "SELECT * FROM time_logs t WHERE t.start_time IS NOT NULL " +
+            "ORDER BY t.start_time, t.id LIMIT :limit",
+            nativeQuery = true)
+    List<TimeLog> findFirstPage(@Param("limit") int limit);
+
+    /**
+     * Fetches the keyset page of time logs that follows the given (start time, id) position.
+     *
+     * @param startTime The start time of the last time log of the previous page.
+     * @param id The id of the last time log of the previous page.
+     * @param limit The maximum number of time logs to return.
+     * @return A list of at most {@code limit} time logs.
+     */
+    @Query(value = "SELECT * FROM time_logs t WHERE (t.start_time, t.id) > (:start_time, :id) " +
+            "ORDER BY t.start_time, t.id LIMIT :limit",
+            nativeQuery = true)
+    List<TimeLog> findPageAfter(@Param("start_time") LocalDateTime startTime, @Param("id") Long id, @Param("limit") int limit);
+
+    /**
+     * Streams all time logs ordered by start time and id, reading them from the database in fetch-size batches.
+     * Must be consumed inside a transaction and closed afterwards.
+     *
+     * @return A stream over all time logs.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("SELECT t FROM TimeLog t ORDER BY t.startTime, t.id")
+    Stream<TimeLog> streamAllOrderByStartTime();
 }
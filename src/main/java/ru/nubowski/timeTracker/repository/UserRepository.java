@@ -1,9 +1,17 @@
 package ru.nubowski.timeTracker.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import ru.nubowski.timeTracker.model.User;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,11 +23,23 @@ public interface UserRepository extends JpaRepository <User, Long> {
 
     /**
      * Finds a user with the specified username.
+     * The id found is kept in the query cache until the users table changes, the user itself in the entity cache.
      * @param username The username of the user.
      * @return An OPTIONAL user that matches the specified username.
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByUsername(String username);
 
+    /**
+     * Finds a user by username together with all their tasks and time logs, in one statement.
+     * Only for views that really show the whole history of the user.
+     *
+     * @param username the username
+     * @return an optional user
+     */
+    @EntityGraph(attributePaths = {"tasks", "tasks.timeLogs"})
+    Optional<User> findWithTasksByUsername(String username);
+
     /**
      * Finds a user with the specified username.
      * @param username The username of the user.
@@ -28,9 +48,25 @@ public interface UserRepository extends JpaRepository <User, Long> {
     User findUserByUsername (String username);
 
     /**
-     * Finds all users that were created before the specified cutoff time.
+     * Finds the ids of at most {@code limit} users that were created before the specified cutoff time,
+     * in ascending order after the given id, so the users can be paged through by key.
      * @param cutoff The cutoff time to check users against.
-     * @return A list of users that were created before the cutoff time.
+     * @param afterId The last id of the previous page, {@link Long#MIN_VALUE} for the first one.
+     * @param limit The maximum number of ids to return.
+     * @return A list of ids of users that were created before the cutoff time.
+     */
+    @Query(value = "SELECT u.id FROM app_user u WHERE u.created_at < :cutoff AND u.id > :afterId " +
+            "ORDER BY u.id LIMIT :limit", nativeQuery = true)
+    List<Long> findIdsCreatedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("afterId") long afterId,
+                                    @Param("limit") int limit);
+
+    /**
+     * Deletes the users with the given ids in one statement, their tasks by the cascade of their foreign key
+     * if not deleted before. Flushes and clears the persistence context, which may still hold them.
+     * @param ids The ids of the users to delete.
+     * @return The number of deleted users.
      */
-    List<User> findByCreatedAtBefore(LocalDateTime cutoff);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM User u WHERE u.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,170 @@
+package ru.nubowski.timeTracker.schedule;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import ru.nubowski.timeTracker.config.SchedulerLockProperties;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets a single instance of the application run a scheduled job per trigger, when several share the database.
+ * A run first takes a PostgreSQL session advisory lock named after its job, on a connection of its own; the other
+ * instances find it taken and skip that trigger. No table and no other service is involved: if the instance holding
+ * a lock dies, its connection is closed and the database releases the lock by itself.
+ * <p>
+ * A lock is held for a minimum time from the start of a run even if the run is quicker, so an instance whose clock
+ * lags a little behind does not run the same trigger once more. The time each lock was held is recorded under
+ * timetracker.scheduler.lock.held and the skipped runs are counted under timetracker.scheduler.lock.skipped, by job.
+ */
+@Component
+public class SchedulerLock {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchedulerLock.class);
+    /**
+     * The first key of the advisory locks of the jobs, the second one is the hash of the job name. Keeps them apart
+     * from any other advisory locks taken on the same database.
+     */
+    static final int LOCK_NAMESPACE = 0x54545343; // "TTSC"
+    private static final String TRY_LOCK = "SELECT pg_try_advisory_lock(?, ?)";
+    private static final String UNLOCK = "SELECT pg_advisory_unlock(?, ?)";
+    private final ScheduledExecutorService releaser;
+    private final DataSource dataSource;
+    private final SchedulerLockProperties schedulerLockProperties;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Constructor for SchedulerLock.
+     *
+     * @param dataSource              the data source, a connection of which holds the lock of a running job
+     * @param schedulerLockProperties the properties used for configuring the locks
+     * @param meterRegistry           the registry for the lock metrics
+     */
+    public SchedulerLock(DataSource dataSource, SchedulerLockProperties schedulerLockProperties,
+                         MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.schedulerLockProperties = schedulerLockProperties;
+        this.meterRegistry = meterRegistry;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("scheduler-lock-");
+        threadFactory.setDaemon(true);
+        this.releaser = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    /**
+     * Runs the job if no other instance holds its lock, holding it meanwhile.
+     * A job that fails still releases its lock, its exception is rethrown.
+     *
+     * @param job  the name of the job, the same on all instances
+     * @param work the job itself
+     * @return true if the job ran, false if the trigger was skipped
+     */
+    public boolean runLocked(String job, Runnable work) {
+        if (!schedulerLockProperties.isEnabled()) {
+            work.run();
+            return true;
+        }
+        long startedAt = System.nanoTime();
+        Connection connection = tryLock(job);
+        if (connection == null) {
+            Counter.builder("timetracker.scheduler.lock.skipped")
+                    .description("Runs of scheduled jobs skipped, their lock held by another instance")
+                    .tag("job", job)
+                    .register(meterRegistry)
+                    .increment();
+            LOGGER.info("Job {} skipped, another instance holds its lock", job);
+            return false;
+        }
+        LOGGER.debug("Lock of job {} taken", job);
+        try {
+            work.run();
+            return true;
+        } finally {
+            long remainingMillis = schedulerLockProperties.getMinimumHoldMillis()
+                    - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            if (remainingMillis > 0) {
+                releaser.schedule(() -> release(job, connection, startedAt), remainingMillis, TimeUnit.MILLISECONDS);
+            } else {
+                release(job, connection, startedAt);
+            }
+        }
+    }
+
+    /**
+     * Releases the locks still held for their minimum time right away, before the connections are closed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        releaser.shutdownNow().forEach(Runnable::run);
+    }
+
+    private Connection tryLock(String job) {
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(true); // the lock belongs to the session, not to a transaction
+            if (call(connection, TRY_LOCK, job)) {
+                return connection;
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Lock of job {} could not be taken", job, e);
+        }
+        close(job, connection);
+        return null;
+    }
+
+    private void release(String job, Connection connection, long startedAt) {
+        try {
+            if (!call(connection, UNLOCK, job)) {
+                LOGGER.warn("Lock of job {} was no longer held", job);
+            }
+        } catch (SQLException e) {
+            // a session still holding the lock must not go back to the pool
+            LOGGER.error("Lock of job {} could not be released, dropping its connection", job, e);
+            try {
+                connection.abort(Runnable::run);
+            } catch (SQLException abortFailure) {
+                LOGGER.warn("Connection of job {} could not be aborted", job, abortFailure);
+            }
+        } finally {
+            close(job, connection);
+            Timer.builder("timetracker.scheduler.lock.held")
+                    .description("Time the lock of a scheduled job was held by this instance")
+                    .tag("job", job)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            LOGGER.debug("Lock of job {} released", job);
+        }
+    }
+
+    private boolean call(Connection connection, String function, String job) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(function)) {
+            statement.setInt(1, LOCK_NAMESPACE);
+            statement.setInt(2, job.hashCode());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private void close(String job, Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.warn("Connection of job {} could not be closed", job, e);
+        }
+    }
+}
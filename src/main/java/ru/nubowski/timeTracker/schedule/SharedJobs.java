@@ -0,0 +1,74 @@
+package ru.nubowski.timeTracker.schedule;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.nubowski.timeTracker.service.CleanupService;
+import ru.nubowski.timeTracker.service.PartitionMaintenanceService;
+import ru.nubowski.timeTracker.service.impl.TaskTotalsService;
+import ru.nubowski.timeTracker.service.impl.TimeLogService;
+
+/**
+ * The scheduled jobs working on the shared database, each run by a single instance of the application per trigger
+ * (see {@link SchedulerLock}). The jobs on the memory of an instance, the reconciliation of its running timers, the
+ * watchdog of their maximum segment length and the purge of its report jobs, stay scheduled on every instance by
+ * their services.
+ */
+@Component
+public class SharedJobs {
+    private final SchedulerLock schedulerLock;
+    private final CleanupService cleanupService;
+    private final TimeLogService timeLogService;
+    private final PartitionMaintenanceService partitionMaintenanceService;
+    private final TaskTotalsService taskTotalsService;
+
+    /**
+     * Constructor for SharedJobs.
+     *
+     * @param schedulerLock               the lock letting a single instance run a job per trigger
+     * @param cleanupService              service deleting the data past its retention
+     * @param timeLogService              service auto-stopping the ongoing tasks
+     * @param partitionMaintenanceService service creating the upcoming partitions of the time logs
+     * @param taskTotalsService           service verifying the running totals of the tasks
+     */
+    public SharedJobs(SchedulerLock schedulerLock, CleanupService cleanupService, TimeLogService timeLogService,
+                      PartitionMaintenanceService partitionMaintenanceService, TaskTotalsService taskTotalsService) {
+        this.schedulerLock = schedulerLock;
+        this.cleanupService = cleanupService;
+        this.timeLogService = timeLogService;
+        this.partitionMaintenanceService = partitionMaintenanceService;
+        this.taskTotalsService = taskTotalsService;
+    }
+
+    /**
+     * Deletes the old tasks, time logs and users, see {@link CleanupService#cleanup()}.
+     */
+    @Scheduled(cron = "#{cleanupProperties.getCronExpression()}") // double check cron expression every time
+    public void cleanup() {
+        schedulerLock.runLocked("cleanup", cleanupService::cleanup);
+    }
+
+    /**
+     * Stops the ongoing tasks of the time zones at their end of day, see {@link TimeLogService#autoEndTasksAtEndOfDay()}.
+     * The other instances pick the stopped timers up at the next reconciliation of their registry.
+     */
+    @Scheduled(cron = "#{autoStopProperties.getCronExpression()}")
+    public void autoEndTasks() {
+        schedulerLock.runLocked("autoEndTasks", timeLogService::autoEndTasksAtEndOfDay);
+    }
+
+    /**
+     * Creates the partitions of the upcoming months, see {@link PartitionMaintenanceService#createUpcomingPartitions()}.
+     */
+    @Scheduled(cron = "#{partitionProperties.getCronExpression()}")
+    public void createUpcomingPartitions() {
+        schedulerLock.runLocked("createUpcomingPartitions", partitionMaintenanceService::createUpcomingPartitions);
+    }
+
+    /**
+     * Verifies the running totals of the tasks, see {@link TaskTotalsService#verifyTotals()}.
+     */
+    @Scheduled(cron = "#{totalsProperties.getCronExpression()}")
+    public void verifyTotals() {
+        schedulerLock.runLocked("verifyTotals", taskTotalsService::verifyTotals);
+    }
+}
@@ -0,0 +1,200 @@
+package ru.nubowski.timeTracker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.nubowski.timeTracker.dto.TaskTimer;
+import ru.nubowski.timeTracker.repository.TaskRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-memory registry of the task timers, so the running tasks and their elapsed time are read without the database.
+ * It is loaded from the tasks with an open segment at startup, kept up to date by the task state transitions and
+ * time log edits once they commit, and reconciled with the tasks table on a schedule, which also picks up the changes
+ * of bulk statements (the auto-stop, purges) and of other instances of the application.
+ * <p>
+ * Every timer carries the version of the task row it was read at and only replaces a timer of the same or a lower
+ * version, so updates applied out of order, or racing a reconciliation, never bring back an older state.
+ * Stopped timers are kept until the following reconciliation for that reason.
+ * <p>
+ * Listeners get the current timer of a task whenever one is merged into the registry, including at startup and at
+ * every reconciliation, so they are rebuilt from the database the same way the registry is.
+ */
+@Service
+public class ActiveTimerRegistry implements ApplicationRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActiveTimerRegistry.class);
+    private final ConcurrentMap<Long, TaskTimer> timers = new ConcurrentHashMap<>();
+    private final List<Consumer<TaskTimer>> listeners = new CopyOnWriteArrayList<>();
+    private final TaskRepository taskRepository;
+
+    /**
+     * Constructor for ActiveTimerRegistry.
+     *
+     * @param taskRepository repository holding the timers of the tasks
+     */
+    public ActiveTimerRegistry(TaskRepository taskRepository) {
+        this.taskRepository = taskRepository;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        reconcile();
+    }
+
+    /**
+     * Adds a listener of the timers merged into the registry, called on the thread merging them.
+     * The timer it gets is the current one of its task, running or not, which may be the same as before.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Consumer<TaskTimer> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Applies the timer left by a task state transition, once the surrounding transaction commits.
+     *
+     * @param timer the timer of the task after the transition
+     */
+    public void apply(TaskTimer timer) {
+        afterCommit(() -> merge(timer));
+    }
+
+    /**
+     * Reads the timer of a task again once the surrounding transaction commits, after it was changed
+     * outside the transitions.
+     *
+     * @param taskId the id of the task
+     */
+    public void refresh(Long taskId) {
+        afterCommit(() -> {
+            List<TaskTimer> found = taskRepository.findTimersByIds(List.of(taskId));
+            if (found.isEmpty()) {
+                timers.remove(taskId);
+            } else {
+                merge(found.get(0));
+            }
+        });
+    }
+
+    /**
+     * Forgets the timers of tasks deleted in bulk, once the surrounding transaction commits.
+     *
+     * @param taskIds the ids of the deleted tasks
+     */
+    public void forget(Collection<Long> taskIds) {
+        afterCommit(() -> timers.keySet().removeAll(taskIds));
+    }
+
+    /**
+     * Returns the time elapsed on a running task.
+     *
+     * @param taskId the id of the task
+     * @param now the end of the open segment
+     * @return the time elapsed, empty if the task is not known to be running
+     */
+    public Optional<Duration> getElapsed(Long taskId, LocalDateTime now) {
+        TaskTimer timer = timers.get(taskId);
+        return timer != null && timer.isRunning() ? Optional.of(timer.getElapsed(now)) : Optional.empty();
+    }
+
+    /**
+     * Returns the timers of the running tasks.
+     *
+     * @return a list of the running timers ordered by task id
+     */
+    public List<TaskTimer> getRunningTimers() {
+        return timers.values().stream()
+                .filter(TaskTimer::isRunning)
+                .sorted(Comparator.comparing(TaskTimer::getTaskId))
+                .toList();
+    }
+
+    /**
+     * Reconciles the registry with the tasks table: merges the running timers and the current timers of the tasks
+     * already known, forgets deleted tasks and the timers stopped before the previous reconciliation.
+     *
+     * @return the number of running timers
+     */
+    @Scheduled(cron = "#{timersProperties.getReconcileCronExpression()}")
+    public int reconcile() {
+        Map<Long, TaskTimer> before = new HashMap<>(timers);
+        Map<Long, Long> versions = new HashMap<>();
+        for (TaskTimer timer : taskRepository.findRunningTimers()) {
+            versions.put(timer.getTaskId(), timer.getVersion());
+            merge(timer);
+        }
+        Set<Long> others = new HashSet<>(before.keySet());
+        others.removeAll(versions.keySet());
+        if (!others.isEmpty()) {
+            for (TaskTimer timer : taskRepository.findTimersByIds(others)) {
+                versions.put(timer.getTaskId(), timer.getVersion());
+                merge(timer);
+            }
+        }
+        int corrected = 0;
+        for (Map.Entry<Long, TaskTimer> known : before.entrySet()) {
+            Long version = versions.get(known.getKey());
+            if (version == null) {
+                timers.remove(known.getKey()); // the task is deleted
+                corrected++;
+            } else if (!known.getValue().isRunning()) {
+                timers.computeIfPresent(known.getKey(),
+                        (taskId, timer) -> !timer.isRunning() && timer.getVersion() <= version ? null : timer);
+            } else if (known.getValue().getVersion() < version) {
+                corrected++;
+            }
+        }
+        int running = getRunningTimers().size();
+        LOGGER.info("Timers reconciled: {} running, {} of {} known were behind", running, corrected, before.size());
+        return running;
+    }
+
+    private void merge(TaskTimer timer) {
+        TaskTimer merged = timers.merge(timer.getTaskId(), timer,
+                (current, next) -> next.getVersion() >= current.getVersion() ? next : current);
+        for (Consumer<TaskTimer> listener : listeners) {
+            try {
+                listener.accept(merged);
+            } catch (RuntimeException e) {
+                LOGGER.warn("A listener failed on the timer of task {}", merged.getTaskId(), e);
+            }
+        }
+    }
+
+    private void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    update.run();
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Updating a timer after commit failed, left to the next reconciliation", e);
+                }
+            }
+        });
+    }
+}
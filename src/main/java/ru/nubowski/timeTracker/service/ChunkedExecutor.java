@@ -0,0 +1,192 @@
+package ru.nubowski.timeTracker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs a set-based statement (bulk DELETE/UPDATE) over a large table in bounded chunks.
+ * Every chunk commits in its own transaction, so no giant transaction or lock set is ever held,
+ * and an optional pause between chunks throttles the load on the database.
+ * Chunks over pages of ids may also run concurrently on a bounded pool of threads, one failing without the others.
+ */
+@Service
+public class ChunkedExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedExecutor.class);
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Constructor for ChunkedExecutor.
+     *
+     * @param transactionManager the transaction manager used to commit each chunk separately
+     */
+    public ChunkedExecutor(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Repeats the chunk until it affects fewer rows than the chunk size.
+     *
+     * @param operation   the name of the operation, for logging
+     * @param chunkSize   the maximum number of rows one chunk may touch
+     * @param pauseMillis the pause between two chunks, 0 to run them back to back
+     * @param chunk       the chunk itself, gets the chunk size and returns the number of affected rows
+     * @return the total number of affected rows
+     */
+    public long execute(String operation, int chunkSize, long pauseMillis, IntUnaryOperator chunk) {
+        long startedAt = System.nanoTime();
+        long total = 0;
+        int chunks = 0;
+        while (true) {
+            Integer affected = transactionTemplate.execute(status -> chunk.applyAsInt(chunkSize));
+            int rows = affected != null ? affected : 0;
+            total += rows;
+            chunks++;
+            LOGGER.debug("{}: chunk {} affected {} rows", operation, chunks, rows);
+            if (rows < chunkSize) {
+                break;
+            }
+            if (pauseMillis > 0 && !pause(pauseMillis)) {
+                LOGGER.warn("{}: interrupted after {} chunks", operation, chunks);
+                break;
+            }
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        LOGGER.info("{}: {} rows in {} chunks, {} ms ({} rows/sec)",
+                operation, total, chunks, elapsedMillis, total * 1000 / elapsedMillis);
+        return total;
+    }
+
+    /**
+     * Runs the chunk over the pages of ids, at most {@code threads} chunks at once, each in its own transaction.
+     * The pages are read one after another on the calling thread, by key, so a chunk that fails is rolled back,
+     * logged with its range of ids and skipped, while the others go on; its rows are left for the next run.
+     * Progress is logged as the chunks complete. Returns once all chunks are complete.
+     *
+     * @param operation   the name of the operation, for logging and the names of the threads
+     * @param chunkSize   the maximum number of ids of one page
+     * @param threads     the maximum number of chunks run at once
+     * @param pauseMillis the pause between reading two pages, 0 to read them back to back
+     * @param nextPage    reads the next page of ids in ascending order, gets the last id of the previous page
+     *                    ({@link Long#MIN_VALUE} for the first one) and the chunk size
+     * @param chunk       the chunk itself, gets the ids of a page and returns the number of affected rows
+     * @return the rows, chunks and failed chunks of the run
+     */
+    public Outcome executeConcurrently(String operation, int chunkSize, int threads, long pauseMillis,
+                                       PageReader nextPage, ToIntFunction<List<Long>> chunk) {
+        long startedAt = System.nanoTime();
+        AtomicLong total = new AtomicLong();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(Math.max(1, threads)); // no more pages read ahead than can be deleted
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads),
+                new CustomizableThreadFactory(operation.replace(' ', '-').toLowerCase() + "-"));
+        int chunks = 0;
+        try {
+            long afterId = Long.MIN_VALUE;
+            while (true) {
+                inFlight.acquire();
+                List<Long> ids = nextPage.read(afterId, chunkSize);
+                if (ids.isEmpty()) {
+                    inFlight.release();
+                    break;
+                }
+                afterId = ids.get(ids.size() - 1);
+                int number = ++chunks;
+                pool.execute(() -> {
+                    try {
+                        Integer affected = transactionTemplate.execute(status -> chunk.applyAsInt(ids));
+                        long rows = total.addAndGet(affected != null ? affected : 0);
+                        LOGGER.info("{}: chunk {} (ids {}..{}) done, {} chunks and {} rows so far, {} failed",
+                                operation, number, ids.get(0), ids.get(ids.size() - 1), completed.incrementAndGet(),
+                                rows, failed.get());
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        LOGGER.error("{}: chunk {} (ids {}..{}) failed and was rolled back, the others go on",
+                                operation, number, ids.get(0), ids.get(ids.size() - 1), e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                if (ids.size() < chunkSize) {
+                    break;
+                }
+                if (pauseMillis > 0 && !pause(pauseMillis)) {
+                    LOGGER.warn("{}: interrupted after {} chunks", operation, chunks);
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("{}: interrupted after {} chunks", operation, chunks);
+        } finally {
+            pool.shutdown();
+            awaitTermination(pool, operation);
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        LOGGER.info("{}: {} rows in {} chunks on {} threads, {} failed, {} ms ({} rows/sec)",
+                operation, total.get(), chunks, threads, failed.get(), elapsedMillis, total.get() * 1000 / elapsedMillis);
+        return new Outcome(total.get(), chunks, failed.get());
+    }
+
+    /**
+     * Reads a page of ids for {@link #executeConcurrently}.
+     */
+    @FunctionalInterface
+    public interface PageReader {
+        /**
+         * Reads the next page of ids, in ascending order.
+         *
+         * @param afterId the last id of the previous page, {@link Long#MIN_VALUE} for the first one
+         * @param limit   the maximum number of ids
+         * @return the ids, empty when there are no more
+         */
+        List<Long> read(long afterId, int limit);
+    }
+
+    /**
+     * The outcome of a concurrent run.
+     *
+     * @param rows         the number of rows affected by the chunks that committed
+     * @param chunks       the number of chunks run
+     * @param failedChunks the number of chunks that failed and were rolled back
+     */
+    public record Outcome(long rows, int chunks, int failedChunks) {
+    }
+
+    private void awaitTermination(ExecutorService pool, String operation) {
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.info("{}: still waiting for the running chunks", operation);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("{}: interrupted while waiting for the running chunks", operation);
+        }
+    }
+
+    private boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -2,7 +2,6 @@ package ru.nubowski.timeTracker.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import ru.nubowski.timeTracker.config.CleanupProperties;
 import ru.nubowski.timeTracker.exception.CleanupFailedException;
@@ -37,12 +36,11 @@ public class CleanupService {
     }
 
     /**
-     * Scheduled method for cleaning up old tasks, time logs, and users.
-     * The cleanup frequency is determined by a cron expression defined in cleanupProperties.
+     * Cleans up old tasks, time logs, and users.
+     * Scheduled by {@link ru.nubowski.timeTracker.schedule.SharedJobs} with the cron expression defined in cleanupProperties.
      *
      * @throws CleanupFailedException if cleanup fails due to a specific problem
      */
-    @Scheduled(cron = "#{cleanupProperties.getCronExpression()}") // double check cron expression every time
     public void cleanup() {
         try {
             LocalDateTime cutoff = LocalDateTime.now().minusDays(cleanupProperties.getRetentionPeriod());
@@ -0,0 +1,119 @@
+package ru.nubowski.timeTracker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.nubowski.timeTracker.config.RollupProperties;
+import ru.nubowski.timeTracker.repository.DailyEffortRepository;
+import ru.nubowski.timeTracker.repository.TimeLogRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Rebuilds the daily effort rollup from the closed time logs, started with {@code --rollup.rebuild=true}.
+ * Months are independent, so they are rebuilt in parallel, each one replaced in its own transaction.
+ * Meant for backfills and repairs while nobody is tracking: a segment closed during the rebuild may be counted twice or not at all.
+ */
+@Component
+@ConditionalOnProperty(prefix = "rollup", name = "rebuild", havingValue = "true")
+public class DailyEffortRebuildRunner implements ApplicationRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DailyEffortRebuildRunner.class);
+    private final TimeLogRepository timeLogRepository;
+    private final DailyEffortRepository dailyEffortRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final RollupProperties rollupProperties;
+
+    /**
+     * Constructor for DailyEffortRebuildRunner.
+     *
+     * @param timeLogRepository     repository for handling time logs
+     * @param dailyEffortRepository repository for the rollup
+     * @param transactionManager    the transaction manager, each month is rebuilt in its own transaction
+     * @param rollupProperties      the properties used for configuring the rollup
+     */
+    public DailyEffortRebuildRunner(TimeLogRepository timeLogRepository, DailyEffortRepository dailyEffortRepository,
+                                    PlatformTransactionManager transactionManager, RollupProperties rollupProperties) {
+        this.timeLogRepository = timeLogRepository;
+        this.dailyEffortRepository = dailyEffortRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rollupProperties = rollupProperties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the whole rollup, month by month in parallel.
+     *
+     * @return the number of rollup rows written
+     * @throws InterruptedException if interrupted while waiting for the months
+     * @throws ExecutionException if a month failed, the other months are rebuilt nevertheless
+     */
+    public long rebuild() throws InterruptedException, ExecutionException {
+        LocalDateTime firstStart = timeLogRepository.findMinClosedStartTime();
+        LocalDateTime lastEnd = timeLogRepository.findMaxEndTime();
+        if (firstStart == null || lastEnd == null) {
+            dailyEffortRepository.deleteAllInBatch();
+            LOGGER.info("No closed time logs, daily effort emptied");
+            return 0;
+        }
+        YearMonth first = YearMonth.from(firstStart);
+        YearMonth last = YearMonth.from(lastEnd);
+        long startedAt = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status ->
+                dailyEffortRepository.deleteByDayNotBetween(first.atDay(1), last.plusMonths(1).atDay(1)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, rollupProperties.getRebuildThreads()));
+        try {
+            List<Future<Integer>> months = new ArrayList<>();
+            for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                YearMonth current = month;
+                months.add(executor.submit(() -> rebuildMonth(current)));
+            }
+            long rows = 0;
+            ExecutionException failure = null;
+            for (Future<Integer> month : months) {
+                try {
+                    rows += month.get();
+                } catch (ExecutionException e) {
+                    LOGGER.error("Rebuilding a month of the daily effort failed", e.getCause());
+                    failure = e;
+                }
+            }
+            LOGGER.info("Daily effort rebuilt: {} rows for {} months in {} ms",
+                    rows, months.size(), (System.nanoTime() - startedAt) / 1_000_000);
+            if (failure != null) {
+                throw failure;
+            }
+            return rows;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private int rebuildMonth(YearMonth month) {
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        Integer rows = transactionTemplate.execute(status -> {
+            dailyEffortRepository.deleteByDayBetween(from, to);
+            return dailyEffortRepository.rebuildDays(from.atStartOfDay(), to.atStartOfDay());
+        });
+        LOGGER.debug("Daily effort of {} rebuilt: {} rows", month, rows);
+        return rows != null ? rows : 0;
+    }
+}
@@ -0,0 +1,151 @@
+package ru.nubowski.timeTracker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.nubowski.timeTracker.config.PartitionProperties;
+import ru.nubowski.timeTracker.repository.TimeLogRepository;
+import ru.nubowski.timeTracker.util.ClockProvider;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Service for maintaining the monthly range partitions of the time_logs table.
+ * Creates the partitions of the upcoming months ahead of time, so new logs never land in the default partition,
+ * and removes whole partitions once they are older than the retention cutoff.
+ */
+@Service
+public class PartitionMaintenanceService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionMaintenanceService.class);
+    private static final String PARENT_TABLE = "time_logs";
+    private static final DateTimeFormatter NAME_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARENT_TABLE + "_p(\\d{4})_(\\d{2})");
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ClockProvider clockProvider;
+    private final PartitionProperties partitionProperties;
+
+    /**
+     * Constructor for PartitionMaintenanceService.
+     *
+     * @param jdbcTemplate        the template used for the partition DDL
+     * @param transactionManager  the transaction manager, detaching and dropping a partition is done in one transaction
+     * @param clockProvider       custom provider to get the current time
+     * @param partitionProperties the properties used for configuring partition maintenance
+     */
+    public PartitionMaintenanceService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                       ClockProvider clockProvider, PartitionProperties partitionProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clockProvider = clockProvider;
+        this.partitionProperties = partitionProperties;
+    }
+
+    /**
+     * Makes sure the current month and the configured number of months after it have a partition.
+     * Runs on startup and then on the configured schedule of {@link ru.nubowski.timeTracker.schedule.SharedJobs};
+     * partitions that already exist are left alone.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createUpcomingPartitions() {
+        YearMonth current = YearMonth.from(clockProvider.now());
+        for (int i = 0; i <= partitionProperties.getMonthsAhead(); i++) {
+            createPartition(current.plusMonths(i));
+        }
+    }
+
+    /**
+     * Detaches and drops every monthly partition that only holds time logs started before the cutoff.
+     * Logs of the partition the cutoff falls into (and of the default partition) are left for the row-wise clean-up.
+     * The logs of a partition are taken out of the running totals of their tasks in the transaction that drops it.
+     *
+     * @param cutoff the cutoff time
+     * @return the number of dropped partitions
+     */
+    public int dropPartitionsBefore(LocalDateTime cutoff) {
+        int dropped = 0;
+        for (YearMonth month : getPartitionMonths()) {
+            if (month.plusMonths(1).atDay(1).atStartOfDay().isAfter(cutoff)) {
+                continue;
+            }
+            String name = partitionName(month);
+            LOGGER.info("Dropping partition {} (before {})", name, cutoff);
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.queryForObject(subtractPartition(name), Long.class);
+                jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + name);
+                jdbcTemplate.execute("DROP TABLE " + name);
+            });
+            dropped++;
+        }
+        return dropped;
+    }
+
+    /**
+     * Returns the months that currently have a partition, the default partition is not included.
+     *
+     * @return the months, in ascending order
+     */
+    public List<YearMonth> getPartitionMonths() {
+        List<String> names = jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = '" + PARENT_TABLE + "'::regclass", String.class);
+        return names.stream()
+                .map(PartitionMaintenanceService::partitionMonth)
+                .filter(Objects::nonNull)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Returns the name of the partition holding the time logs started in the given month.
+     *
+     * @param month the month
+     * @return the partition name
+     */
+    public static String partitionName(YearMonth month) {
+        return PARENT_TABLE + "_p" + month.format(NAME_SUFFIX);
+    }
+
+    /**
+     * Returns the statement taking the time logs of a partition out of the running totals of their tasks,
+     * which it locks first like the row-wise clean-up does.
+     */
+    private static String subtractPartition(String name) {
+        return "WITH locked AS (SELECT task.id FROM tasks task WHERE task.id IN (SELECT t.task_id FROM " + name + " t) " +
+                "ORDER BY task.id FOR UPDATE), " +
+                "deleted AS (SELECT t.id, t.task_id, t.start_time, t.end_time FROM " + name + " t " +
+                "INNER JOIN locked ON locked.id = t.task_id), " +
+                TimeLogRepository.SUBTRACT_DELETED +
+                "SELECT COUNT(*) FROM deleted";
+    }
+
+    private static YearMonth partitionMonth(String name) {
+        Matcher matcher = PARTITION_NAME.matcher(name);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+
+    private void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + PARENT_TABLE +
+                    " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+            LOGGER.debug("Partition {} is in place", name);
+        } catch (DataAccessException e) { // e.g. the default partition already holds logs of that month
+            LOGGER.error("Could not create partition {}", name, e);
+        }
+    }
+}
@@ -4,13 +4,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.nubowski.timeTracker.config.CleanupProperties;
+import ru.nubowski.timeTracker.exception.CleanupFailedException;
 import ru.nubowski.timeTracker.exception.UserNotFoundException;
-import ru.nubowski.timeTracker.model.Task;
-import ru.nubowski.timeTracker.model.User;
 import ru.nubowski.timeTracker.repository.TaskRepository;
+import ru.nubowski.timeTracker.repository.TimeLogRepository;
 import ru.nubowski.timeTracker.repository.UserRepository;
-import ru.nubowski.timeTracker.service.impl.TaskService;
-import ru.nubowski.timeTracker.service.impl.TimeLogService;
+import ru.nubowski.timeTracker.service.impl.UserService;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -20,61 +20,116 @@ import java.util.List;
 @Service
 public class ProcessService {
     private static final Logger LOGGER = LoggerFactory.getLogger(CleanupService.class);
-    private final TaskService taskService;
-    private final TimeLogService timeLogService;
-
     private final UserRepository userRepository;
 
     private final TaskRepository taskRepository;
 
+    private final TimeLogRepository timeLogRepository;
+
+    private final ChunkedExecutor chunkedExecutor;
+
+    private final CleanupProperties cleanupProperties;
+
+    private final UserService userService;
+
+    private final ReportCache reportCache;
+
+    private final ActiveTimerRegistry activeTimerRegistry;
+
     /**
      * Constructor for ProcessService.
      *
-     * @param taskService       the service for handling tasks
-     * @param timeLogService    the service for handling time logs
-     * @param userRepository    the repository for handling users
-     * @param taskRepository    the repository for handling tasks
+     * @param userRepository      the repository for handling users
+     * @param taskRepository      the repository for handling tasks
+     * @param timeLogRepository   the repository for handling time logs
+     * @param chunkedExecutor     the executor for chunked bulk statements
+     * @param cleanupProperties   the properties used for configuring cleanup
+     * @param userService         the service for handling users, its cache is evicted of the deleted users
+     * @param reportCache         the cache of the closed range reports, evicted of the deleted users
+     * @param activeTimerRegistry the registry of the task timers, which forgets the deleted tasks
      */
-    public ProcessService(TaskService taskService, TimeLogService timeLogService, UserRepository userRepository, TaskRepository taskRepository) {
-        this.taskService = taskService;
-        this.timeLogService = timeLogService;
+    public ProcessService(UserRepository userRepository, TaskRepository taskRepository,
+                          TimeLogRepository timeLogRepository, ChunkedExecutor chunkedExecutor,
+                          CleanupProperties cleanupProperties, UserService userService, ReportCache reportCache,
+                          ActiveTimerRegistry activeTimerRegistry) {
         this.userRepository = userRepository;
         this.taskRepository = taskRepository;
+        this.timeLogRepository = timeLogRepository;
+        this.chunkedExecutor = chunkedExecutor;
+        this.cleanupProperties = cleanupProperties;
+        this.userService = userService;
+        this.reportCache = reportCache;
+        this.activeTimerRegistry = activeTimerRegistry;
     }
 
     /**
-     * Deletes a user and all tasks associated with that user.
+     * Deletes all tasks and time logs of a user, keeping the user.
+     * Two set-based deletes whatever the size of the history, nothing is loaded into the persistence context.
      *
-     * @param username  the name of the user to be deleted
+     * @param username  the name of the user whose tasks are to be deleted
      * @throws UserNotFoundException if the specified user is not found
      */
     @Transactional
     public void deleteTimeLogsAndTasks(String username) {
-        LOGGER.info("Deleting user and associated tasks: {}", username);
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UserNotFoundException(username));
-        List<Task> tasks = taskRepository.findByUserId(user.getId());
-        tasks.forEach(task -> {
-            LOGGER.debug("Deleting timeLogs for task: {}", task.getId());
-            timeLogService.deleteTimeLogsByTask(task);
-            LOGGER.debug("TimeLogs deleted for task: {}", task.getId());
-            LOGGER.debug("Deleting task: {}", task.getId());
-            taskService.deleteTask(task.getId());
-            LOGGER.debug("Task deleted: {}", task.getId());
-        });
+        LOGGER.info("Deleting tasks and time logs of user: {}", username);
+        Long userId = userService.getUser(username).getId();
+        deleteHistory(userId);
+    }
+
+    /**
+     * Deletes a user with all their tasks and time logs.
+     * Three set-based deletes whatever the size of the history, nothing is loaded into the persistence context.
+     *
+     * @param username  the name of the user to be deleted
+     * @throws UserNotFoundException if the specified user is not found
+     */
+    @Transactional
+    public void purgeUser(String username) {
+        LOGGER.info("Purging user: {}", username);
+        Long userId = userService.getUser(username).getId();
+        deleteHistory(userId);
+        userRepository.deleteByIds(List.of(userId));
+        userService.evictUsers(List.of(userId));
+    }
+
+    private void deleteHistory(Long userId) {
+        List<Long> taskIds = taskRepository.findIdsByUserIds(List.of(userId));
+        int timeLogs = timeLogRepository.deleteByUserIds(List.of(userId));
+        int tasks = taskRepository.deleteByUserIds(List.of(userId)); // their daily effort rows go by cascade
+        activeTimerRegistry.forget(taskIds);
+        reportCache.evictUser(userId);
+        LOGGER.debug("Deleted {} tasks and {} time logs of user {}", tasks, timeLogs, userId);
     }
 
     /**
-     * Deletes all users who were created before a specific date and time. Part of the cleanup  service.
+     * Deletes all users who were created before a specific date and time, with their tasks and time logs.
+     * Part of the cleanup service. Pages through the users by id and deletes the chunks concurrently on
+     * {@code cleanup.purgeThreads} threads, each chunk three set-based deletes in its own transaction,
+     * after which the timers of the deleted tasks are dropped from the registry.
+     * A failing chunk is rolled back and its users left for the next run, the other chunks still go on.
      *
      * @param cutoff  the date and time to use as a cutoff for deletion
+     * @throws CleanupFailedException if some chunks failed, once all others are done
      */
     public void deleteOldUsers(LocalDateTime cutoff) {
         LOGGER.info("Deleting users created before {}", cutoff);
-        List<User> oldUsers = userRepository.findByCreatedAtBefore(cutoff);
-        oldUsers.stream()
-                .map(User::getUsername)
-                .forEach(this::deleteTimeLogsAndTasks);
-        userRepository.deleteAll(oldUsers);
+        ChunkedExecutor.Outcome outcome = chunkedExecutor.executeConcurrently("Deleting old users",
+                cleanupProperties.getChunkSize(), cleanupProperties.getPurgeThreads(),
+                cleanupProperties.getChunkPauseMillis(),
+                (afterId, limit) -> userRepository.findIdsCreatedBefore(cutoff, afterId, limit),
+                ids -> {
+                    List<Long> taskIds = taskRepository.findIdsByUserIds(ids);
+                    timeLogRepository.deleteByUserIds(ids);
+                    taskRepository.deleteByUserIds(ids);
+                    int deleted = userRepository.deleteByIds(ids);
+                    activeTimerRegistry.forget(taskIds);
+                    userService.evictUsers(ids);
+                    reportCache.evictUsers(ids);
+                    return deleted;
+                });
+        if (outcome.failedChunks() > 0) {
+            throw new CleanupFailedException("deleteOldUsers, " + outcome.failedChunks() + " of "
+                    + outcome.chunks() + " chunks");
+        }
     }
 }
@@ -0,0 +1,165 @@
+package ru.nubowski.timeTracker.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+import ru.nubowski.timeTracker.config.ReportCacheProperties;
+import ru.nubowski.timeTracker.dto.CachedReport;
+import ru.nubowski.timeTracker.util.ClockProvider;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the reports of a user over closed date ranges, the ones ending before now. Such a report only changes
+ * when time logs of the user are written after the fact (edited, deleted, closed, purged), and every such write
+ * evicts the reports of the user, now and again once its transaction completes. The size and the age of the cache
+ * are bounded as well.
+ * <p>
+ * A report is cached with the strong ETag of its JSON representation, so an unchanged report is answered with
+ * 304 Not Modified without being computed again. Only reports computed outside a transaction are cached, and not
+ * when an eviction ran meanwhile: they may have read the time logs as they were before.
+ */
+@Service
+public class ReportCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportCache.class);
+    /**
+     * Name of the cache of the reports, the cache tag of its metrics.
+     */
+    public static final String REPORT_CACHE = "reports.closedRange";
+    private final Cache<Key, CachedReport<?>> reports;
+    private final AtomicLong evictions = new AtomicLong();
+    private final ObjectMapper objectMapper;
+    private final ClockProvider clockProvider;
+
+    /**
+     * Constructor for ReportCache.
+     *
+     * @param reportCacheProperties the properties used for configuring the cache
+     * @param objectMapper the mapper writing the reports, whose output the ETags are computed from
+     * @param clockProvider custom provider to get the current time
+     * @param meterRegistry the registry for the hit and miss metrics of the cache
+     */
+    public ReportCache(ReportCacheProperties reportCacheProperties, ObjectMapper objectMapper,
+                       ClockProvider clockProvider, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.clockProvider = clockProvider;
+        this.reports = Caffeine.newBuilder()
+                .maximumSize(reportCacheProperties.getMaximumSize())
+                .expireAfterWrite(Duration.ofSeconds(reportCacheProperties.getExpireAfterWriteSeconds()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, reports, REPORT_CACHE);
+    }
+
+    /**
+     * Returns a report of a user, from the cache if the range is closed and the report is there.
+     *
+     * @param userId the id of the user the report is about
+     * @param end the end of the date range of the report
+     * @param report computes the report
+     * @param params the name of the report and all its parameters, the end included
+     * @param <T> the type of the report body
+     * @return the report with its ETag, or without one if the range is not closed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CachedReport<T> get(Long userId, LocalDateTime end, Supplier<T> report, Object... params) {
+        if (!end.isBefore(clockProvider.now())) {
+            return new CachedReport<>(report.get(), null);
+        }
+        Key key = new Key(userId, Arrays.asList(params.clone()));
+        CachedReport<?> cached = reports.getIfPresent(key);
+        if (cached != null) {
+            return (CachedReport<T>) cached;
+        }
+        long evicted = evictions.get();
+        T body = report.get();
+        CachedReport<T> computed = new CachedReport<>(body, eTag(body));
+        if (!TransactionSynchronizationManager.isActualTransactionActive() && evictions.get() == evicted) {
+            reports.put(key, computed);
+            if (evictions.get() != evicted) { // an eviction ran between the check and the put
+                reports.invalidate(key);
+            }
+        }
+        return computed;
+    }
+
+    /**
+     * Evicts the reports of a user, after its time logs are written.
+     *
+     * @param userId the id of the user
+     */
+    public void evictUser(Long userId) {
+        LOGGER.debug("Evicting the reports of user {}", userId);
+        evict(() -> reports.asMap().keySet().removeIf(key -> key.userId().equals(userId)));
+    }
+
+    /**
+     * Evicts the reports of the given users, after their time logs are deleted in bulk.
+     *
+     * @param userIds the ids of the users
+     */
+    public void evictUsers(Collection<Long> userIds) {
+        Set<Long> evicted = new HashSet<>(userIds);
+        evict(() -> reports.asMap().keySet().removeIf(key -> evicted.contains(key.userId())));
+    }
+
+    /**
+     * Evicts all reports, after time logs of unknown users are written in bulk.
+     */
+    public void evictAll() {
+        LOGGER.debug("Evicting all reports");
+        evict(reports::invalidateAll);
+    }
+
+    /**
+     * Runs an eviction now, and once more when the surrounding transaction completes:
+     * a report computed while the write was not committed yet may have been cached as it was before.
+     */
+    private void evict(Runnable eviction) {
+        Runnable counted = () -> {
+            evictions.incrementAndGet();
+            eviction.run();
+        };
+        counted.run();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                counted.run();
+            }
+        });
+    }
+
+    private String eTag(Object body) {
+        try {
+            return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Report can't be written as JSON", e);
+        }
+    }
+
+    /**
+     * A report of a user with all its parameters.
+     */
+    private record Key(Long userId, List<Object> params) {
+    }
+}
@@ -0,0 +1,340 @@
+package ru.nubowski.timeTracker.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.nubowski.timeTracker.config.ReportJobsProperties;
+import ru.nubowski.timeTracker.dto.request.ReportJobRequest;
+import ru.nubowski.timeTracker.exception.ReportJobNotFoundException;
+import ru.nubowski.timeTracker.exception.ReportJobRejectedException;
+import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.service.impl.ReportService;
+import ru.nubowski.timeTracker.service.impl.UserService;
+import ru.nubowski.timeTracker.util.ClockProvider;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs the reports of large date ranges as jobs in the background, so a request no longer holds a servlet thread
+ * and a database connection for the whole computation. A job is queued on a bounded pool of threads and its result
+ * kept in memory for download until its retention is over.
+ * <p>
+ * The reports are those of {@link ReportService}, the same as the synchronous endpoints answer, closed ranges
+ * served from the report cache. Jobs are rejected when the queue is full or too many jobs are kept.
+ * The depth of the queue, the running jobs and the kept jobs are exposed as gauges under timetracker.reportjobs,
+ * the finished jobs counted by status.
+ */
+@Service
+public class ReportJobService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportJobService.class);
+    private final ConcurrentMap<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final ReportService reportService;
+    private final UserService userService;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ReportJobsProperties reportJobsProperties;
+    private final ClockProvider clockProvider;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * States of a report job.
+     */
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED,
+        CANCELLED
+    }
+
+    /**
+     * Constructor for ReportJobService.
+     *
+     * @param reportService        service computing the reports
+     * @param userService          service resolving the users of the jobs
+     * @param entityManagerFactory the entity manager factory, an entity manager of which is open while a job runs
+     * @param reportJobsProperties the properties used for configuring the jobs
+     * @param clockProvider        custom provider to get the current time
+     * @param meterRegistry        the registry for the queue and job metrics
+     */
+    public ReportJobService(ReportService reportService, UserService userService, EntityManagerFactory entityManagerFactory,
+                            ReportJobsProperties reportJobsProperties, ClockProvider clockProvider, MeterRegistry meterRegistry) {
+        this.reportService = reportService;
+        this.userService = userService;
+        this.entityManagerFactory = entityManagerFactory;
+        this.reportJobsProperties = reportJobsProperties;
+        this.clockProvider = clockProvider;
+        this.meterRegistry = meterRegistry;
+        this.executor = new ThreadPoolExecutor(reportJobsProperties.getThreads(), reportJobsProperties.getThreads(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(reportJobsProperties.getQueueCapacity()),
+                new CustomizableThreadFactory("report-job-"));
+        Gauge.builder("timetracker.reportjobs.queued", executor, pool -> pool.getQueue().size())
+                .description("Report jobs waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("timetracker.reportjobs.running", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Report jobs being computed")
+                .register(meterRegistry);
+        Gauge.builder("timetracker.reportjobs.kept", jobs, ConcurrentMap::size)
+                .description("Report jobs kept, waiting, running or finished")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a report job. The user is resolved right away, so an unknown one is rejected at once.
+     *
+     * @param request the report and its parameters
+     * @return the queued job
+     * @throws ReportJobRejectedException if the queue is full or too many jobs are kept
+     */
+    public ReportJob submit(ReportJobRequest request) {
+        User user = userService.getUser(request.getUsername());
+        Supplier<Object> report = switch (request.getReport()) {
+            case ReportService.DATE_RANGE -> () -> reportService.getTimeLogsReport(user, request.getStart(),
+                    request.getEnd(), request.getSort(), request.getOutput()).getBody();
+            case ReportService.WORK_EFFORT -> () -> reportService.getWorkEffortReport(user, request.getStart(),
+                    request.getEnd()).getBody();
+            default -> throw new IllegalArgumentException("Unknown report: " + request.getReport());
+        };
+        if (jobs.size() >= reportJobsProperties.getMaximumJobs()) {
+            purgeExpired();
+        }
+        if (jobs.size() >= reportJobsProperties.getMaximumJobs()) {
+            finished("rejected");
+            throw new ReportJobRejectedException(jobs.size() + " jobs are kept already");
+        }
+        ReportJob job = new ReportJob(UUID.randomUUID().toString(), request.getReport(), user.getUsername(),
+                clockProvider.now());
+        jobs.put(job.getId(), job);
+        try {
+            job.future = executor.submit(() -> run(job, report));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            finished("rejected");
+            throw new ReportJobRejectedException("the queue is full");
+        }
+        LOGGER.info("Report job {} queued: {} of user {}", job.getId(), job.getReport(), job.getUsername());
+        return job;
+    }
+
+    /**
+     * Gets a report job.
+     *
+     * @param id the id of the job
+     * @return the job, with its result once it is done
+     * @throws ReportJobNotFoundException if there is no such job, or it is no longer kept
+     */
+    public ReportJob getJob(String id) {
+        ReportJob job = jobs.get(id);
+        if (job == null) {
+            throw new ReportJobNotFoundException(id);
+        }
+        return job;
+    }
+
+    /**
+     * Cancels a report job that is not finished yet, and drops the job either way.
+     * A running job is interrupted; a statement it is waiting on runs to its end, its result is discarded.
+     *
+     * @param id the id of the job
+     * @return the job as it was left
+     * @throws ReportJobNotFoundException if there is no such job, or it is no longer kept
+     */
+    public ReportJob cancel(String id) {
+        ReportJob job = jobs.remove(id);
+        if (job == null) {
+            throw new ReportJobNotFoundException(id);
+        }
+        if (job.cancel(clockProvider.now())) {
+            Future<?> future = job.future;
+            if (future != null) {
+                future.cancel(true);
+                executor.remove((Runnable) future); // frees its place in the queue right away
+            }
+            finished("cancelled");
+            LOGGER.info("Report job {} cancelled", id);
+        }
+        return job;
+    }
+
+    /**
+     * Drops the finished jobs past their retention, with their results.
+     *
+     * @return the number of dropped jobs
+     */
+    @Scheduled(cron = "#{reportJobsProperties.getPurgeCronExpression()}")
+    public int purgeExpired() {
+        LocalDateTime cutoff = clockProvider.now().minusSeconds(reportJobsProperties.getRetentionSeconds());
+        int before = jobs.size();
+        jobs.values().removeIf(job -> job.isFinishedBy(cutoff));
+        int purged = before - jobs.size();
+        if (purged > 0) {
+            LOGGER.info("{} report jobs past their retention dropped", purged);
+        }
+        return Math.max(purged, 0);
+    }
+
+    /**
+     * Stops the threads of the jobs, interrupting the running ones.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ReportJob job, Supplier<Object> report) {
+        if (!job.start()) {
+            return; // cancelled while queued
+        }
+        try {
+            Object result = withEntityManager(report);
+            if (job.finish(Status.DONE, result, null, clockProvider.now())) {
+                finished("done");
+                LOGGER.info("Report job {} done", job.getId());
+            }
+        } catch (RuntimeException e) {
+            if (job.finish(Status.FAILED, null, e.getMessage(), clockProvider.now())) {
+                finished("failed");
+                LOGGER.warn("Report job {} failed", job.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Runs the work with an entity manager open on the thread, as a request has with open-in-view, so the lazy
+     * associations of the time logs load outside a transaction. The report cache only keeps reports computed
+     * outside one.
+     */
+    private <T> T withEntityManager(Supplier<T> work) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            return work.get();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            EntityManagerFactoryUtils.closeEntityManager(entityManager);
+        }
+    }
+
+    private void finished(String status) {
+        Counter.builder("timetracker.reportjobs.finished")
+                .description("Report jobs finished, by status")
+                .tag("status", status)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * A report job: its report, its state, and its result or error once it is finished.
+     */
+    public static final class ReportJob {
+        private final String id;
+        private final String report;
+        private final String username;
+        private final LocalDateTime submittedAt;
+        private volatile Future<?> future;
+        private Status status = Status.QUEUED;
+        private LocalDateTime finishedAt;
+        private Object result;
+        private String error;
+
+        private ReportJob(String id, String report, String username, LocalDateTime submittedAt) {
+            this.id = id;
+            this.report = report;
+            this.username = username;
+            this.submittedAt = submittedAt;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getReport() {
+            return report;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public LocalDateTime getSubmittedAt() {
+            return submittedAt;
+        }
+
+        public synchronized Status getStatus() {
+            return status;
+        }
+
+        public synchronized LocalDateTime getFinishedAt() {
+            return finishedAt;
+        }
+
+        public synchronized Object getResult() {
+            return result;
+        }
+
+        public synchronized String getError() {
+            return error;
+        }
+
+        /**
+         * Returns whether the job is finished, done, failed or cancelled.
+         *
+         * @return true if it is finished
+         */
+        public synchronized boolean isFinished() {
+            return finishedAt != null;
+        }
+
+        private synchronized boolean start() {
+            if (status != Status.QUEUED) {
+                return false;
+            }
+            status = Status.RUNNING;
+            return true;
+        }
+
+        private synchronized boolean finish(Status finalStatus, Object result, String error, LocalDateTime now) {
+            if (status != Status.RUNNING) {
+                return false;
+            }
+            this.status = finalStatus;
+            this.result = result;
+            this.error = error;
+            this.finishedAt = now;
+            return true;
+        }
+
+        private synchronized boolean cancel(LocalDateTime now) {
+            if (isFinished()) {
+                return false;
+            }
+            status = Status.CANCELLED;
+            finishedAt = now;
+            return true;
+        }
+
+        private synchronized boolean isFinishedBy(LocalDateTime cutoff) {
+            return finishedAt != null && !finishedAt.isAfter(cutoff);
+        }
+    }
+}
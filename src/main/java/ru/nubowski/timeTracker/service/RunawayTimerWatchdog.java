@@ -0,0 +1,207 @@
+package ru.nubowski.timeTracker.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import ru.nubowski.timeTracker.config.WatchdogProperties;
+import ru.nubowski.timeTracker.dto.TaskTimer;
+import ru.nubowski.timeTracker.service.impl.TaskService;
+import ru.nubowski.timeTracker.util.ClockProvider;
+import ru.nubowski.timeTracker.util.HierarchicalTimingWheel;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Auto-stops the segments running past their maximum length (the task's, else its user's, else
+ * {@link WatchdogProperties#getDefaultMaxSegmentMinutes()}) at the end of that length, one segment at a time,
+ * instead of leaving forgotten timers running until the end of their day.
+ * <p>
+ * The watchdog listens to the {@link ActiveTimerRegistry}: every started or resumed task reaches it once its
+ * transition commits, and the open segments of all tasks at startup and at every reconciliation, which also brings
+ * in the changes of other instances and of the maximum lengths. The deadline of each open segment is kept in a
+ * {@link HierarchicalTimingWheel} advanced every tick, so only the expiring segments are looked at, and each is
+ * closed by a statement conditional on it still being the open segment of its task. Every instance runs its own
+ * watchdog: the first one to close a segment wins, the others change nothing.
+ * <p>
+ * The ticks run on a thread of their own, not on the scheduler of the jobs, so a long clean-up or end-of-day run
+ * does not hold back the auto-stops.
+ * <p>
+ * The open segments watched are gauged under timetracker.watchdog.watched and the stopped ones counted under
+ * timetracker.watchdog.stopped.
+ */
+@Service
+public class RunawayTimerWatchdog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RunawayTimerWatchdog.class);
+    /**
+     * Slots per level of the wheel and its levels: with ticks of a second, 64 seconds, 68 minutes, 73 hours and
+     * 194 days ahead before the overflow.
+     */
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_LEVELS = 4;
+    private final ConcurrentMap<Long, Watched> watched = new ConcurrentHashMap<>();
+    private final HierarchicalTimingWheel<Long> wheel;
+    private final TaskService taskService;
+    private final ClockProvider clockProvider;
+    private final WatchdogProperties watchdogProperties;
+    private final Counter stopped;
+    private final ScheduledExecutorService ticker;
+
+    /**
+     * Constructor for RunawayTimerWatchdog.
+     *
+     * @param activeTimerRegistry the registry of the timers, which feeds the watchdog
+     * @param taskService         service auto-stopping the segments
+     * @param clockProvider       custom provider to get the current time
+     * @param watchdogProperties  the properties used for configuring the watchdog
+     * @param meterRegistry       the registry for the watchdog metrics
+     */
+    public RunawayTimerWatchdog(ActiveTimerRegistry activeTimerRegistry, TaskService taskService,
+                                ClockProvider clockProvider, WatchdogProperties watchdogProperties,
+                                MeterRegistry meterRegistry) {
+        this.taskService = taskService;
+        this.clockProvider = clockProvider;
+        this.watchdogProperties = watchdogProperties;
+        this.wheel = new HierarchicalTimingWheel<>(watchdogProperties.getTickMillis(), WHEEL_SIZE, WHEEL_LEVELS,
+                toMillis(clockProvider.now()));
+        Gauge.builder("timetracker.watchdog.watched", watched, Map::size)
+                .description("Open segments watched for their maximum length")
+                .register(meterRegistry);
+        this.stopped = Counter.builder("timetracker.watchdog.stopped")
+                .description("Segments auto-stopped at their maximum length")
+                .register(meterRegistry);
+        activeTimerRegistry.addListener(this::watch);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("watchdog-");
+        threadFactory.setDaemon(true);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        ticker.scheduleWithFixedDelay(this::scheduledTick, watchdogProperties.getTickMillis(),
+                watchdogProperties.getTickMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the ticks.
+     */
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Watches the open segment of a running timer until its deadline, or stops watching a task that is no longer
+     * running or has no maximum anymore. The same open segment with the same maximum is left as it is.
+     *
+     * @param timer the current timer of a task
+     */
+    public synchronized void watch(TaskTimer timer) {
+        Integer maxSegmentMinutes = getMaxSegmentMinutes(timer);
+        if (!watchdogProperties.isEnabled() || !timer.isRunning() || maxSegmentMinutes == null) {
+            if (watched.remove(timer.getTaskId()) != null) {
+                wheel.cancel(timer.getTaskId());
+            }
+            return;
+        }
+        LocalDateTime start = timer.getOpenSegmentStart();
+        Watched next = new Watched(start, start.plusMinutes(maxSegmentMinutes));
+        if (!next.equals(watched.put(timer.getTaskId(), next))) {
+            LOGGER.debug("Watching task {} until {}", timer.getTaskId(), next.deadline());
+            wheel.schedule(timer.getTaskId(), toMillis(next.deadline()));
+        }
+    }
+
+    /**
+     * Advances the wheel to now and auto-stops the segments past their deadline. A segment that could not be
+     * stopped, because its task changed concurrently or the statement failed, is watched again from the next
+     * reconciliation of the registry.
+     *
+     * @return the number of segments stopped
+     */
+    public int tick() {
+        LocalDateTime now = clockProvider.now();
+        int count = 0;
+        for (Long taskId : wheel.advance(toMillis(now))) {
+            Watched due = claim(taskId, now);
+            if (due == null) {
+                continue;
+            }
+            try {
+                if (taskService.stopRunawaySegment(taskId, due.segmentStart(), due.deadline()).isPresent()) {
+                    stopped.increment();
+                    count++;
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Auto-stopping the segment of task {} started at {} failed", taskId, due.segmentStart(), e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Runs a tick on the thread of the watchdog, which an exception would otherwise stop for good.
+     */
+    private void scheduledTick() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Watchdog tick failed", e);
+        }
+    }
+
+    /**
+     * Returns the number of open segments watched.
+     *
+     * @return the number of segments
+     */
+    public int getWatchedCount() {
+        return watched.size();
+    }
+
+    /**
+     * Stops watching an expired task if its segment is past its deadline, or schedules it again if it was moved
+     * to a later deadline meanwhile (or the clock went back).
+     *
+     * @param taskId the id of the task
+     * @param now    the current time
+     * @return the segment to stop, null if there is none
+     */
+    private synchronized Watched claim(Long taskId, LocalDateTime now) {
+        Watched due = watched.get(taskId);
+        if (due == null) {
+            return null;
+        }
+        if (due.deadline().isAfter(now)) {
+            wheel.schedule(taskId, toMillis(due.deadline()));
+            return null;
+        }
+        watched.remove(taskId);
+        return due;
+    }
+
+    private Integer getMaxSegmentMinutes(TaskTimer timer) {
+        if (timer.getMaxSegmentMinutes() != null) {
+            return timer.getMaxSegmentMinutes();
+        }
+        int defaultMaxSegmentMinutes = watchdogProperties.getDefaultMaxSegmentMinutes();
+        return defaultMaxSegmentMinutes > 0 ? defaultMaxSegmentMinutes : null;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * An open segment watched: its start, which identifies it, and its deadline.
+     */
+    private record Watched(LocalDateTime segmentStart, LocalDateTime deadline) {
+    }
+}
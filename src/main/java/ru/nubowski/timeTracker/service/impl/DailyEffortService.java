@@ -0,0 +1,130 @@
+package ru.nubowski.timeTracker.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.nubowski.timeTracker.dto.TaskEffort;
+import ru.nubowski.timeTracker.model.TimeLog;
+import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.repository.DailyEffortRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Service for the daily effort rollup: keeps it in step with the closed time logs and answers the effort reports from it.
+ * The rollup calls must run in the transaction that closes (or removes) the segment, so both commit or neither.
+ */
+@Service
+public class DailyEffortService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DailyEffortService.class);
+    private final DailyEffortRepository dailyEffortRepository;
+
+    /**
+     * Constructor for DailyEffortService.
+     *
+     * @param dailyEffortRepository repository for the rollup
+     */
+    public DailyEffortService(DailyEffortRepository dailyEffortRepository) {
+        this.dailyEffortRepository = dailyEffortRepository;
+    }
+
+    /**
+     * Adds a closed time log to the rollup. Open time logs are ignored.
+     *
+     * @param timeLog the closed time log
+     */
+    public void addSegment(TimeLog timeLog) {
+        if (timeLog.getEndTime() == null) {
+            return;
+        }
+        LOGGER.debug("Rolling up time log {} of task {}", timeLog.getId(), timeLog.getTask().getId());
+        dailyEffortRepository.addSegment(timeLog.getTask().getId(), timeLog.getStartTime(), timeLog.getEndTime(), 1);
+    }
+
+    /**
+     * Takes a closed time log back out of the rollup, before it is changed or deleted. Open time logs are ignored.
+     *
+     * @param timeLog the closed time log
+     */
+    public void removeSegment(TimeLog timeLog) {
+        if (timeLog.getEndTime() == null) {
+            return;
+        }
+        LOGGER.debug("Removing time log {} of task {} from the rollup", timeLog.getId(), timeLog.getTask().getId());
+        dailyEffortRepository.addSegment(timeLog.getTask().getId(), timeLog.getStartTime(), timeLog.getEndTime(), -1);
+    }
+
+    /**
+     * Deletes the rollup of the days before the cutoff day, following the retention of the time logs.
+     *
+     * @param cutoff the cutoff time
+     */
+    @Transactional
+    public void deleteBefore(LocalDateTime cutoff) {
+        int deleted = dailyEffortRepository.deleteByDayBefore(cutoff.toLocalDate());
+        LOGGER.info("Deleted {} daily effort rows before {}", deleted, cutoff.toLocalDate());
+    }
+
+    /**
+     * Returns the total work effort of a user within a date range.
+     *
+     * @param user the user
+     * @param start the start of the date range
+     * @param end the end of the date range
+     * @param now the end of the time logs that are still open
+     * @return the total work effort
+     */
+    public Duration getTotalEffort(User user, LocalDateTime start, LocalDateTime end, LocalDateTime now) {
+        if (!end.isAfter(start)) {
+            return Duration.ZERO;
+        }
+        LocalDateTime d1 = firstFullDay(start, end);
+        LocalDateTime d2 = endOfFullDays(d1, end);
+        double seconds = dailyEffortRepository.getTotalEffortSeconds(user.getId(), start, end, d1, d2, now);
+        return Duration.ofSeconds((long) seconds);
+    }
+
+    /**
+     * Returns the effort per task of a user within a date range.
+     *
+     * @param user the user
+     * @param start the start of the date range
+     * @param end the end of the date range
+     * @param sort "start_time" for the earliest started task first, anything else for the longest task first
+     * @param now the end of the time logs that are still open
+     * @return a list of task efforts
+     */
+    public List<TaskEffort> getTaskEfforts(User user, LocalDateTime start, LocalDateTime end, String sort, LocalDateTime now) {
+        if (!end.isAfter(start)) {
+            return List.of();
+        }
+        LocalDateTime d1 = firstFullDay(start, end);
+        LocalDateTime d2 = endOfFullDays(d1, end);
+        if (sort.equals("start_time")) {
+            return dailyEffortRepository.getTaskEffortsOrderByStartTime(user.getId(), start, end, d1, d2, now);
+        }
+        return dailyEffortRepository.getTaskEffortsOrderBySeconds(user.getId(), start, end, d1, d2, now);
+    }
+
+    /**
+     * The first midnight not before the start, or the end if the range holds no midnight.
+     */
+    static LocalDateTime firstFullDay(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime midnight = start.toLocalDate().atStartOfDay();
+        if (midnight.isBefore(start)) {
+            midnight = midnight.plusDays(1);
+        }
+        return midnight.isAfter(end) ? end : midnight;
+    }
+
+    /**
+     * The last midnight not after the end, but never before the first full day.
+     */
+    static LocalDateTime endOfFullDays(LocalDateTime firstFullDay, LocalDateTime end) {
+        LocalDateTime midnight = end.toLocalDate().atStartOfDay();
+        return midnight.isBefore(firstFullDay) ? firstFullDay : midnight;
+    }
+}
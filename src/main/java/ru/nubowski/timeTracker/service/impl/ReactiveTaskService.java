@@ -0,0 +1,203 @@
+package ru.nubowski.timeTracker.service.impl;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.nubowski.timeTracker.dto.TaskTotals;
+import ru.nubowski.timeTracker.dto.TaskTransition;
+import ru.nubowski.timeTracker.exception.ConcurrentTransitionException;
+import ru.nubowski.timeTracker.exception.OngoingTaskNotFoundException;
+import ru.nubowski.timeTracker.exception.TaskAlreadyStartedException;
+import ru.nubowski.timeTracker.exception.TaskNotFoundException;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TaskState;
+import ru.nubowski.timeTracker.repository.ReactiveTaskRepository;
+import ru.nubowski.timeTracker.service.ActiveTimerRegistry;
+import ru.nubowski.timeTracker.service.ReportCache;
+import ru.nubowski.timeTracker.util.ClockProvider;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking counterpart of the task state transitions of {@link TaskService} and the time elapsed of
+ * {@link TaskTotalsService}, for the reactive profile. Same statements, same retry, same exceptions.
+ * <p>
+ * Nothing here blocks a thread: the statements go through R2DBC, and the side effects of a transition
+ * (the registry of the running timers, the second-level cache, the report cache) are in-memory.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveTaskService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveTaskService.class);
+    private final ClockProvider clockProvider;
+    private final ReactiveTaskRepository reactiveTaskRepository;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ActiveTimerRegistry activeTimerRegistry;
+    private final ReportCache reportCache;
+
+    /**
+     * Constructor for ReactiveTaskService.
+     *
+     * @param clockProvider          custom provider to get the current time
+     * @param reactiveTaskRepository repository running the transition statements over R2DBC
+     * @param entityManagerFactory   the entity manager factory, whose second-level cache the statements bypass
+     * @param activeTimerRegistry    the in-memory registry of the running timers, updated by the transitions
+     * @param reportCache            the cache of the closed range reports, evicted when time logs are closed
+     */
+    public ReactiveTaskService(ClockProvider clockProvider, ReactiveTaskRepository reactiveTaskRepository,
+                               EntityManagerFactory entityManagerFactory, ActiveTimerRegistry activeTimerRegistry,
+                               ReportCache reportCache) {
+        this.clockProvider = clockProvider;
+        this.reactiveTaskRepository = reactiveTaskRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.activeTimerRegistry = activeTimerRegistry;
+        this.reportCache = reportCache;
+    }
+
+    /**
+     * Starts a task and creates a new time log, see {@link TaskService#startTask}.
+     *
+     * @param taskId the id of the task to be started
+     * @return the created time log, or a TaskNotFoundException, TaskAlreadyStartedException
+     * or ConcurrentTransitionException
+     */
+    public Mono<TaskTransition> startTask(Long taskId) {
+        LOGGER.info("Starting a task: {}", taskId);
+        return transition(taskId, () -> reactiveTaskRepository.startSegment(taskId, clockProvider.now()),
+                totals -> totals.getOpenSegmentStart() != null
+                        ? Mono.just(new TaskAlreadyStartedException(taskId)) : Mono.empty(), 1);
+    }
+
+    /**
+     * Stops a task and updates the corresponding time log, see {@link TaskService#stopTask}.
+     *
+     * @param taskId the id of the task to be stopped
+     * @return the updated time log, or a TaskNotFoundException, OngoingTaskNotFoundException
+     * or ConcurrentTransitionException
+     */
+    public Mono<TaskTransition> stopTask(Long taskId) {
+        LOGGER.info("Stopping task: {}", taskId);
+        return transition(taskId, () -> reactiveTaskRepository.closeSegment(taskId, clockProvider.now(), TaskState.USER_STOPPED),
+                totals -> notOngoing(taskId, totals), 1);
+    }
+
+    /**
+     * Pauses a task, see {@link TaskService#pauseTask}.
+     *
+     * @param taskId the id of the task to be paused
+     * @return the paused time log, or a TaskNotFoundException, OngoingTaskNotFoundException
+     * or ConcurrentTransitionException
+     */
+    public Mono<TaskTransition> pauseTask(Long taskId) {
+        LOGGER.info("Pausing task: {}", taskId);
+        return transition(taskId, () -> reactiveTaskRepository.closeSegment(taskId, clockProvider.now(), TaskState.PAUSED),
+                totals -> notOngoing(taskId, totals), 1);
+    }
+
+    /**
+     * Resumes a paused task and creates a new time log, see {@link TaskService#resumeTask}.
+     *
+     * @param taskId the id of the task to be resumed
+     * @return the created time log, or a TaskNotFoundException, OngoingTaskNotFoundException if the task is not paused,
+     * or ConcurrentTransitionException
+     */
+    public Mono<TaskTransition> resumeTask(Long taskId) {
+        LOGGER.info("Resuming task: {}", taskId);
+        return transition(taskId, () -> reactiveTaskRepository.resumeSegment(taskId, clockProvider.now()),
+                totals -> totals.getOpenSegmentStart() != null
+                        ? Mono.just(new OngoingTaskNotFoundException(taskId))
+                        : reactiveTaskRepository.existsByTaskIdAndTaskState(taskId, TaskState.PAUSED)
+                        .filter(paused -> !paused)
+                        .map(paused -> new OngoingTaskNotFoundException(taskId)), 1);
+    }
+
+    /**
+     * Returns the time elapsed on a task, see {@link TaskTotalsService#getElapsed}.
+     * A running task is served from the registry of the running timers, without a statement.
+     *
+     * @param taskId the id of the task
+     * @return the time elapsed, or a TaskNotFoundException if there is no such task, or it has no time logs
+     */
+    public Mono<Duration> getTaskTimeElapsed(Long taskId) {
+        LOGGER.debug("Getting time elapsed for task with id: {}", taskId);
+        return Mono.defer(() -> {
+            LocalDateTime now = clockProvider.now();
+            return Mono.justOrEmpty(activeTimerRegistry.getElapsed(taskId, now))
+                    .switchIfEmpty(Mono.defer(() -> reactiveTaskRepository.findTotalsById(taskId)
+                            .switchIfEmpty(Mono.error(() -> new TaskNotFoundException(taskId)))
+                            .flatMap(totals -> elapsed(taskId, totals, now))));
+        });
+    }
+
+    private Mono<Duration> elapsed(Long taskId, TaskTotals totals, LocalDateTime now) {
+        if (totals.getOpenSegmentStart() != null) {
+            return Mono.just(Duration.ofMillis(totals.getClosedMillis()).plus(Duration.between(totals.getOpenSegmentStart(), now)));
+        }
+        Mono<Duration> closed = Mono.just(Duration.ofMillis(totals.getClosedMillis()));
+        if (totals.getClosedMillis() != 0) {
+            return closed;
+        }
+        return reactiveTaskRepository.existsByTaskId(taskId)
+                .flatMap(exists -> exists ? closed : Mono.error(new TaskNotFoundException(taskId)));
+    }
+
+    private static Mono<RuntimeException> notOngoing(Long taskId, TaskTotals totals) {
+        return totals.getOpenSegmentStart() == null ? Mono.just(new OngoingTaskNotFoundException(taskId)) : Mono.empty();
+    }
+
+    /**
+     * Runs a transition statement with bounded retry, like {@link TaskService}: when it changes nothing, the totals
+     * of the task tell whether it is missing, in the wrong state (rejected right away) or changed concurrently
+     * (retried with a fresh snapshot, at most {@link TaskService#MAX_TRANSITION_ATTEMPTS} attempts in all).
+     * A statement that fails to get its locks (a deadlock with a bulk statement, a lock timeout) rolled back on its own
+     * and is handled the same way, as if it had changed nothing.
+     * On success the task is evicted from the second-level cache, its timer applied to the registry, and closing
+     * a segment evicts the reports of the user. There is no transaction to wait for, all of it applies right away.
+     *
+     * @param taskId the id of the task
+     * @param statement the transition statement, subscribed to once per attempt
+     * @param wrongState the exception for the current totals of the task, empty if the transition is allowed
+     * @param attempt the number of this attempt, from 1
+     * @return the written time log
+     */
+    private Mono<TaskTransition> transition(Long taskId, Supplier<Mono<TaskTransition>> statement,
+                                            Function<TaskTotals, Mono<RuntimeException>> wrongState, int attempt) {
+        return Mono.defer(statement)
+                .onErrorResume(PessimisticLockingFailureException.class, e -> {
+                    LOGGER.debug("Task {} failed to get its locks, attempt {} of {}", taskId, attempt,
+                            TaskService.MAX_TRANSITION_ATTEMPTS, e);
+                    return Mono.empty();
+                })
+                .doOnNext(this::applied)
+                .switchIfEmpty(Mono.defer(() -> reactiveTaskRepository.findTotalsById(taskId)
+                        .switchIfEmpty(Mono.error(() -> new TaskNotFoundException(taskId)))
+                        .flatMap(wrongState)
+                        .flatMap(Mono::<TaskTransition>error)
+                        .switchIfEmpty(Mono.defer(() -> retry(taskId, statement, wrongState, attempt)))));
+    }
+
+    private Mono<TaskTransition> retry(Long taskId, Supplier<Mono<TaskTransition>> statement,
+                                       Function<TaskTotals, Mono<RuntimeException>> wrongState, int attempt) {
+        if (attempt >= TaskService.MAX_TRANSITION_ATTEMPTS) {
+            LOGGER.warn("Task {} kept changing concurrently, giving up after {} attempts", taskId, attempt);
+            return Mono.error(new ConcurrentTransitionException(taskId, attempt));
+        }
+        LOGGER.debug("Task {} changed concurrently, attempt {} of {}", taskId, attempt, TaskService.MAX_TRANSITION_ATTEMPTS);
+        return transition(taskId, statement, wrongState, attempt + 1);
+    }
+
+    private void applied(TaskTransition transition) {
+        entityManagerFactory.getCache().evict(Task.class, transition.getTaskId());
+        activeTimerRegistry.apply(transition);
+        if (transition.getEndTime() != null) {
+            reportCache.evictUser(transition.getUserId());
+        }
+    }
+}
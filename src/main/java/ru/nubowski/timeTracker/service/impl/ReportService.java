@@ -0,0 +1,89 @@
+package ru.nubowski.timeTracker.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import ru.nubowski.timeTracker.dto.CachedReport;
+import ru.nubowski.timeTracker.dto.TaskEffort;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TimeLog;
+import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.service.ReportCache;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service computing the reports of a user over a date range, served by the report endpoints of the users
+ * and by the report jobs alike. Reports over closed ranges go through the {@link ReportCache}.
+ */
+@Service
+public class ReportService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportService.class);
+    /**
+     * Name of the report of the time logs of a user within a date range.
+     */
+    public static final String DATE_RANGE = "date_range";
+    /**
+     * Name of the report of the total work effort of a user within a date range.
+     */
+    public static final String WORK_EFFORT = "work_effort";
+    private final TimeLogService timeLogService;
+    private final ReportCache reportCache;
+
+    /**
+     * Constructor for ReportService.
+     *
+     * @param timeLogService service for handling time logs
+     * @param reportCache    the cache of the closed range reports
+     */
+    public ReportService(TimeLogService timeLogService, ReportCache reportCache) {
+        this.timeLogService = timeLogService;
+        this.reportCache = reportCache;
+    }
+
+    /**
+     * Returns the time logs of the user within the given date range, one line per task or per time log.
+     *
+     * @param user   the user
+     * @param start  the start of the date range
+     * @param end    the end of the date range
+     * @param sort   "start_time" or "duration"
+     * @param output "duration" for the effort per task, anything else for the raw time logs
+     * @return the formatted lines, with an ETag if the range is closed
+     */
+    public CachedReport<List<String>> getTimeLogsReport(User user, LocalDateTime start, LocalDateTime end,
+                                                        String sort, String output) {
+        LOGGER.debug("Getting the {} report of user {} from {} to {}", DATE_RANGE, user.getUsername(), start, end);
+        return reportCache.get(user.getId(), end, () -> formatTimeLogs(user, start, end, sort, output),
+                DATE_RANGE, start, end, sort, output);
+    }
+
+    /**
+     * Returns the total work effort of the user within the given date range, as "hh:mm".
+     *
+     * @param user  the user
+     * @param start the start of the date range
+     * @param end   the end of the date range
+     * @return the total work effort, with an ETag if the range is closed
+     */
+    public CachedReport<String> getWorkEffortReport(User user, LocalDateTime start, LocalDateTime end) {
+        LOGGER.debug("Getting the {} report of user {} from {} to {}", WORK_EFFORT, user.getUsername(), start, end);
+        return reportCache.get(user.getId(), end, () -> {
+            Duration totalWorkEffort = timeLogService.getTotalWorkEffortByUserAndDataRange(user, start, end);
+            return String.format("%02d:%02d", totalWorkEffort.toHours(), totalWorkEffort.toMinutesPart());
+        }, WORK_EFFORT, start, end);
+    }
+
+    private List<String> formatTimeLogs(User user, LocalDateTime start, LocalDateTime end, String sort, String output) {
+        if (output.equals("duration")) { // summed per task in the database, one row per task
+            List<TaskEffort> taskEfforts = timeLogService.getTaskEffortsByUserAndDateRange(user, start, end, sort);
+            return timeLogService.formatTaskEfforts(taskEfforts);
+        }
+        List<TimeLog> timeLogs = timeLogService.getTimeLogsByUserAndDateRange(user, start, end);
+        List<Map.Entry<Task, Long>> sortedTimeLogs = timeLogService.sortTimeLogs(timeLogs, sort, end);
+        return timeLogService.formatTimeLogs(timeLogs, sortedTimeLogs, output);
+    }
+}
@@ -1,21 +1,41 @@
 package ru.nubowski.timeTracker.service.impl;
 
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import ru.nubowski.timeTracker.dto.request.TaskCreateRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.nubowski.timeTracker.config.CleanupProperties;
+import ru.nubowski.timeTracker.dto.TaskToResponse;
+import ru.nubowski.timeTracker.dto.response.ActiveTimerResponse;
+import ru.nubowski.timeTracker.dto.TaskTotals;
+import ru.nubowski.timeTracker.dto.TaskTransition;
+import ru.nubowski.timeTracker.dto.request.TaskUpdateRequest;
+import ru.nubowski.timeTracker.exception.ConcurrentTransitionException;
 import ru.nubowski.timeTracker.exception.OngoingTaskNotFoundException;
+import ru.nubowski.timeTracker.exception.TaskAlreadyStartedException;
 import ru.nubowski.timeTracker.exception.TaskNotFoundException;
 import ru.nubowski.timeTracker.model.Task;
 import ru.nubowski.timeTracker.model.TaskState;
-import ru.nubowski.timeTracker.model.TimeLog;
+import ru.nubowski.timeTracker.model.User;
 import ru.nubowski.timeTracker.repository.TaskRepository;
 import ru.nubowski.timeTracker.repository.TimeLogRepository;
+import ru.nubowski.timeTracker.service.ActiveTimerRegistry;
+import ru.nubowski.timeTracker.service.ChunkedExecutor;
+import ru.nubowski.timeTracker.service.ReportCache;
 import ru.nubowski.timeTracker.util.ClockProvider;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Service for managing tasks.
@@ -23,10 +43,19 @@ import java.util.Optional;
 @Service
 public class TaskService {
     private static final  Logger LOGGER = LoggerFactory.getLogger(TaskService.class);
+    /**
+     * Attempts of a task state transition that keeps losing its compare-and-set to concurrent ones.
+     */
+    public static final int MAX_TRANSITION_ATTEMPTS = 3;
     private final ClockProvider clockProvider;
     private final TaskRepository taskRepository;
     private final TimeLogRepository timeLogRepository;
-
+    private final ChunkedExecutor chunkedExecutor;
+    private final CleanupProperties cleanupProperties;
+    private final EntityManager entityManager;
+    private final ActiveTimerRegistry activeTimerRegistry;
+    private final ReportCache reportCache;
+    private final TransactionTemplate transactionTemplate;
 
     /**
      * Constructor for TaskService.
@@ -34,11 +63,26 @@ public class TaskService {
      * @param clockProvider       custom provider to get the current time
      * @param taskRepository      repository for handling tasks
      * @param timeLogRepository   repository for handling time logs
+     * @param chunkedExecutor     executor for chunked bulk statements
+     * @param cleanupProperties   the properties used for configuring cleanup
+     * @param entityManager       the entity manager, cleared after the native transition statements, and its cache
+     * @param activeTimerRegistry the in-memory registry of the running timers, updated by the transitions
+     * @param reportCache         the cache of the closed range reports, evicted when time logs are closed or deleted
+     * @param transactionManager  the transaction manager, each attempt of a transition runs in a transaction of it
      */
-    public TaskService(ClockProvider clockProvider, TaskRepository taskRepository, TimeLogRepository timeLogRepository) {
+    public TaskService(ClockProvider clockProvider, TaskRepository taskRepository, TimeLogRepository timeLogRepository,
+                       ChunkedExecutor chunkedExecutor, CleanupProperties cleanupProperties,
+                       EntityManager entityManager, ActiveTimerRegistry activeTimerRegistry, ReportCache reportCache,
+                       PlatformTransactionManager transactionManager) {
         this.clockProvider = clockProvider;
         this.taskRepository = taskRepository;
         this.timeLogRepository = timeLogRepository;
+        this.chunkedExecutor = chunkedExecutor;
+        this.cleanupProperties = cleanupProperties;
+        this.entityManager = entityManager;
+        this.activeTimerRegistry = activeTimerRegistry;
+        this.reportCache = reportCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -51,6 +95,57 @@ public class TaskService {
         return taskRepository.findAll();
     }
 
+    /**
+     * Gets one keyset page of the task listing as response rows, optionally only the tasks of one user.
+     *
+     * @param username the username to filter by, or null for the tasks of all users
+     * @param afterId  the id of the last task of the previous page, or null for the first page
+     * @param size     the requested page size, clamped to 1..{@link TimeLogService#MAX_PAGE_SIZE}
+     * @return a list of at most {@code size} task rows ordered by id
+     */
+    public List<TaskToResponse> getTaskResponses(String username, Long afterId, int size) {
+        LOGGER.debug("Getting {} tasks of user {} after id {}", size, username, afterId);
+        long after = afterId != null ? afterId : Long.MIN_VALUE;
+        Pageable page = Pageable.ofSize(TimeLogService.pageLimit(size));
+        if (username == null) {
+            return taskRepository.findResponsesAfter(after, page);
+        }
+        return taskRepository.findResponsesByUsernameAfter(username, after, page);
+    }
+
+    /**
+     * Gets one keyset page of the tasks of a user in the given current state, read from the task rows alone.
+     *
+     * @param user    the owner of the tasks
+     * @param state   the current state to filter by, or null for all tasks of the user
+     * @param afterId the id of the last task of the previous page, or null for the first page
+     * @param size    the requested page size, clamped to 1..{@link TimeLogService#MAX_PAGE_SIZE}
+     * @return a list of at most {@code size} task rows ordered by id
+     */
+    public List<TaskToResponse> getTaskResponsesByState(User user, TaskState state, Long afterId, int size) {
+        LOGGER.debug("Getting {} tasks of user {} in state {} after id {}", size, user.getUsername(), state, afterId);
+        if (state == null) {
+            return getTaskResponses(user.getUsername(), afterId, size);
+        }
+        long after = afterId != null ? afterId : Long.MIN_VALUE;
+        return taskRepository.findResponsesByUserIdAndStateAfter(user.getId(), state, after,
+                Pageable.ofSize(TimeLogService.pageLimit(size)));
+    }
+
+    /**
+     * Gets the running timers from memory, optionally only those of one user. No statement is run.
+     *
+     * @param userId the id of the user to filter by, or null for the timers of all users
+     * @return a list of the running timers ordered by task id, with their time elapsed up to now
+     */
+    public List<ActiveTimerResponse> getActiveTimers(Long userId) {
+        LocalDateTime now = clockProvider.now();
+        return activeTimerRegistry.getRunningTimers().stream()
+                .filter(timer -> userId == null || userId.equals(timer.getUserId()))
+                .map(timer -> new ActiveTimerResponse(timer, now))
+                .toList();
+    }
+
     /**
      * Gets a task by its id.
      *
@@ -64,6 +159,24 @@ public class TaskService {
                 orElseThrow(() -> new TaskNotFoundException(id));
     }
 
+    /**
+     * Gets a task by its id together with its user, for views that show the owner.
+     * A task in the second-level cache is taken from there, its user as well once it is cached too,
+     * otherwise both are read in one statement.
+     *
+     * @param id  the id of the task
+     * @return the task with the specified id
+     * @throws TaskNotFoundException if the task is not found
+     */
+    public Task getTaskWithUser(Long id) {
+        LOGGER.debug("Getting task with user, id: {}", id);
+        if (entityManager.getEntityManagerFactory().getCache().contains(Task.class, id)) {
+            return getTask(id);
+        }
+        return taskRepository.findWithUserById(id).
+                orElseThrow(() -> new TaskNotFoundException(id));
+    }
+
     /**
      * Saves a new task.
      *
@@ -77,105 +190,246 @@ public class TaskService {
     }
 
     /**
-     * Deletes a task by its id.
+     * Deletes a task by its id, its time logs by the cascade of their foreign key without loading them,
+     * and evicts the task, its timer and the reports of its user.
      *
      * @param id the id of the task to be deleted
      */
     public void deleteTask (Long id) {
         LOGGER.info("Deleting task with id: {}", id);
-        taskRepository.deleteById(id);
+        Optional<Long> userId = taskRepository.deleteReturningUserId(id);
+        evictTask(id);
+        activeTimerRegistry.forget(List.of(id));
+        userId.ifPresent(reportCache::evictUser);
     }
 
     /**
-     * Deletes tasks created before the specified date.
+     * Deletes tasks created before the specified date, together with their time logs and daily efforts.
+     * Works in chunks of set-based deletes, each chunk committed on its own: the tasks of a chunk are locked in id
+     * order, as the transitions do, and their time logs follow by the cascade of their foreign key.
      *
      * @param cutoff the date threshold for task deletion
      */
     public void deleteOldTasks(LocalDateTime cutoff) {
         LOGGER.debug("Deleting tasks created before: {}", cutoff);
-        List<Task> oldTasks = taskRepository.findByCreatedAtBefore(cutoff);
-        if(!oldTasks.isEmpty()) {
-            taskRepository.deleteAll(oldTasks);
-            LOGGER.info("{} old tasks deleted successfully", oldTasks.size());
-        } else {
-            LOGGER.info("No old tasks to delete");
+        long deleted = chunkedExecutor.execute("Deleting old tasks", cleanupProperties.getChunkSize(),
+                cleanupProperties.getChunkPauseMillis(), limit -> {
+                    List<Long> ids = taskRepository.findIdsCreatedBefore(cutoff, limit);
+                    if (ids.isEmpty()) {
+                        return 0;
+                    }
+                    int deletedTasks = taskRepository.deleteByIds(ids);
+                    activeTimerRegistry.forget(ids);
+                    return deletedTasks;
+                });
+        if (deleted > 0) {
+            reportCache.evictAll();
         }
+        LOGGER.info("{} old tasks deleted successfully", deleted);
     }
 
     /**
      * Starts a task and creates a new time log.
+     * One statement: the insert also records the new segment as open in the running totals of the task.
      *
-     * @param task the task to be started
+     * @param taskId the id of the task to be started
      * @return the created time log
+     * @throws TaskNotFoundException if the task is not found
+     * @throws TaskAlreadyStartedException if the task already has an open segment
+     * @throws ConcurrentTransitionException if the task kept changing concurrently
      */
-    public TimeLog startTask(Task task) {
-        LOGGER.info("Starting a task: {}", task.getId());
-        TimeLog timeLog = new TimeLog();
-        timeLog.setTask(task);
-        timeLog.setStartTime(clockProvider.now());
-        timeLog.setTaskState(TaskState.ONGOING);
-        return timeLogRepository.save(timeLog);
+    public TaskTransition startTask(Long taskId) {
+        LOGGER.info("Starting a task: {}", taskId);
+        return transition(taskId, () -> timeLogRepository.startSegment(taskId, clockProvider.now()),
+                totals -> totals.getOpenSegmentStart() != null ? new TaskAlreadyStartedException(taskId) : null);
     }
 
     /**
      * Stops a task and updates the corresponding time log.
+     * One statement: the update also adds the closed segment to the daily effort rollup and the running totals.
      *
-     * @param task the task to be stopped
+     * @param taskId the id of the task to be stopped
      * @return the updated time log
      * @throws OngoingTaskNotFoundException if there is no ongoing task
+     * @throws TaskNotFoundException if the task is not found
+     * @throws ConcurrentTransitionException if the task kept changing concurrently
      */
-    public TimeLog stopTask(Task task) {
-        LOGGER.info("Stopping task: {}", task.getId());
-        TimeLog timeLog = timeLogRepository.findFirstByTaskAndEndTimeIsNullOrderByStartTimeDesc(task). // perfect naming ^-^
-                orElseThrow(() -> new OngoingTaskNotFoundException(task.getId()));
-        timeLog.setEndTime(clockProvider.now());
-        timeLog.setTaskState(TaskState.USER_STOPPED);
-        return timeLogRepository.save(timeLog);
+    public TaskTransition stopTask(Long taskId) {
+        LOGGER.info("Stopping task: {}", taskId);
+        return transition(taskId, () -> timeLogRepository.closeSegment(taskId, clockProvider.now(), TaskState.USER_STOPPED.name()),
+                totals -> totals.getOpenSegmentStart() == null ? new OngoingTaskNotFoundException(taskId) : null);
     }
 
     /**
      * Resumes a task and creates a new time log.
-     * It is mostly for tag a task with USER_STOPPED and make a new one after PAUSE
+     * It is mostly for tag a task with USER_STOPPED and make a new one after PAUSE, both in one statement
      *
-     * @param task the task to be resumed
+     * @param taskId the id of the task to be resumed
      * @return the created time log
-     * @throws OngoingTaskNotFoundException if there is no ongoing task
+     * @throws OngoingTaskNotFoundException if the task is not paused
+     * @throws TaskNotFoundException if the task is not found
+     * @throws ConcurrentTransitionException if the task kept changing concurrently
      */
-    public TimeLog resumeTask(Task task) {
-        TimeLog timeLog = timeLogRepository.findByTaskAndTaskState(task, TaskState.PAUSED).
-                orElseThrow(() -> new OngoingTaskNotFoundException(task.getId()));
-        timeLog.setTaskState(TaskState.USER_STOPPED);
-        LOGGER.info("Resuming task: {}", task.getId());
-        return startTask(task);
+    public TaskTransition resumeTask(Long taskId) {
+        LOGGER.info("Resuming task: {}", taskId);
+        return transition(taskId, () -> timeLogRepository.resumeSegment(taskId, clockProvider.now()),
+                totals -> totals.getOpenSegmentStart() != null
+                        || !timeLogRepository.existsByTaskIdAndTaskState(taskId, TaskState.PAUSED)
+                        ? new OngoingTaskNotFoundException(taskId) : null);
     }
 
     /**
      * Pauses a task and change its status to PAUSE.
      * It is mostly for tag a task with PAUSED and not closed, so make a task not CLOSED
+     * One statement: the update also adds the paused segment to the daily effort rollup and the running totals.
      *
-     * @param task the task to be paused
-     * @return save the time log statement
+     * @param taskId the id of the task to be paused
+     * @return the paused time log
+     * @throws OngoingTaskNotFoundException if there is no ongoing task
+     * @throws TaskNotFoundException if the task is not found
+     * @throws ConcurrentTransitionException if the task kept changing concurrently
      */
-    public TimeLog pauseTask(Task task) {
-        LOGGER.info("Pausing task: {}", task.getId());
-        TimeLog timeLog = timeLogRepository.findFirstByTaskAndEndTimeIsNullOrderByStartTimeDesc(task).
-                orElseThrow(() -> new OngoingTaskNotFoundException(task.getId()));
-        timeLog.setEndTime(clockProvider.now());
-        timeLog.setTaskState(TaskState.PAUSED);
-        return timeLogRepository.save(timeLog);
+    public TaskTransition pauseTask(Long taskId) {
+        LOGGER.info("Pausing task: {}", taskId);
+        return transition(taskId, () -> timeLogRepository.closeSegment(taskId, clockProvider.now(), TaskState.PAUSED.name()),
+                totals -> totals.getOpenSegmentStart() == null ? new OngoingTaskNotFoundException(taskId) : null);
     }
 
     /**
-     * Find a task by ID and update its fields
+     * Runs a transition statement, a compare-and-set against the version of the task row, with bounded retry.
+     * When it changes nothing, the task is read once to tell why: missing, not in the state the transition needs
+     * (rejected right away), or changed by a concurrent transition in the meantime (retried with a fresh snapshot).
+     * A successful first attempt stays one statement, and no row lock is held beyond the statement.
+     * <p>
+     * Each attempt runs in a transaction of its own, joining the surrounding one if any. An attempt that fails to
+     * get its locks (a deadlock with a bulk statement, a lock timeout) is rolled back and retried like a lost
+     * compare-and-set; within a surrounding transaction, which the failure has aborted, it is rethrown instead.
+     * <p>
+     * On success the persistence context is cleared, like {@code @Modifying(clearAutomatically = true)}:
+     * time logs and tasks loaded before by a surrounding transaction no longer match their rows.
+     * Pending changes were flushed before the native statement ran. The task is evicted from the second-level cache,
+     * which the statement bypasses. The timer of the task is handed to the registry of the running timers,
+     * which applies it once the transaction commits. Closing a segment evicts the reports of the user.
      *
-     * @param request DTO of the task from TaskCreateRequest with needed fields of view
+     * @param taskId the id of the task
+     * @param statement the transition statement
+     * @param wrongState the exception for the current totals of the task, or null if the transition is allowed
+     * @return the written time log
+     */
+    private TaskTransition transition(Long taskId, Supplier<Optional<TaskTransition>> statement,
+                                      Function<TaskTotals, RuntimeException> wrongState) {
+        boolean retryLockFailures = !TransactionSynchronizationManager.isActualTransactionActive();
+        for (int attempt = 1; attempt <= MAX_TRANSITION_ATTEMPTS; attempt++) {
+            Optional<TaskTransition> transition;
+            try {
+                transition = transactionTemplate.execute(status -> attempt(taskId, statement, wrongState));
+            } catch (PessimisticLockingFailureException e) {
+                if (!retryLockFailures) {
+                    throw e;
+                }
+                LOGGER.debug("Task {} failed to get its locks, attempt {} of {}", taskId, attempt, MAX_TRANSITION_ATTEMPTS, e);
+                continue;
+            }
+            if (transition.isPresent()) {
+                return transition.get();
+            }
+            LOGGER.debug("Task {} changed concurrently, attempt {} of {}", taskId, attempt, MAX_TRANSITION_ATTEMPTS);
+        }
+        LOGGER.warn("Task {} kept changing concurrently, giving up after {} attempts", taskId, MAX_TRANSITION_ATTEMPTS);
+        throw new ConcurrentTransitionException(taskId, MAX_TRANSITION_ATTEMPTS);
+    }
+
+    /**
+     * Runs one attempt of a transition, see {@link #transition}.
+     *
+     * @return the written time log, empty if the task changed concurrently
+     */
+    private Optional<TaskTransition> attempt(Long taskId, Supplier<Optional<TaskTransition>> statement,
+                                             Function<TaskTotals, RuntimeException> wrongState) {
+        Optional<TaskTransition> transition = statement.get();
+        if (transition.isPresent()) {
+            applied(taskId, transition.get());
+            return transition;
+        }
+        TaskTotals totals = taskRepository.findTotalsById(taskId)
+                .orElseThrow(() -> new TaskNotFoundException(taskId));
+        RuntimeException rejected = wrongState.apply(totals);
+        if (rejected != null) {
+            throw rejected;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Auto-stops a segment of a task that ran past its maximum length, at its end, if it is still the open segment.
+     * One statement like {@link #stopTask}, followed by the same clearing and evictions, but it neither retries nor
+     * rejects: a segment closed meanwhile, or a task changed concurrently, is left as it is.
+     *
+     * @param taskId       the id of the task
+     * @param segmentStart the start of the segment
+     * @param end          the end of the segment, its start plus its maximum length
+     * @return the auto-stopped time log, empty if the segment was not the open one or the task changed concurrently
+     */
+    @Transactional
+    public Optional<TaskTransition> stopRunawaySegment(Long taskId, LocalDateTime segmentStart, LocalDateTime end) {
+        LOGGER.info("Auto-stopping task {}, its segment started at {} ran past its maximum length", taskId, segmentStart);
+        Optional<TaskTransition> transition = timeLogRepository.closeSegmentStartedAt(taskId, segmentStart, end,
+                TaskState.AUTO_STOPPED.name());
+        transition.ifPresent(stopped -> applied(taskId, stopped));
+        return transition;
+    }
+
+    /**
+     * Follows up a successful transition statement, see {@link #transition}.
+     *
+     * @param taskId     the id of the task
+     * @param transition the written time log
+     */
+    private void applied(Long taskId, TaskTransition transition) {
+        entityManager.clear();
+        evictTask(taskId);
+        activeTimerRegistry.apply(transition);
+        if (transition.getEndTime() != null) {
+            reportCache.evictUser(transition.getUserId());
+        }
+    }
+
+    /**
+     * Evicts a task from the second-level cache now, and once more when the surrounding transaction completes:
+     * a read racing the transition may have cached the task as it was before.
+     *
+     * @param taskId the id of the task
+     */
+    private void evictTask(Long taskId) {
+        Runnable eviction = () -> entityManager.getEntityManagerFactory().getCache().evict(Task.class, taskId);
+        eviction.run();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                eviction.run();
+            }
+        });
+    }
+
+    /**
+     * Find a task by ID and update its fields.
+     * The maximum segment length is kept when the request leaves it out, and cleared by 0.
+     *
+     * @param request DTO of the task from TaskUpdateRequest with needed fields of view
      * @return updated task
      */
-    public Task updateTask(Long id, TaskCreateRequest request) {
+    public Task updateTask(Long id, TaskUpdateRequest request) {
         Task taskToUpdate = taskRepository.findById(id).get(); // fixed doubling, and now .get without isPresent -_-
         taskToUpdate.setName(request.getName());
         taskToUpdate.setDescription(request.getDescription());
+        if (request.getMaxSegmentMinutes() != null) { // left out, the maximum is kept; 0 clears it
+            taskToUpdate.setMaxSegmentMinutes(request.getMaxSegmentMinutes() > 0 ? request.getMaxSegmentMinutes() : null);
+        }
         taskRepository.save(taskToUpdate);
+        reportCache.evictUser(taskToUpdate.getUser().getId()); // the reports show the task names
         LOGGER.info("Task with id {} is saved", taskToUpdate.getId());
         return taskToUpdate;
     }
@@ -0,0 +1,148 @@
+package ru.nubowski.timeTracker.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.nubowski.timeTracker.config.TotalsProperties;
+import ru.nubowski.timeTracker.dto.TaskTotals;
+import ru.nubowski.timeTracker.dto.TaskTotalsMismatch;
+import ru.nubowski.timeTracker.exception.TaskNotFoundException;
+import ru.nubowski.timeTracker.model.TimeLog;
+import ru.nubowski.timeTracker.repository.TaskRepository;
+import ru.nubowski.timeTracker.repository.TimeLogRepository;
+import ru.nubowski.timeTracker.service.ActiveTimerRegistry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service for the running totals of the tasks: the milliseconds of their closed time logs and the start of their open one,
+ * along with their current state, the state of their latest time log.
+ * The totals are changed with atomic statements in the transaction that opens, closes or removes the segment
+ * (the task state transitions do it within their own statements), and a scheduled check verifies them against the time logs.
+ */
+@Service
+public class TaskTotalsService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskTotalsService.class);
+    private final TaskRepository taskRepository;
+    private final TimeLogRepository timeLogRepository;
+    private final TotalsProperties totalsProperties;
+    private final ActiveTimerRegistry activeTimerRegistry;
+
+    /**
+     * Constructor for TaskTotalsService.
+     *
+     * @param taskRepository    repository holding the totals
+     * @param timeLogRepository repository for handling time logs
+     * @param totalsProperties  the properties used for configuring the consistency check
+     * @param activeTimerRegistry the in-memory registry of the running timers
+     */
+    public TaskTotalsService(TaskRepository taskRepository, TimeLogRepository timeLogRepository,
+                             TotalsProperties totalsProperties, ActiveTimerRegistry activeTimerRegistry) {
+        this.taskRepository = taskRepository;
+        this.timeLogRepository = timeLogRepository;
+        this.totalsProperties = totalsProperties;
+        this.activeTimerRegistry = activeTimerRegistry;
+    }
+
+    /**
+     * Adds a saved time log to the totals of its task, open or closed.
+     *
+     * @param timeLog the time log
+     */
+    public void addSegment(TimeLog timeLog) {
+        if (timeLog.getEndTime() == null) {
+            taskRepository.openSegment(timeLog.getTask().getId(), timeLog.getStartTime());
+            return;
+        }
+        taskRepository.addClosedSegment(timeLog.getTask().getId(), timeLog.getStartTime(), timeLog.getEndTime(), 1);
+    }
+
+    /**
+     * Takes a time log back out of the totals of its task, before it is changed or deleted.
+     *
+     * @param timeLog the time log
+     */
+    public void removeSegment(TimeLog timeLog) {
+        if (timeLog.getEndTime() == null) {
+            taskRepository.clearOpenSegment(timeLog.getTask().getId(), timeLog.getStartTime());
+            return;
+        }
+        taskRepository.addClosedSegment(timeLog.getTask().getId(), timeLog.getStartTime(), timeLog.getEndTime(), -1);
+    }
+
+    /**
+     * Sets the current state of a task from its latest time log, after one of its time logs is saved or deleted,
+     * and has its timer read again once the transaction commits.
+     *
+     * @param taskId the id of the task
+     */
+    public void refreshCurrentState(Long taskId) {
+        taskRepository.refreshCurrentState(taskId);
+        activeTimerRegistry.refresh(taskId);
+    }
+
+    /**
+     * Resets the totals of a task after all its time logs are deleted.
+     *
+     * @param taskId the id of the task
+     */
+    public void resetTotals(Long taskId) {
+        taskRepository.resetTotals(taskId);
+        activeTimerRegistry.refresh(taskId);
+    }
+
+    /**
+     * Returns the time elapsed on a task from its running totals: the closed total plus the open segment up to now.
+     * The totals of a running task are taken from the registry of the running timers, without a statement.
+     *
+     * @param taskId the id of the task
+     * @param now the end of the open segment
+     * @return the time elapsed
+     * @throws TaskNotFoundException if there is no such task, or it has no time logs
+     */
+    public Duration getElapsed(Long taskId, LocalDateTime now) {
+        Optional<Duration> running = activeTimerRegistry.getElapsed(taskId, now);
+        if (running.isPresent()) {
+            return running.get();
+        }
+        TaskTotals totals = taskRepository.findTotalsById(taskId)
+                .orElseThrow(() -> new TaskNotFoundException(taskId));
+        if (totals.getOpenSegmentStart() == null) {
+            if (totals.getClosedMillis() == 0 && !timeLogRepository.existsByTaskId(taskId)) {
+                throw new TaskNotFoundException(taskId);
+            }
+            return Duration.ofMillis(totals.getClosedMillis());
+        }
+        return Duration.ofMillis(totals.getClosedMillis()).plus(Duration.between(totals.getOpenSegmentStart(), now));
+    }
+
+    /**
+     * Verifies the running totals and current states of all tasks against their time logs and, if configured,
+     * repairs the mismatching ones.
+     * Reads every time log once, so it is scheduled off-peak by {@link ru.nubowski.timeTracker.schedule.SharedJobs}.
+     *
+     * @return the number of mismatching tasks found
+     */
+    @Transactional
+    public int verifyTotals() {
+        List<TaskTotalsMismatch> mismatches = taskRepository.findTotalsMismatches();
+        int repaired = 0;
+        for (TaskTotalsMismatch mismatch : mismatches) {
+            LOGGER.warn("Running totals of task {} are off: closed {} ms (expected {}), open since {} (expected {}), " +
+                            "current {} of time log {} (expected {} of {})",
+                    mismatch.getTaskId(), mismatch.getClosedMillis(), mismatch.getExpectedClosedMillis(),
+                    mismatch.getOpenSegmentStart(), mismatch.getExpectedOpenSegmentStart(), mismatch.getCurrentState(),
+                    mismatch.getCurrentLogId(), mismatch.getExpectedCurrentState(), mismatch.getExpectedCurrentLogId());
+            if (totalsProperties.isRepair()) {
+                repaired += taskRepository.repairTotals(mismatch.getTaskId(), mismatch.getClosedMillis(),
+                        mismatch.getOpenSegmentStart(), mismatch.getCurrentLogId());
+            }
+        }
+        LOGGER.info("Running totals checked: {} tasks mismatching, {} repaired", mismatches.size(), repaired);
+        return mismatches.size();
+    }
+}
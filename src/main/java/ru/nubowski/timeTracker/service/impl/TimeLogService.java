@@ -2,8 +2,18 @@ package ru.nubowski.timeTracker.service.impl;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.nubowski.timeTracker.config.AutoStopProperties;
+import ru.nubowski.timeTracker.config.CleanupProperties;
+import ru.nubowski.timeTracker.dto.TaskEffort;
+import ru.nubowski.timeTracker.dto.TimeLogCursor;
+import ru.nubowski.timeTracker.dto.TimeLogSegment;
 import ru.nubowski.timeTracker.exception.TaskNotFoundException;
 import ru.nubowski.timeTracker.exception.TimeLogNotFoundException;
 import ru.nubowski.timeTracker.model.Task;
@@ -11,13 +21,26 @@ import ru.nubowski.timeTracker.model.TaskState;
 import ru.nubowski.timeTracker.model.TimeLog;
 import ru.nubowski.timeTracker.model.User;
 import ru.nubowski.timeTracker.repository.TimeLogRepository;
+import ru.nubowski.timeTracker.service.ActiveTimerRegistry;
+import ru.nubowski.timeTracker.service.ChunkedExecutor;
+import ru.nubowski.timeTracker.service.PartitionMaintenanceService;
+import ru.nubowski.timeTracker.service.ReportCache;
+import ru.nubowski.timeTracker.util.ClockProvider;
 
+import java.time.DateTimeException;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -27,25 +50,109 @@ import java.util.stream.Stream;
 @Service
 public class TimeLogService {
     private static final Logger LOGGER = LoggerFactory.getLogger(TimeLogService.class);
+    /**
+     * Upper bound for a single keyset page, whatever the client asks for.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+    /**
+     * Number of ongoing time logs auto-stopped by one UPDATE statement.
+     */
+    public static final int AUTO_STOP_CHUNK_SIZE = 1000;
     private final TimeLogRepository timeLogRepository;
+    private final EntityManager entityManager;
+    private final ChunkedExecutor chunkedExecutor;
+    private final PartitionMaintenanceService partitionMaintenanceService;
+    private final DailyEffortService dailyEffortService;
+    private final TaskTotalsService taskTotalsService;
+    private final ActiveTimerRegistry activeTimerRegistry;
+    private final ReportCache reportCache;
+    private final CleanupProperties cleanupProperties;
+    private final AutoStopProperties autoStopProperties;
+    private final ClockProvider clockProvider;
+    private final Timer autoStopTimer;
+    private final Counter autoStopCounter;
 
     /**
      * Constructor for the TimeLogService.
      *
      * @param timeLogRepository the time log repository
+     * @param entityManager the entity manager, used to detach streamed time logs, and its cache
+     * @param chunkedExecutor the executor for chunked bulk statements
+     * @param partitionMaintenanceService the service dropping old time_logs partitions
+     * @param dailyEffortService the service for the daily effort rollup
+     * @param taskTotalsService the service for the running task totals
+     * @param activeTimerRegistry the in-memory registry of the running timers, reconciled after the auto-stop
+     * @param reportCache the cache of the closed range reports, evicted when time logs are written
+     * @param cleanupProperties the properties used for configuring cleanup
+     * @param autoStopProperties the properties used for configuring the auto-stop
+     * @param clockProvider custom provider to get the current time
+     * @param meterRegistry the registry for the auto-stop metrics
      */
-    public TimeLogService(TimeLogRepository timeLogRepository) {
+    public TimeLogService(TimeLogRepository timeLogRepository, EntityManager entityManager,
+                          ChunkedExecutor chunkedExecutor, PartitionMaintenanceService partitionMaintenanceService,
+                          DailyEffortService dailyEffortService, TaskTotalsService taskTotalsService,
+                          ActiveTimerRegistry activeTimerRegistry, ReportCache reportCache, CleanupProperties cleanupProperties,
+                          AutoStopProperties autoStopProperties, ClockProvider clockProvider, MeterRegistry meterRegistry) {
         this.timeLogRepository = timeLogRepository;
+        this.entityManager = entityManager;
+        this.chunkedExecutor = chunkedExecutor;
+        this.partitionMaintenanceService = partitionMaintenanceService;
+        this.dailyEffortService = dailyEffortService;
+        this.taskTotalsService = taskTotalsService;
+        this.activeTimerRegistry = activeTimerRegistry;
+        this.reportCache = reportCache;
+        this.cleanupProperties = cleanupProperties;
+        this.autoStopProperties = autoStopProperties;
+        this.clockProvider = clockProvider;
+        this.autoStopTimer = Timer.builder("timetracker.autostop.duration")
+                .description("Time spent auto-stopping ongoing time logs")
+                .register(meterRegistry);
+        this.autoStopCounter = Counter.builder("timetracker.autostop.segments")
+                .description("Number of time logs auto-stopped")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns one keyset page of time logs ordered by start time and id.
+     *
+     * @param cursor the position after which the page starts, or null for the first page
+     * @param size the requested page size, clamped to 1..{@link #MAX_PAGE_SIZE}
+     * @return a list of at most {@code size} time logs
+     */
+    public List<TimeLog> getTimeLogsPage(TimeLogCursor cursor, int size) {
+        int limit = pageLimit(size);
+        LOGGER.debug("Getting {} time logs after cursor {}", limit, cursor);
+        if (cursor == null) {
+            return timeLogRepository.findFirstPage(limit);
+        }
+        return timeLogRepository.findPageAfter(cursor.getStartTime(), cursor.getId(), limit);
     }
 
     /**
-     * Returns all time logs.
+     * Clamps a requested page size to 1..{@link #MAX_PAGE_SIZE}.
      *
-     * @return a list of all time logs
+     * @param size the requested page size
+     * @return the page size actually used
      */
-    public List<TimeLog> getAllTimeLogs(){
-        LOGGER.debug("Getting all time logs");
-        return timeLogRepository.findAll();
+    public static int pageLimit(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Feeds every time log to the consumer in start time order, one at a time.
+     * Each log is detached right after the consumer is done with it, so memory stays flat regardless of table size.
+     *
+     * @param consumer the consumer of the time logs
+     */
+    @Transactional(readOnly = true)
+    public void forEachTimeLog(Consumer<TimeLog> consumer) {
+        LOGGER.debug("Streaming all time logs");
+        try (Stream<TimeLog> timeLogs = timeLogRepository.streamAllOrderByStartTime()) {
+            timeLogs.forEach(timeLog -> {
+                consumer.accept(timeLog);
+                entityManager.detach(timeLog);
+            });
+        }
     }
 
     /**
@@ -62,40 +169,97 @@ public class TimeLogService {
     }
 
     /**
-     * Find all time logs for a task.
+     * Find all time logs for a task, the most recent first.
      *
      * @param task the task to retrieve time logs for
      * @return a list of time logs associated with the specified task
      */
     public List<TimeLog> getAllTimeLogsForTask(Task task) {
         LOGGER.debug("Getting all time logs of the task with id: {}", task.getId());
-        return timeLogRepository.findAllByTask(task);
+        return timeLogRepository.findAllByTaskOrderByStartTimeDescIdDesc(task);
     }
 
     /**
-     * Saves a time log.
+     * Find the most recent time logs of a task, newest first.
+     *
+     * @param taskId the id of the task
+     * @param size the requested number of time logs, clamped to 1..{@link #MAX_PAGE_SIZE}
+     * @return a list of at most {@code size} time logs
+     */
+    public List<TimeLog> getRecentTimeLogsForTask(Long taskId, int size) {
+        LOGGER.debug("Getting {} recent time logs of the task with id: {}", size, taskId);
+        return timeLogRepository.findByTaskIdOrderByStartTimeDesc(taskId, Pageable.ofSize(pageLimit(size)));
+    }
+
+    /**
+     * Saves a time log. It is added to the daily effort rollup and the running totals of its task,
+     * replacing its previous version as stored, and the current state of the task is refreshed.
+     * The reports of the user are evicted, and those of the previous user if the time log moved.
      *
      * @param timeLog the time log to be saved
      * @return the saved time log
      */
+    @Transactional
     public TimeLog saveTimeLog(TimeLog timeLog) {
         LOGGER.info("Saving a new time log");
-        return timeLogRepository.save(timeLog);
+        Optional<TimeLog> previous = timeLog.getId() != null
+                ? timeLogRepository.findSegmentById(timeLog.getId()).map(TimeLogSegment::toTimeLog)
+                : Optional.empty();
+        previous.ifPresent(this::removeSegment);
+        TimeLog savedTimeLog = timeLogRepository.save(timeLog);
+        dailyEffortService.addSegment(savedTimeLog);
+        taskTotalsService.addSegment(savedTimeLog);
+        Long taskId = savedTimeLog.getTask().getId();
+        taskTotalsService.refreshCurrentState(taskId);
+        evictReports(savedTimeLog.getTask());
+        previous.map(TimeLog::getTask).filter(task -> !task.getId().equals(taskId)).ifPresent(task -> {
+            taskTotalsService.refreshCurrentState(task.getId());
+            evictReports(task);
+        });
+        return savedTimeLog;
     }
 
     /**
-     * Deletes a time log by id.
+     * Deletes a time log by id, refreshes the current state of its task and evicts the reports of its user.
      *
      * @param id the id of the time log to be deleted
      * @throws TimeLogNotFoundException if no time log is found with the specified id
      */
+    @Transactional
     public void deleteTimeLog(Long id) {
         LOGGER.info("Deleting time log");
         LOGGER.debug("Deleting time log with id: {}", id); // mbe this is the way?? TODO check&ask must a better way..
         if (!timeLogRepository.existsById(id)) {
             throw new TimeLogNotFoundException(id);
         }
+        Optional<TimeLog> timeLog = timeLogRepository.findById(id);
+        timeLog.ifPresent(this::removeSegment);
         timeLogRepository.deleteById(id);
+        timeLog.map(TimeLog::getTask).ifPresent(task -> {
+            taskTotalsService.refreshCurrentState(task.getId());
+            evictReports(task);
+        });
+    }
+
+    /**
+     * Evicts the reports of the user of a task. The task of a stored segment only carries its id,
+     * its user is then read from the task as cached.
+     */
+    private void evictReports(Task task) {
+        if (task.getUser() == null && task.getId() != null) {
+            task = entityManager.getReference(Task.class, task.getId());
+        }
+        if (task.getUser() != null) {
+            reportCache.evictUser(task.getUser().getId());
+        }
+    }
+
+    /**
+     * Takes a time log out of the rollup and the running totals, before it is changed or deleted.
+     */
+    private void removeSegment(TimeLog timeLog) {
+        dailyEffortService.removeSegment(timeLog);
+        taskTotalsService.removeSegment(timeLog);
     }
 
     /**
@@ -112,19 +276,22 @@ public class TimeLogService {
     }
 
     /**
-     * Deletes all time logs for a task.
+     * Deletes all time logs for a task together with its daily effort rows, in one statement, resets its totals,
+     * and evicts the reports of its user.
      *
      * @param task the task to delete time logs for
      */
+    @Transactional
     public void deleteTimeLogsByTask(Task task) {
         LOGGER.info("Deleting time logs for task: {}", task.getName());
-        List<TimeLog> timeLogs = timeLogRepository.findByTask(task);
-        timeLogRepository.deleteAll(timeLogs); // believed in the IDE and replace with the bulk... (!)
+        timeLogRepository.deleteByTaskId(task.getId());
+        taskTotalsService.resetTotals(task.getId());
+        reportCache.evictUser(task.getUser().getId());
     }
 
     /**
      * Returns the total work effort for a user within a date range.
-     * Calculated on the BD side with the native sql query request
+     * Calculated on the BD side: full days from the daily effort rollup, the partial edge days from the time logs
      *
      * @param user the user to calculate work effort for
      * @param start the start of the date range
@@ -133,7 +300,40 @@ public class TimeLogService {
      */
     public Duration getTotalWorkEffortByUserAndDataRange(User user, LocalDateTime start, LocalDateTime end) {
         LOGGER.info("Getting total work effort for username {} id {} between {} and {}", user.getUsername(), user.getId(), start, end);
-        return Duration.ofSeconds(timeLogRepository.getTotalWorkEffortInSeconds(user.getId(), start, end));
+        return dailyEffortService.getTotalEffort(user, start, end, clockProvider.now());
+    }
+
+    /**
+     * Returns the effort per task of a user within a date range, aggregated and sorted by the database.
+     * Time logs are clipped to the range, the ones still open count up to now. Full days come from the daily effort rollup.
+     *
+     * @param user the user to calculate the efforts for
+     * @param start the start of the date range
+     * @param end the end of the date range
+     * @param sort "start_time" for the earliest started task first, anything else (e.g. "duration") for the longest task first
+     * @return a list of task efforts
+     */
+    public List<TaskEffort> getTaskEffortsByUserAndDateRange(User user, LocalDateTime start, LocalDateTime end, String sort) {
+        LOGGER.debug("Getting task efforts for user {} between {} and {} sorted by {}", user.getUsername(), start, end, sort);
+        return dailyEffortService.getTaskEfforts(user, start, end, sort, clockProvider.now());
+    }
+
+    /**
+     * Formats task efforts as "name - hh:mm" lines, keeping their order.
+     *
+     * @param taskEfforts the task efforts to be formatted
+     * @return a list of formatted task efforts
+     */
+    public List<String> formatTaskEfforts(List<TaskEffort> taskEfforts) {
+        return taskEfforts.stream()
+                .map(effort -> {
+                    Duration duration = Duration.ofSeconds(effort.getSeconds());
+                    return String.format("%s - %02d:%02d",
+                            effort.getTaskName(),
+                            duration.toHours(),
+                            duration.toMinutesPart());
+                })
+                .collect(Collectors.toList());
     }
 
     /**
@@ -161,28 +361,106 @@ public class TimeLogService {
     }
 
     /**
-     * Automatically ends ongoing tasks at a scheduled time.
+     * Automatically ends ongoing tasks at a scheduled time, see {@link ru.nubowski.timeTracker.schedule.SharedJobs}.
+     * One end time is captured up front and applied with chunked bulk UPDATEs, instead of a save per time log.
+     * The count and the duration are recorded as metrics. The cached tasks are evicted from the second-level cache,
+     * the closed range reports from their cache, and the stopped timers are dropped from the registry of the running timers by reconciling it right after.
+     *
+     * @return the number of auto-stopped time logs
+     */
+    public long autoEndTasks() {
+        LocalDateTime now = clockProvider.now();
+        LOGGER.info("Auto-ending ongoing tasks at {}", now);
+        return autoEnd(limit -> timeLogRepository.autoStopOngoingChunk(now, limit));
+    }
+
+    /**
+     * Automatically ends the ongoing tasks of the users whose day has ended in their time zone, the users without one
+     * at the server's: the segments started before the last midnight of the time zone, ended at that midnight, and all
+     * the segments of the time zones within the last {@code autostop.windowMinutes} of their day, ended now.
+     * Run every window by {@link ru.nubowski.timeTracker.schedule.SharedJobs}, so the work is spread over one small
+     * batch per time zone offset instead of all at the server's midnight, and a late or failed run is caught up by
+     * the next one. Stopped as {@link #autoEndTasks()} does, with a statement per time zone with ongoing tasks.
+     *
+     * @return the number of auto-stopped time logs
      */
-    @Scheduled(cron = "0 59 23 * * ?") // TODO: make a schedule or whatever package
-    public void autoEndTasks() {
-        LOGGER.info("Auto-ending ongoing tasks");
-        List<TimeLog> ongoingTimeLog = timeLogRepository.findByEndTimeIsNullAndTaskStateEquals(TaskState.ONGOING); // PAUSE
-        ongoingTimeLog.forEach(timeLog -> {
-            timeLog.setEndTime(LocalDateTime.now()); // TODO: LocalDateTime out of loop --^ condition ONGOING on each + bulk
-            timeLog.setTaskState(TaskState.AUTO_STOPPED);
-            timeLogRepository.save(timeLog);
-        });
+    public long autoEndTasksAtEndOfDay() {
+        LocalDateTime now = clockProvider.now();
+        ZoneId serverZone = ZoneId.systemDefault();
+        List<IntUnaryOperator> chunks = new ArrayList<>();
+        for (String zone : timeLogRepository.findOngoingTimeZones(serverZone.getId())) {
+            LocalDateTime end = getEndOfDay(now, serverZone, zone);
+            if (end != null) {
+                LOGGER.debug("Auto-ending ongoing tasks of the time zone {} at {}", zone, end);
+                chunks.add(limit -> timeLogRepository.autoStopOngoingChunkInZone(end, zone, serverZone.getId(), limit));
+            }
+        }
+        return autoEnd(chunks);
+    }
+
+    /**
+     * Returns the end, on the server's clock, of the last day of a time zone to auto-stop: its last midnight, at which
+     * the segments started before it are ended however late the run, or now within the window before its next one.
+     *
+     * @param now the current time of the server
+     * @param serverZone the time zone of the server
+     * @param zone the time zone
+     * @return the end time, null if the time zone is invalid
+     */
+    private LocalDateTime getEndOfDay(LocalDateTime now, ZoneId serverZone, String zone) {
+        try {
+            ZonedDateTime local = now.atZone(serverZone).withZoneSameInstant(ZoneId.of(zone));
+            if (!local.toLocalTime().isBefore(LocalTime.MIDNIGHT.minusMinutes(autoStopProperties.getWindowMinutes()))) {
+                return now;
+            }
+            return local.toLocalDate().atStartOfDay(local.getZone()).withZoneSameInstant(serverZone).toLocalDateTime();
+        } catch (DateTimeException e) {
+            LOGGER.warn("Invalid time zone {}, its ongoing tasks are not auto-stopped", zone);
+            return null;
+        }
+    }
+
+    private long autoEnd(IntUnaryOperator chunk) {
+        return autoEnd(List.of(chunk));
+    }
+
+    private long autoEnd(List<IntUnaryOperator> chunks) {
+        long stopped = autoStopTimer.record(() -> chunks.stream()
+                .mapToLong(chunk -> chunkedExecutor.execute("Auto-ending ongoing tasks", AUTO_STOP_CHUNK_SIZE, 0, chunk))
+                .sum());
+        autoStopCounter.increment(stopped);
+        if (stopped > 0) {
+            // the auto-stop statement bypasses the second-level cache, the stopped tasks are not known one by one
+            entityManager.getEntityManagerFactory().getCache().evict(Task.class);
+            reportCache.evictAll();
+        }
+        activeTimerRegistry.reconcile();
+        return stopped;
     }
 
     /**
      * Deletes old time logs before a cutoff date.
+     * Works in chunks of set-based deletes, each chunk committed on its own.
+     * In {@link CleanupProperties.Mode#PARTITIONS} mode whole monthly partitions older than the cutoff are dropped first,
+     * so only the logs of the month the cutoff falls into are deleted row by row.
+     * Either way the deleted logs are taken out of the running totals of their tasks along with them.
      *
      * @param cutoff the cutoff date
      */
     public void deleteOldTimeLogs(LocalDateTime cutoff) {
         LOGGER.info("Deleting old time logs before {}", cutoff);
-        List<TimeLog> oldTimeLogs = timeLogRepository.findByStartTimeBefore(cutoff);
-        timeLogRepository.deleteAll(oldTimeLogs);
+        if (cleanupProperties.getMode() == CleanupProperties.Mode.PARTITIONS) {
+            int dropped = partitionMaintenanceService.dropPartitionsBefore(cutoff);
+            LOGGER.info("Dropped {} time log partitions before {}", dropped, cutoff);
+        }
+        chunkedExecutor.execute("Deleting old time logs", cleanupProperties.getChunkSize(),
+                cleanupProperties.getChunkPauseMillis(),
+                limit -> timeLogRepository.deleteChunkStartedBefore(cutoff, limit));
+        dailyEffortService.deleteBefore(cutoff);
+        // the totals of the tasks changed behind the second-level cache, and deleted open segments stop their timers
+        entityManager.getEntityManagerFactory().getCache().evict(Task.class);
+        reportCache.evictAll();
+        activeTimerRegistry.reconcile();
     }
 
     /**
@@ -200,24 +478,26 @@ public class TimeLogService {
 
     /**
      * Returns the total time elapsed for a task.
+     * Read from the running totals of the task in one row: its closed time logs plus the open one up to now.
      *
      * @param task the task to calculate total time elapsed for
      * @return the total time elapsed for the specified task
      * @throws TaskNotFoundException if no time logs are found for the specified task
      */
-    public Duration getTaskTimeElapsed(Task task) { // TODO: old logs + ongoing
-        LOGGER.debug("Getting time elapsed for task with id: {}", task.getId());
-        List<TimeLog> timeLogs = timeLogRepository.findByTaskOrderByStartTimeAsc(task);
-        if(timeLogs.isEmpty()) {
-            throw new TaskNotFoundException(task.getId());
-        }
-        Duration totalDuration = Duration.ZERO;
-        for(TimeLog timeLog : timeLogs) {
-            LocalDateTime end = (timeLog.getEndTime() != null) ? timeLog.getEndTime() : LocalDateTime.now();
-            Duration duration = Duration.between(timeLog.getStartTime(), end);
-            totalDuration = totalDuration.plus(duration);
-        }
-        return totalDuration;
+    public Duration getTaskTimeElapsed(Task task) {
+        return getTaskTimeElapsed(task.getId());
+    }
+
+    /**
+     * Returns the total time elapsed for a task, without loading it. A running task is served from memory.
+     *
+     * @param taskId the id of the task to calculate total time elapsed for
+     * @return the total time elapsed for the specified task
+     * @throws TaskNotFoundException if there is no such task, or it has no time logs
+     */
+    public Duration getTaskTimeElapsed(Long taskId) {
+        LOGGER.debug("Getting time elapsed for task with id: {}", taskId);
+        return taskTotalsService.getElapsed(taskId, clockProvider.now());
     }
 
     /**
@@ -1,16 +1,25 @@
 package ru.nubowski.timeTracker.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.BeanWrapper;
 import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.nubowski.timeTracker.config.UserCacheProperties;
 import ru.nubowski.timeTracker.exception.UserNotFoundException;
 import ru.nubowski.timeTracker.model.User;
 import ru.nubowski.timeTracker.repository.UserRepository;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
@@ -18,19 +27,35 @@ import java.util.Set;
 
 /**
  * Service for managing users.
+ * Users resolved by username are cached as detached copies, bounded in size and age. Only existing users read outside
+ * a transaction are cached, so nothing uncommitted is, and a user is evicted when it is saved or deleted, again once
+ * the surrounding transaction completes. The age bounds the changes made elsewhere.
  */
 @Service // TODO do not fockup with @annotation as the previous time
 public class UserService {
     private static final  Logger LOGGER = LoggerFactory.getLogger(UserService.class);
+    /**
+     * Name of the cache of the users by username, the cache tag of its metrics.
+     */
+    public static final String USER_CACHE = "users.byUsername";
     private final UserRepository userRepository;
+    private final Cache<String, UserSummary> usersByUsername;
 
     /**
      * Constructor for UserService.
      *
      * @param userRepository repository for handling users
+     * @param userCacheProperties the properties used for configuring the cache of the users
+     * @param meterRegistry the registry for the hit and miss metrics of the cache
      */
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, UserCacheProperties userCacheProperties, MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
+        this.usersByUsername = Caffeine.newBuilder()
+                .maximumSize(userCacheProperties.getMaximumSize())
+                .expireAfterWrite(Duration.ofSeconds(userCacheProperties.getExpireAfterWriteSeconds()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, usersByUsername, USER_CACHE);
     }
 
     /**
@@ -65,13 +90,26 @@ public class UserService {
      */
     public User getUser(String username) {
         LOGGER.debug("Getting user by username: {}", username);
-        return userRepository.findByUsername(username)
+        return getUserByUsername(username)
+                .orElseThrow(() -> new UserNotFoundException(username));
+    }
+
+    /**
+     * Find a user by username together with all their tasks and time logs.
+     *
+     * @param username the username of the user to be returned
+     * @return the user with the specified username
+     * @throws UserNotFoundException if no user is found with the specified username
+     */
+    public User getUserWithTasks(String username) {
+        LOGGER.debug("Getting user with tasks by username: {}", username);
+        return userRepository.findWithTasksByUsername(username)
                 .orElseThrow(() -> new UserNotFoundException(username));
     }
 
     /**
      * Saves a user. If the user does not exist, it creates a new one.
-     * If the user exists, it updates the fields.
+     * If the user exists, it updates the fields that are not null, a maximum segment length of 0 clears it.
      *
      * @param user the user to be saved
      * @return the saved user
@@ -83,18 +121,24 @@ public class UserService {
         }
         LOGGER.info("Saving user: {}", user.getUsername());
         Optional<User> existingUser = userRepository.findByUsername(user.getUsername());
+        User savedUser;
         if (existingUser.isPresent()) {
             // if user exists, update fields
             User userToUpdate = existingUser.get();
             BeanUtils.copyProperties(user, userToUpdate, getNullPropertyNames(user));
-            return userRepository.save(userToUpdate);
+            if (Integer.valueOf(0).equals(userToUpdate.getMaxSegmentMinutes())) {
+                userToUpdate.setMaxSegmentMinutes(null); // 0 clears the maximum, null keeps it
+            }
+            savedUser = userRepository.save(userToUpdate);
         } else {
             // if user doesn't exist - create
             if (user.getId() == null) {
                 user.setCreatedAt(LocalDateTime.now()); // first time created add timestamp
             }
-            return userRepository.save(user);
+            savedUser = userRepository.save(user);
         }
+        evict(user.getUsername());
+        return savedUser;
     }
 
     //
@@ -131,26 +175,67 @@ public class UserService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UserNotFoundException(username));
         userRepository.delete(user);
+        evict(username);
     }
 
     /**
-     * Returns an Optional of a User by username.
+     * Evicts the given users from the cache, after they are deleted in bulk.
+     *
+     * @param ids the ids of the deleted users
+     */
+    public void evictUsers(Collection<Long> ids) {
+        Set<Long> deleted = new HashSet<>(ids);
+        evict(() -> usersByUsername.asMap().values().removeIf(summary -> deleted.contains(summary.id)));
+    }
+
+    private void evict(String username) {
+        evict(() -> usersByUsername.invalidate(username));
+    }
+
+    /**
+     * Runs an eviction now, and once more when the surrounding transaction completes:
+     * a lookup racing the change may have cached the user as it was before.
+     */
+    private void evict(Runnable eviction) {
+        eviction.run();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                eviction.run();
+            }
+        });
+    }
+
+    /**
+     * Returns an Optional of a User by username, from the cache if it is there.
+     * A user served from the cache is a detached copy without its tasks.
      *
      * @param username the username of the user to be returned
      * @return an Optional of the user with the specified username
      */
     public Optional<User> getUserByUsername(String username) {
-        return userRepository.findByUsername(username);
+        UserSummary cached = usersByUsername.getIfPresent(username);
+        if (cached != null) {
+            return Optional.of(cached.toUser());
+        }
+        Optional<User> user = userRepository.findByUsername(username);
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            user.ifPresent(found -> usersByUsername.put(username, new UserSummary(found)));
+        }
+        return user;
     }
 
     /**
      * Returns a User by username, not Optional.
      *
      * @param username the username of the user to be returned
-     * @return the user with the specified username
+     * @return the user with the specified username, null if there is none
      */
     public User getUserByUsernameNotOptional (String username) {
-        return userRepository.findUserByUsername(username);
+        return getUserByUsername(username).orElse(null);
     }
 
     /**
@@ -164,4 +249,38 @@ public class UserService {
         return checkUser.isPresent();
     }
 
+    /**
+     * The cached fields of a user, immutable, so every lookup hands out its own copy.
+     */
+    private static final class UserSummary {
+        private final Long id;
+        private final String username;
+        private final String displayName;
+        private final String email;
+        private final String timeZone;
+        private final Integer maxSegmentMinutes;
+        private final LocalDateTime createdAt;
+
+        private UserSummary(User user) {
+            this.id = user.getId();
+            this.username = user.getUsername();
+            this.displayName = user.getDisplayName();
+            this.email = user.getEmail();
+            this.timeZone = user.getTimeZone();
+            this.maxSegmentMinutes = user.getMaxSegmentMinutes();
+            this.createdAt = user.getCreatedAt();
+        }
+
+        private User toUser() {
+            User user = new User();
+            user.setId(id);
+            user.setUsername(username);
+            user.setDisplayName(displayName);
+            user.setEmail(email);
+            user.setTimeZone(timeZone);
+            user.setMaxSegmentMinutes(maxSegmentMinutes);
+            user.setCreatedAt(createdAt);
+            return user;
+        }
+    }
 }
@@ -0,0 +1,180 @@
+package ru.nubowski.timeTracker.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchical timing wheel: schedules keys to expire at a deadline, with O(1) scheduling and cancellation and
+ * without scanning the keys that are not due.
+ * <p>
+ * Time is counted in ticks of {@code tickMillis}. Level 0 has a slot per tick, each higher level a slot per full turn
+ * of the level below it, {@code wheelSize} slots per level; the deadlines beyond the top level wait in an overflow
+ * bucket. A key goes to the level of the highest digit (in base {@code wheelSize}) its deadline tick differs in from
+ * the current tick. When the current tick reaches the start of a slot of a higher level, the keys of that slot
+ * cascade down to lower levels, and the keys of the level 0 slot of the current tick expire.
+ * A key never expires before its deadline, and at most one tick after it once the wheel is advanced in time.
+ * <p>
+ * Thread-safe: all methods synchronize on the wheel.
+ *
+ * @param <K> the type of the keys, a key is scheduled at most once
+ */
+public class HierarchicalTimingWheel<K> {
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<List<Set<K>>> levels = new ArrayList<>();
+    private final Set<K> overflow = new LinkedHashSet<>();
+    private final Map<K, Scheduled<K>> scheduled = new HashMap<>();
+    private final Set<K> due = new LinkedHashSet<>();
+    private long currentTick;
+
+    /**
+     * Constructor for HierarchicalTimingWheel.
+     *
+     * @param tickMillis  the length of a tick in milliseconds, the resolution of the deadlines
+     * @param wheelSize   the number of slots per level
+     * @param levels      the number of levels, they cover {@code wheelSize^levels} ticks ahead before the overflow
+     * @param startMillis the current time in epoch milliseconds
+     */
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, int levels, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2 || levels < 1) {
+            throw new IllegalArgumentException("Invalid timing wheel: tick " + tickMillis + " ms, "
+                    + wheelSize + " slots, " + levels + " levels");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        for (int level = 0; level < levels; level++) {
+            List<Set<K>> slots = new ArrayList<>(wheelSize);
+            for (int slot = 0; slot < wheelSize; slot++) {
+                slots.add(new LinkedHashSet<>());
+            }
+            this.levels.add(slots);
+        }
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    /**
+     * Schedules a key to expire at a deadline, replacing its previous deadline if it was scheduled already.
+     * A deadline in the past expires at the next advance.
+     *
+     * @param key            the key
+     * @param deadlineMillis the deadline in epoch milliseconds
+     */
+    public synchronized void schedule(K key, long deadlineMillis) {
+        cancel(key);
+        place(key, Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis));
+    }
+
+    /**
+     * Cancels a scheduled key.
+     *
+     * @param key the key
+     * @return true if it was scheduled
+     */
+    public synchronized boolean cancel(K key) {
+        Scheduled<K> removed = scheduled.remove(key);
+        if (removed == null) {
+            return false;
+        }
+        removed.bucket().remove(key);
+        return true;
+    }
+
+    /**
+     * Advances the wheel up to the given time and removes the keys expired meanwhile.
+     * Going back in time leaves the wheel where it is.
+     *
+     * @param nowMillis the current time in epoch milliseconds
+     * @return the expired keys, in the order they expired
+     */
+    public synchronized List<K> advance(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        while (currentTick < targetTick) {
+            if (scheduled.size() == due.size()) {
+                currentTick = targetTick; // nothing left on the levels, skip the empty ticks
+                break;
+            }
+            currentTick++;
+            for (int level = levels.size(); level >= 1; level--) {
+                if (currentTick % span(level) == 0) {
+                    cascade(level == levels.size() ? overflow : slot(level, currentTick));
+                }
+            }
+            for (K key : drain(slot(0, currentTick))) {
+                due.add(key);
+                scheduled.put(key, new Scheduled<>(scheduled.get(key).deadlineTick(), due));
+            }
+        }
+        List<K> expired = new ArrayList<>(due);
+        due.clear();
+        expired.forEach(scheduled::remove);
+        return expired;
+    }
+
+    /**
+     * Returns whether a key is scheduled and not yet returned as expired.
+     *
+     * @param key the key
+     * @return true if it is scheduled
+     */
+    public synchronized boolean isScheduled(K key) {
+        return scheduled.containsKey(key);
+    }
+
+    /**
+     * Returns the number of scheduled keys.
+     *
+     * @return the number of keys not yet returned as expired
+     */
+    public synchronized int size() {
+        return scheduled.size();
+    }
+
+    private void place(K key, long deadlineTick) {
+        Set<K> bucket;
+        if (deadlineTick <= currentTick) {
+            bucket = due;
+        } else {
+            int level = 0;
+            while (level < levels.size() - 1 && deadlineTick / span(level + 1) != currentTick / span(level + 1)) {
+                level++;
+            }
+            bucket = deadlineTick / span(level + 1) != currentTick / span(level + 1) ? overflow : slot(level, deadlineTick);
+        }
+        bucket.add(key);
+        scheduled.put(key, new Scheduled<>(deadlineTick, bucket));
+    }
+
+    private void cascade(Set<K> bucket) {
+        for (K key : drain(bucket)) {
+            place(key, scheduled.get(key).deadlineTick());
+        }
+    }
+
+    private List<K> drain(Set<K> bucket) {
+        List<K> keys = new ArrayList<>(bucket);
+        bucket.clear();
+        return keys;
+    }
+
+    private Set<K> slot(int level, long tick) {
+        return levels.get(level).get((int) ((tick / span(level)) % wheelSize));
+    }
+
+    /**
+     * Returns the number of ticks covered by a slot of the level, the top level's standing for the overflow.
+     */
+    private long span(int level) {
+        long span = 1;
+        for (int i = 0; i < level; i++) {
+            span = Math.multiplyExact(span, wheelSize);
+        }
+        return span;
+    }
+
+    private record Scheduled<K>(long deadlineTick, Set<K> bucket) {
+    }
+}
@@ -0,0 +1,90 @@
+package ru.nubowski.timeTracker.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads of Java 21 while the code still compiles for Java 17: the few methods needed
+ * are looked up by reflection, once. On an older runtime {@link #isSupported()} is false.
+ */
+public final class VirtualThreads {
+    private static final Method OF_VIRTUAL = method(Thread.class, "ofVirtual");
+    private static final Method NAME = OF_VIRTUAL == null ? null : method(builderClass(), "name", String.class, long.class);
+    private static final Method FACTORY = OF_VIRTUAL == null ? null : method(builderClass(), "factory");
+    private static final Method THREAD_PER_TASK = method(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Tells if the runtime has virtual threads.
+     *
+     * @return TRUE on Java 21 and later
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null && NAME != null && FACTORY != null && THREAD_PER_TASK != null;
+    }
+
+    /**
+     * Returns a factory of virtual threads named with the given prefix and a counter.
+     *
+     * @param prefix the prefix of the thread names
+     * @return the thread factory
+     * @throws IllegalStateException if the runtime has no virtual threads
+     */
+    public static ThreadFactory factory(String prefix) {
+        requireSupported();
+        Object builder = invoke(OF_VIRTUAL, null);
+        return (ThreadFactory) invoke(FACTORY, invoke(NAME, builder, prefix, 0L));
+    }
+
+    /**
+     * Returns an executor starting a new virtual thread for every task.
+     *
+     * @param prefix the prefix of the thread names
+     * @return the executor, to be shut down by its owner
+     * @throws IllegalStateException if the runtime has no virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        return (ExecutorService) invoke(THREAD_PER_TASK, null, factory(prefix));
+    }
+
+    private static void requireSupported() {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later, running on Java "
+                    + Runtime.version().feature());
+        }
+    }
+
+    private static Class<?> builderClass() {
+        try {
+            return Class.forName("java.lang.Thread$Builder");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method method(Class<?> type, String name, Class<?>... parameterTypes) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Can't call " + method, e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Call of " + method + " failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+-- Deleting a user deletes their tasks, deleting a task its time logs, in the database itself as daily_effort already is.
+-- The purges of a user (ProcessService) delete the time logs and tasks with one set-based statement each, the cascades
+-- catch whatever a transition writes in between and any other delete, without Hibernate loading the history.
+
+-- databases baselined from Hibernate have a generated name for this one
+DO $$
+DECLARE
+    fk RECORD;
+BEGIN
+    FOR fk IN SELECT conname FROM pg_constraint
+              WHERE contype = 'f' AND conrelid = 'tasks'::regclass AND confrelid = 'app_user'::regclass
+    LOOP
+        EXECUTE format('ALTER TABLE tasks DROP CONSTRAINT %I', fk.conname);
+    END LOOP;
+END $$;
+
+ALTER TABLE tasks
+    ADD CONSTRAINT fk_tasks_user FOREIGN KEY (user_id) REFERENCES app_user (id) ON DELETE CASCADE;
+
+-- created by V3 on the partitioned table, propagated to every partition
+ALTER TABLE time_logs DROP CONSTRAINT fk_time_logs_task;
+ALTER TABLE time_logs
+    ADD CONSTRAINT fk_time_logs_task FOREIGN KEY (task_id) REFERENCES tasks (id) ON DELETE CASCADE;
@@ -0,0 +1,3 @@
+-- Time zone of a user (an IANA id such as Europe/Moscow), their ongoing segments are auto-stopped at its end of day.
+-- NULL stands for the time zone of the server, which all timestamps are stored in.
+ALTER TABLE app_user ADD COLUMN time_zone VARCHAR(64);
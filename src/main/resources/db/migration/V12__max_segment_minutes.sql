@@ -0,0 +1,4 @@
+-- Maximum length of a segment in minutes, past which the watchdog (RunawayTimerWatchdog) auto-stops it at its end.
+-- The task's own takes precedence over its user's; NULL on both stands for watchdog.defaultMaxSegmentMinutes.
+ALTER TABLE tasks ADD COLUMN max_segment_minutes INTEGER CHECK (max_segment_minutes > 0);
+ALTER TABLE app_user ADD COLUMN max_segment_minutes INTEGER CHECK (max_segment_minutes > 0);
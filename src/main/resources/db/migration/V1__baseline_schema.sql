@@ -0,0 +1,39 @@
+-- Baseline schema, as previously generated by Hibernate (ddl-auto=update).
+-- Databases created that way are baselined at this version and skip this script.
+
+CREATE SEQUENCE IF NOT EXISTS app_user_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS tasks_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS time_logs_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS app_user (
+    id           BIGINT       NOT NULL,
+    created_at   TIMESTAMP(6),
+    display_name VARCHAR(255),
+    email        VARCHAR(255),
+    username     VARCHAR(255),
+    CONSTRAINT app_user_pkey PRIMARY KEY (id),
+    CONSTRAINT uk_app_user_username UNIQUE (username)
+);
+
+CREATE TABLE IF NOT EXISTS tasks (
+    id          BIGINT NOT NULL,
+    created_at  TIMESTAMP(6),
+    description VARCHAR(255),
+    name        VARCHAR(255),
+    user_id     BIGINT NOT NULL,
+    CONSTRAINT tasks_pkey PRIMARY KEY (id),
+    CONSTRAINT fk_tasks_user FOREIGN KEY (user_id) REFERENCES app_user (id)
+);
+
+CREATE TABLE IF NOT EXISTS time_logs (
+    id            BIGINT NOT NULL,
+    end_time      TIMESTAMP(6),
+    ended_by_user BOOLEAN,
+    start_time    TIMESTAMP(6),
+    task_state    VARCHAR(255),
+    task_id       BIGINT NOT NULL,
+    CONSTRAINT time_logs_pkey PRIMARY KEY (id),
+    CONSTRAINT time_logs_task_state_check
+        CHECK (task_state IN ('ONGOING', 'PAUSED', 'USER_STOPPED', 'AUTO_STOPPED', 'UNEXPECTEDLY_STOPPED')),
+    CONSTRAINT fk_time_logs_task FOREIGN KEY (task_id) REFERENCES tasks (id)
+);
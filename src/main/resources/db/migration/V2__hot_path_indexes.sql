@@ -0,0 +1,24 @@
+-- Indexes for the queries in TimeLogRepository, TaskRepository and UserRepository.
+
+-- open segment of a task: findFirstByTaskAndEndTimeIsNullOrderByStartTimeDesc (stop, pause)
+CREATE INDEX IF NOT EXISTS idx_time_logs_open_by_task ON time_logs (task_id, start_time DESC) WHERE end_time IS NULL;
+
+-- history of a task: findByTaskOrderByStartTimeAsc, findFirstByTaskOrderByStartTimeDesc, findAllByTask,
+-- and the time_logs side of the findTST / getTotalWorkEffortInSeconds join
+CREATE INDEX IF NOT EXISTS idx_time_logs_task_start ON time_logs (task_id, start_time);
+
+-- paused segment of a task: findByTaskAndTaskState(task, PAUSED) (resume), only a handful of rows
+CREATE INDEX IF NOT EXISTS idx_time_logs_paused_by_task ON time_logs (task_id) WHERE task_state = 'PAUSED';
+
+-- nightly auto-stop sweep: autoStopOngoingChunk, findByEndTimeIsNullAndTaskStateEquals(ONGOING)
+CREATE INDEX IF NOT EXISTS idx_time_logs_ongoing ON time_logs (id) WHERE end_time IS NULL AND task_state = 'ONGOING';
+
+-- keyset paging (findFirstPage, findPageAfter) and retention (deleteChunkStartedBefore)
+CREATE INDEX IF NOT EXISTS idx_time_logs_start_id ON time_logs (start_time, id);
+
+-- tasks of a user: findByUserId, findTST join, user purges
+CREATE INDEX IF NOT EXISTS idx_tasks_user_id ON tasks (user_id);
+
+-- retention: findIdsCreatedBefore
+CREATE INDEX IF NOT EXISTS idx_tasks_created_at ON tasks (created_at);
+CREATE INDEX IF NOT EXISTS idx_app_user_created_at ON app_user (created_at);
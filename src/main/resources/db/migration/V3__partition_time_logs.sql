@@ -0,0 +1,57 @@
+-- Turns time_logs into a table range-partitioned by start_time month.
+-- Partitions are named time_logs_pYYYY_MM (see PartitionMaintenanceService, which keeps creating upcoming ones).
+-- The partition key has to be part of the primary key, so it becomes (id, start_time); ids stay unique by sequence.
+
+ALTER TABLE time_logs RENAME TO time_logs_unpartitioned;
+ALTER INDEX time_logs_pkey RENAME TO time_logs_unpartitioned_pkey;
+DROP INDEX IF EXISTS idx_time_logs_open_by_task;
+DROP INDEX IF EXISTS idx_time_logs_task_start;
+DROP INDEX IF EXISTS idx_time_logs_paused_by_task;
+DROP INDEX IF EXISTS idx_time_logs_ongoing;
+DROP INDEX IF EXISTS idx_time_logs_start_id;
+
+CREATE TABLE time_logs (
+    id            BIGINT       NOT NULL,
+    end_time      TIMESTAMP(6),
+    ended_by_user BOOLEAN,
+    start_time    TIMESTAMP(6) NOT NULL,
+    task_state    VARCHAR(255),
+    task_id       BIGINT       NOT NULL,
+    CONSTRAINT time_logs_pkey PRIMARY KEY (id, start_time),
+    CONSTRAINT time_logs_task_state_check
+        CHECK (task_state IN ('ONGOING', 'PAUSED', 'USER_STOPPED', 'AUTO_STOPPED', 'UNEXPECTEDLY_STOPPED')),
+    CONSTRAINT fk_time_logs_task FOREIGN KEY (task_id) REFERENCES tasks (id)
+) PARTITION BY RANGE (start_time);
+
+-- catches anything no monthly partition covers yet, it should stay (nearly) empty
+CREATE TABLE time_logs_default PARTITION OF time_logs DEFAULT;
+
+-- one partition per month from the oldest log up to three months ahead
+DO $$
+DECLARE
+    month_start DATE;
+    last_month  DATE := date_trunc('month', LOCALTIMESTAMP) + INTERVAL '3 months';
+BEGIN
+    SELECT COALESCE(date_trunc('month', MIN(start_time)), date_trunc('month', LOCALTIMESTAMP))
+    INTO month_start FROM time_logs_unpartitioned;
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF time_logs FOR VALUES FROM (%L) TO (%L)',
+                       'time_logs_p' || to_char(month_start, 'YYYY_MM'),
+                       month_start, month_start + INTERVAL '1 month');
+        month_start := month_start + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+-- the application never writes a log without a start time, legacy ones are placed at their end (or nowhere)
+INSERT INTO time_logs (id, end_time, ended_by_user, start_time, task_state, task_id)
+SELECT id, end_time, ended_by_user, COALESCE(start_time, end_time, '-infinity'), task_state, task_id
+FROM time_logs_unpartitioned;
+
+DROP TABLE time_logs_unpartitioned;
+
+-- V2 indexes, now created on every partition
+CREATE INDEX idx_time_logs_open_by_task ON time_logs (task_id, start_time DESC) WHERE end_time IS NULL;
+CREATE INDEX idx_time_logs_task_start ON time_logs (task_id, start_time);
+CREATE INDEX idx_time_logs_paused_by_task ON time_logs (task_id) WHERE task_state = 'PAUSED';
+CREATE INDEX idx_time_logs_ongoing ON time_logs (id) WHERE end_time IS NULL AND task_state = 'ONGOING';
+CREATE INDEX idx_time_logs_start_id ON time_logs (start_time, id);
@@ -0,0 +1,36 @@
+-- Seconds per task and (server local) day of all closed time logs, kept up to date when a segment is closed.
+-- Reports read full days from here and only their partial edge days (and open segments) from time_logs.
+
+CREATE TABLE daily_effort (
+    task_id BIGINT           NOT NULL,
+    day     DATE             NOT NULL,
+    user_id BIGINT           NOT NULL,
+    seconds DOUBLE PRECISION NOT NULL,
+    -- the earliest start of a time log overlapping the day, orders reports by start time; only ever moves earlier
+    first_start TIMESTAMP    NOT NULL,
+    CONSTRAINT daily_effort_pkey PRIMARY KEY (task_id, day),
+    CONSTRAINT fk_daily_effort_task FOREIGN KEY (task_id) REFERENCES tasks (id) ON DELETE CASCADE,
+    CONSTRAINT fk_daily_effort_user FOREIGN KEY (user_id) REFERENCES app_user (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_daily_effort_user_day ON daily_effort (user_id, day);
+
+-- the period covered by a time log, open ones are unbounded; never fails on a log ending before its start
+CREATE FUNCTION time_log_range(start_time TIMESTAMP, end_time TIMESTAMP) RETURNS TSRANGE
+    LANGUAGE sql IMMUTABLE AS
+'SELECT tsrange(start_time, CASE WHEN end_time < start_time THEN start_time ELSE end_time END)';
+
+-- finds the logs overlapping the partial edge days of a report
+CREATE INDEX idx_time_logs_range ON time_logs USING gist (time_log_range(start_time, end_time));
+
+-- backfill from the closed time logs, split at midnight
+INSERT INTO daily_effort (task_id, day, user_id, seconds, first_start)
+SELECT t.task_id, CAST(d AS DATE), MIN(task.user_id),
+       SUM(EXTRACT(EPOCH FROM (LEAST(t.end_time, d + INTERVAL '1 day') - GREATEST(t.start_time, d)))),
+       MIN(t.start_time)
+FROM time_logs t
+INNER JOIN tasks task ON task.id = t.task_id
+CROSS JOIN LATERAL generate_series(date_trunc('day', t.start_time), t.end_time, INTERVAL '1 day') d
+WHERE t.end_time IS NOT NULL
+  AND LEAST(t.end_time, d + INTERVAL '1 day') > GREATEST(t.start_time, d)
+GROUP BY t.task_id, d;
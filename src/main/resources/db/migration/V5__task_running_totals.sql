@@ -0,0 +1,16 @@
+-- Running totals of a task, so its elapsed time is read from one row instead of summing its whole history.
+-- closed_millis: the milliseconds of all its closed time logs; open_segment_start: the start of its open time log, if any.
+
+ALTER TABLE tasks ADD COLUMN closed_millis BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE tasks ADD COLUMN open_segment_start TIMESTAMP;
+
+UPDATE tasks task
+SET closed_millis      = totals.closed_millis,
+    open_segment_start = totals.open_segment_start
+FROM (SELECT t.task_id,
+             COALESCE(SUM(CAST(FLOOR(EXTRACT(EPOCH FROM (t.end_time - t.start_time)) * 1000) AS BIGINT))
+                      FILTER (WHERE t.end_time IS NOT NULL), 0) AS closed_millis,
+             MAX(t.start_time) FILTER (WHERE t.end_time IS NULL) AS open_segment_start
+      FROM time_logs t
+      GROUP BY t.task_id) totals
+WHERE task.id = totals.task_id;
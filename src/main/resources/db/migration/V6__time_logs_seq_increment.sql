@@ -0,0 +1,5 @@
+-- Time logs are also inserted by native statements taking nextval('time_logs_seq') directly,
+-- so Hibernate no longer reserves blocks of 50 ids from the sequence but takes them one at a time.
+-- Every id handed out from a block so far is at most the current value of the sequence, so none is handed out twice.
+
+ALTER SEQUENCE time_logs_seq INCREMENT BY 1;
@@ -0,0 +1,5 @@
+-- Version of a task row, the compare-and-set token of every task state transition (and of JPA updates of the task).
+-- A partial unique index "one open time log per task" is not possible: unique indexes of the partitioned time_logs
+-- must include its partition key start_time. The invariant is kept on the task row instead, through open_segment_start.
+
+ALTER TABLE tasks ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,17 @@
+-- Current state of a task, the state and id of its latest time log (by start, then id), so its status is read from
+-- the task row and tasks are listed by state from an index instead of scanning time logs.
+-- Both stay NULL until the task is first started. Maintained by the statements of the transitions and the auto-stop.
+
+ALTER TABLE tasks ADD COLUMN current_state VARCHAR(255);
+ALTER TABLE tasks ADD COLUMN current_log_id BIGINT;
+
+UPDATE tasks task
+SET current_state  = latest.task_state,
+    current_log_id = latest.id
+FROM (SELECT DISTINCT ON (t.task_id) t.task_id, t.id, t.task_state
+      FROM time_logs t
+      ORDER BY t.task_id, t.start_time DESC, t.id DESC) latest
+WHERE task.id = latest.task_id;
+
+-- tasks of a user in a state: findResponsesByUserIdAndStateAfter, keyset paged by id
+CREATE INDEX IF NOT EXISTS idx_tasks_user_state ON tasks (user_id, current_state, id);
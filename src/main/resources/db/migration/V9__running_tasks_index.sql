@@ -0,0 +1,3 @@
+-- Tasks with an open segment, the timers loaded at startup and reconciled periodically by ActiveTimerRegistry:
+-- findRunningTimers. Only the handful of running tasks are in the index.
+CREATE INDEX IF NOT EXISTS idx_tasks_running ON tasks (id) WHERE open_segment_start IS NOT NULL;
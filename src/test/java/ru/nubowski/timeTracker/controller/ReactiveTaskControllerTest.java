@@ -0,0 +1,98 @@
+package ru.nubowski.timeTracker.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.service.ActiveTimerRegistry;
+import ru.nubowski.timeTracker.service.impl.TaskService;
+import ru.nubowski.timeTracker.service.impl.UserService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles({"test", "reactive"})
+public class ReactiveTaskControllerTest {
+    @Autowired
+    private WebTestClient webTestClient;
+    @Autowired
+    private TaskService taskService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ActiveTimerRegistry activeTimerRegistry;
+
+    // not transactional: the statements run over R2DBC, outside any JPA transaction
+    @Test
+    void testStartPauseResumeAndStopTask() {
+        User user = new User();
+        user.setUsername("reactiveUser");
+        user = userService.saveUser(user);
+        try {
+            Task task = new Task();
+            task.setName("reactiveTask");
+            task.setDescription("Tracked through the reactive endpoints");
+            task.setUser(user);
+            Long taskId = taskService.saveTask(task).getId();
+
+            webTestClient.get().uri("/tasks/{id}/time_elapsed", taskId).exchange()
+                    .expectStatus().isNotFound();
+
+            webTestClient.post().uri("/tasks/start/{id}", taskId).exchange()
+                    .expectStatus().isCreated()
+                    .expectBody()
+                    .jsonPath("$.taskId").isEqualTo(taskId)
+                    .jsonPath("$.taskName").isEqualTo("reactiveTask")
+                    .jsonPath("$.taskState").isEqualTo("ONGOING");
+            assertTrue(activeTimerRegistry.getElapsed(taskId, LocalDateTime.now().plusDays(1)).isPresent());
+            webTestClient.post().uri("/tasks/start/{id}", taskId).exchange()
+                    .expectStatus().isEqualTo(409);
+            webTestClient.post().uri("/tasks/resume/{id}", taskId).exchange()
+                    .expectStatus().isNotFound();
+
+            webTestClient.post().uri("/tasks/pause/{id}", taskId).exchange()
+                    .expectStatus().isOk()
+                    .expectBody().jsonPath("$.taskState").isEqualTo("PAUSED");
+            webTestClient.post().uri("/tasks/resume/{id}", taskId).exchange()
+                    .expectStatus().isOk()
+                    .expectBody().jsonPath("$.taskState").isEqualTo("ONGOING");
+            webTestClient.post().uri("/tasks/stop/{id}", taskId).exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.taskState").isEqualTo("USER_STOPPED")
+                    .jsonPath("$.stoppedAt").exists();
+            webTestClient.post().uri("/tasks/stop/{id}", taskId).exchange()
+                    .expectStatus().isNotFound();
+
+            Duration elapsed = webTestClient.get().uri("/tasks/{id}/time_elapsed", taskId).exchange()
+                    .expectStatus().isOk()
+                    .expectBody(Duration.class).returnResult().getResponseBody();
+            assertNotNull(elapsed);
+            assertFalse(elapsed.isNegative());
+            assertEquals("USER_STOPPED", taskService.getTask(taskId).getCurrentState().name());
+        } finally {
+            userService.deleteUser("reactiveUser");
+        }
+    }
+
+    @Test
+    void testMissingTaskIsNotFound() {
+        webTestClient.post().uri("/tasks/start/{id}", Long.MAX_VALUE).exchange()
+                .expectStatus().isNotFound();
+        webTestClient.get().uri("/tasks/{id}/time_elapsed", Long.MAX_VALUE).exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testOtherEndpointsAreNotServed() {
+        webTestClient.get().uri("/tasks").exchange()
+                .expectStatus().isNotFound();
+    }
+}
@@ -0,0 +1,125 @@
+package ru.nubowski.timeTracker.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TaskState;
+import ru.nubowski.timeTracker.model.TimeLog;
+import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.service.ProcessService;
+import ru.nubowski.timeTracker.service.impl.TaskService;
+import ru.nubowski.timeTracker.service.impl.TimeLogService;
+import ru.nubowski.timeTracker.service.impl.UserService;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ReportControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TaskService taskService;
+    @Autowired
+    private TimeLogService timeLogService;
+    @Autowired
+    private ProcessService processService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testReportJobMatchesSynchronousReport() throws Exception { // not transactional: the jobs run on their own threads
+        User user = new User();
+        user.setUsername("reportJobUser");
+        user = userService.saveUser(user);
+        try {
+            Task task = new Task();
+            task.setName("jobTask");
+            task.setUser(user);
+            task = taskService.saveTask(task);
+            TimeLog timeLog = new TimeLog();
+            timeLog.setTask(task);
+            timeLog.setStartTime(LocalDateTime.of(2022, 3, 1, 9, 0));
+            timeLog.setEndTime(LocalDateTime.of(2022, 3, 1, 10, 15));
+            timeLog.setTaskState(TaskState.USER_STOPPED);
+            timeLogService.saveTimeLog(timeLog);
+
+            JsonNode effort = awaitResult(submit("work_effort", "duration"));
+            assertEquals("DONE", effort.get("status").asText());
+            assertEquals("01:15", effort.get("result").asText());
+
+            // the raw time logs load their tasks lazily, outside a request
+            JsonNode interval = awaitResult(submit("date_range", "interval"));
+            String expected = mockMvc.perform(get("/users/reportJobUser/time_logs/date_range")
+                            .param("start", "2020-01-01T00:00:00")
+                            .param("end", "2023-01-01T00:00:00")
+                            .param("output", "interval"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            assertEquals(objectMapper.readTree(expected), interval.get("result"));
+            assertEquals("2022-03-01 09:00 - 2022-03-01 10:15 | jobTask", interval.get("result").get(0).asText());
+            assertTrue(meterRegistry.get("timetracker.reportjobs.queued").gauge().value() >= 0);
+
+            String id = interval.get("id").asText();
+            mockMvc.perform(delete("/reports/" + id))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.status").value("DONE"));
+            mockMvc.perform(get("/reports/" + id))
+                    .andExpect(status().isNotFound());
+        } finally {
+            processService.deleteTimeLogsAndTasks("reportJobUser");
+            userService.deleteUser("reportJobUser");
+        }
+    }
+
+    @Test
+    void testReportJobOfUnknownUserIsRejected() throws Exception {
+        mockMvc.perform(post("/reports")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"report\":\"work_effort\",\"username\":\"noSuchReportUser\"," +
+                                "\"start\":\"2020-01-01T00:00:00\",\"end\":\"2023-01-01T00:00:00\"}"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/reports/no-such-job"))
+                .andExpect(status().isNotFound());
+    }
+
+    private String submit(String report, String output) throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(post("/reports")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"report\":\"" + report + "\",\"username\":\"reportJobUser\"," +
+                                "\"start\":\"2020-01-01T00:00:00\",\"end\":\"2023-01-01T00:00:00\"," +
+                                "\"output\":\"" + output + "\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andReturn().getResponse();
+        return objectMapper.readTree(response.getContentAsString()).get("id").asText();
+    }
+
+    private JsonNode awaitResult(String id) throws Exception {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            MockHttpServletResponse response = mockMvc.perform(get("/reports/" + id)).andReturn().getResponse();
+            if (response.getStatus() == 200) {
+                return objectMapper.readTree(response.getContentAsString());
+            }
+            assertEquals(202, response.getStatus());
+            Thread.sleep(100);
+        }
+        return fail("Report job " + id + " did not finish");
+    }
+}
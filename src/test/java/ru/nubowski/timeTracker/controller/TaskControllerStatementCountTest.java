@@ -0,0 +1,231 @@
+package ru.nubowski.timeTracker.controller;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TaskState;
+import ru.nubowski.timeTracker.model.TimeLog;
+import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.repository.UserRepository;
+import ru.nubowski.timeTracker.service.ProcessService;
+import ru.nubowski.timeTracker.service.impl.TaskService;
+import ru.nubowski.timeTracker.service.impl.TimeLogService;
+import ru.nubowski.timeTracker.service.impl.UserService;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Counts the SQL statements per endpoint, so a fetch plan that starts dragging the log history along is caught.
+ * Not transactional on purpose: every request must hit the database instead of the test's persistence context.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class TaskControllerStatementCountTest {
+    private static final String USERNAME = "statement_count_user";
+    private static final int HISTORY_SIZE = 5;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TaskService taskService;
+    @Autowired
+    private TimeLogService timeLogService;
+    @Autowired
+    private ProcessService processService;
+    @Autowired
+    private UserRepository userRepository;
+
+    private Statistics statistics;
+    private Task task;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        User user = new User();
+        user.setUsername(USERNAME);
+        user = userService.saveUser(user);
+        Task newTask = new Task();
+        newTask.setName("statementCountTask");
+        newTask.setUser(user);
+        task = taskService.saveTask(newTask);
+        LocalDateTime start = LocalDateTime.now().minusHours(HISTORY_SIZE + 1);
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            TimeLog timeLog = new TimeLog();
+            timeLog.setTask(task);
+            timeLog.setStartTime(start.plusHours(i));
+            timeLog.setEndTime(start.plusHours(i).plusMinutes(30));
+            timeLog.setTaskState(TaskState.USER_STOPPED);
+            timeLogService.saveTimeLog(timeLog);
+        }
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (userService.userIsPresent(USERNAME)) {
+            processService.deleteTimeLogsAndTasks(USERNAME);
+            userService.deleteUser(USERNAME);
+        }
+    }
+
+    @Test
+    void testStartAndStopDoNotLoadHistory() throws Exception {
+        mockMvc.perform(post("/tasks/start/" + task.getId()).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/tasks/stop/" + task.getId()).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        assertEquals(0, statistics.getCollectionFetchCount(), "the time log history must not be loaded");
+        // start: one insert statement; stop: one update statement, rollup and totals included
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testGetTaskLoadsBoundedPage() throws Exception {
+        mockMvc.perform(get("/tasks/" + task.getId()).param("logs", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value(USERNAME))
+                .andExpect(jsonPath("$.recentTimeLogs.length()").value(2));
+
+        assertEquals(0, statistics.getCollectionFetchCount());
+        assertEquals(2, statistics.getPrepareStatementCount()); // task with user, page of logs
+    }
+
+    @Test
+    void testCachedTaskStaysFreshAcrossStartAndStop() throws Exception {
+        getTaskExpectingState(TaskState.USER_STOPPED);
+        statistics.clear();
+        getTaskExpectingState(TaskState.USER_STOPPED);
+        assertEquals(1, statistics.getPrepareStatementCount()); // page of logs, task and user from the cache
+        assertTrue(statistics.getSecondLevelCacheHitCount() >= 2);
+
+        statistics.clear();
+        mockMvc.perform(post("/tasks/start/" + task.getId()).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+        getTaskExpectingState(TaskState.ONGOING);
+        mockMvc.perform(post("/tasks/stop/" + task.getId()).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        getTaskExpectingState(TaskState.USER_STOPPED);
+        // start, task after the eviction, page; stop, task after the eviction, page: the user stays cached
+        assertEquals(6, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testNativeTaskUpdateKeepsUsersCached() throws Exception {
+        getTaskExpectingState(TaskState.USER_STOPPED);
+        getTaskExpectingState(TaskState.USER_STOPPED);
+        Cache cache = entityManagerFactory.getCache();
+        assertTrue(cache.contains(Task.class, task.getId()));
+        assertTrue(cache.contains(User.class, task.getUser().getId()));
+
+        TimeLog timeLog = new TimeLog();
+        timeLog.setTask(task);
+        timeLog.setStartTime(LocalDateTime.now().minusMinutes(10));
+        timeLog.setTaskState(TaskState.PAUSED);
+        timeLog.setEndTime(LocalDateTime.now().minusMinutes(5));
+        timeLogService.saveTimeLog(timeLog);
+
+        assertFalse(cache.contains(Task.class, task.getId()));
+        assertTrue(cache.contains(User.class, task.getUser().getId()));
+        getTaskExpectingState(TaskState.PAUSED);
+    }
+
+    @Test
+    void testFindByUsernameIsServedFromQueryCache() {
+        userRepository.findByUsername(USERNAME);
+        statistics.clear();
+        User user = userRepository.findByUsername(USERNAME).orElseThrow();
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+
+        user.setEmail("cached@example.com");
+        userService.saveUser(user);
+        statistics.clear();
+        assertEquals("cached@example.com", userRepository.findByUsername(USERNAME).orElseThrow().getEmail());
+        assertEquals(1, statistics.getQueryCacheMissCount()); // the users table changed since
+    }
+
+    private void getTaskExpectingState(TaskState state) throws Exception {
+        mockMvc.perform(get("/tasks/" + task.getId()).param("logs", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value(USERNAME))
+                .andExpect(jsonPath("$.state").value(state.name()));
+    }
+
+    @Test
+    void testGetAllTasksIsOneStatement() throws Exception {
+        mockMvc.perform(get("/tasks"))
+                .andExpect(status().isOk());
+
+        assertEquals(0, statistics.getEntityLoadCount()); // projection rows, no entities
+        assertEquals(1, statistics.getPrepareStatementCount()); // tasks joined with their users
+    }
+
+    @Test
+    void testGetTasksOfUserIsOneStatement() throws Exception {
+        mockMvc.perform(get("/tasks").param("username", USERNAME).param("after", String.valueOf(task.getId() - 1)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(task.getId()))
+                .andExpect(jsonPath("$[0].username").value(USERNAME));
+        mockMvc.perform(get("/tasks").param("username", USERNAME).param("after", String.valueOf(task.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testResetUserIsSetBased() throws Exception {
+        mockMvc.perform(delete("/users/" + USERNAME + "/reset"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tasks.length()").value(0));
+
+        assertEquals(0, statistics.getEntityStatistics(TimeLog.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityDeleteCount()); // bulk statements only
+        // user, task ids, time logs, tasks, user with tasks for the response
+        assertEquals(5, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testDeleteUserIsSetBased() throws Exception {
+        mockMvc.perform(delete("/users/" + USERNAME + "/delete"))
+                .andExpect(status().isNoContent());
+
+        assertEquals(0, statistics.getEntityStatistics(TimeLog.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(Task.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityDeleteCount()); // bulk statements only
+        // user, task ids, then the time logs, tasks and user deleted
+        assertEquals(5, statistics.getPrepareStatementCount());
+        assertFalse(userService.userIsPresent(USERNAME));
+    }
+
+    @Test
+    void testGetUserIsOneStatement() throws Exception {
+        mockMvc.perform(get("/users/" + USERNAME))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tasks[0].timeLogs.length()").value(HISTORY_SIZE));
+
+        assertEquals(1, statistics.getPrepareStatementCount()); // user, tasks and logs in one join
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.transaction.annotation.Transactional;
 import ru.nubowski.timeTracker.model.Task;
 import ru.nubowski.timeTracker.model.TimeLog;
@@ -40,6 +41,36 @@ public class TaskControllerTest {
     private UserService userService;
 
 
+    @Transactional
+    @Test
+    void testUpdateTaskMaxSegmentMinutes() throws Exception {
+        User user = new User();
+        user.setUsername("maxSegmentTaskUser");
+        user = userService.saveUser(user);
+        Task task = new Task();
+        task.setName("maxSegmentTask");
+        task.setDescription("limited");
+        task.setUser(user);
+        task.setMaxSegmentMinutes(30);
+        Long id = taskService.saveTask(task).getId();
+
+        updateTask(id, "{\"name\":\"renamed\",\"description\":\"limited\"}").andExpect(status().isCreated());
+        assertEquals(30, taskService.getTask(id).getMaxSegmentMinutes()); // left out, kept
+        assertEquals("renamed", taskService.getTask(id).getName());
+
+        updateTask(id, "{\"name\":\"renamed\",\"description\":\"limited\",\"maxSegmentMinutes\":-5}")
+                .andExpect(status().isBadRequest());
+        assertEquals(30, taskService.getTask(id).getMaxSegmentMinutes());
+
+        updateTask(id, "{\"name\":\"renamed\",\"description\":\"limited\",\"maxSegmentMinutes\":0}")
+                .andExpect(status().isCreated());
+        assertNull(taskService.getTask(id).getMaxSegmentMinutes());
+    }
+
+    private ResultActions updateTask(Long id, String body) throws Exception {
+        return mockMvc.perform(put("/tasks/" + id).contentType(MediaType.APPLICATION_JSON).content(body));
+    }
+
     @Transactional
     @Test
     void testOnGoingTaskTimeLeft () throws Exception {
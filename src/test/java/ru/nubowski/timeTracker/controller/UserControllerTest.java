@@ -1,19 +1,33 @@
 package ru.nubowski.timeTracker.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.transaction.annotation.Transactional;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TaskState;
+import ru.nubowski.timeTracker.model.TimeLog;
 import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.service.ProcessService;
+import ru.nubowski.timeTracker.service.ReportCache;
+import ru.nubowski.timeTracker.service.impl.TaskService;
+import ru.nubowski.timeTracker.service.impl.TimeLogService;
 import ru.nubowski.timeTracker.service.impl.UserService;
 
+import java.time.LocalDateTime;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -28,6 +42,14 @@ public class UserControllerTest {
     private ObjectMapper objectMapper;
     @Autowired
     private UserService userService;
+    @Autowired
+    private TaskService taskService;
+    @Autowired
+    private TimeLogService timeLogService;
+    @Autowired
+    private ProcessService processService;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     @Transactional
     @Test
@@ -51,6 +73,48 @@ public class UserControllerTest {
         assertEquals(createdUser.getDisplayName(), "test");
     }
 
+    @Transactional
+    @Test
+    void testCreateUserWithTimeZone() throws Exception {
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"zonedAccount\",\"email\":\"zoned@test.com\"," +
+                                "\"displayName\":\"zoned\",\"timeZone\":\"Asia/Vladivostok\"}"))
+                .andExpect(status().isCreated());
+        assertEquals("Asia/Vladivostok", userService.getUser("zonedAccount").getTimeZone());
+
+        mockMvc.perform(put("/users/zonedAccount")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"timeZone\":\"Mars/Olympus_Mons\"}"))
+                .andExpect(status().isBadRequest());
+        assertEquals("Asia/Vladivostok", userService.getUser("zonedAccount").getTimeZone());
+    }
+
+    @Transactional
+    @Test
+    void testUpdateUserMaxSegmentMinutes() throws Exception {
+        User user = new User();
+        user.setUsername("maxSegmentAccount");
+        user.setMaxSegmentMinutes(30);
+        userService.saveUser(user);
+
+        updateUser("maxSegmentAccount", "{\"displayName\":\"limited\"}").andExpect(status().isOk());
+        assertEquals(30, userService.getUser("maxSegmentAccount").getMaxSegmentMinutes()); // left out, kept
+
+        updateUser("maxSegmentAccount", "{\"maxSegmentMinutes\":-5}").andExpect(status().isBadRequest());
+        assertEquals(30, userService.getUser("maxSegmentAccount").getMaxSegmentMinutes());
+
+        updateUser("maxSegmentAccount", "{\"maxSegmentMinutes\":45}").andExpect(status().isOk());
+        assertEquals(45, userService.getUser("maxSegmentAccount").getMaxSegmentMinutes());
+
+        updateUser("maxSegmentAccount", "{\"maxSegmentMinutes\":0}").andExpect(status().isOk());
+        assertNull(userService.getUser("maxSegmentAccount").getMaxSegmentMinutes());
+    }
+
+    private ResultActions updateUser(String username, String body) throws Exception {
+        return mockMvc.perform(put("/users/" + username).contentType(MediaType.APPLICATION_JSON).content(body));
+    }
+
     @Transactional
     @Test
     void testUpdateUser() throws Exception {
@@ -83,4 +147,143 @@ public class UserControllerTest {
         assertEquals("updatedEmail@test.com", fetchedUser.getEmail());
         assertEquals("Updated User", fetchedUser.getDisplayName());
     }
+
+    @Transactional
+    @Test
+    void testDateRangeDurationIsClippedAndSorted() throws Exception {
+        User user = new User();
+        user.setUsername("reportUser");
+        user = userService.saveUser(user);
+        Task longTask = saveTask(user, "long");
+        Task shortTask = saveTask(user, "short");
+        // 1:30 of it within the range + 0:30
+        saveTimeLog(longTask, LocalDateTime.of(2023, 5, 31, 23, 0), LocalDateTime.of(2023, 6, 1, 1, 30));
+        saveTimeLog(longTask, LocalDateTime.of(2023, 6, 1, 10, 0), LocalDateTime.of(2023, 6, 1, 10, 30));
+        // started earlier, but only 0:30 of it within the range
+        saveTimeLog(shortTask, LocalDateTime.of(2023, 5, 31, 22, 0), LocalDateTime.of(2023, 6, 1, 0, 30));
+
+        mockMvc.perform(get("/users/reportUser/time_logs/date_range")
+                        .param("start", "2023-06-01T00:00:00")
+                        .param("end", "2023-06-02T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value("long - 02:00"))
+                .andExpect(jsonPath("$[1]").value("short - 00:30"));
+
+        mockMvc.perform(get("/users/reportUser/time_logs/date_range")
+                        .param("start", "2023-06-01T00:00:00")
+                        .param("end", "2023-06-02T00:00:00")
+                        .param("sort", "start_time"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value("short - 00:30"))
+                .andExpect(jsonPath("$[1]").value("long - 02:00"));
+    }
+
+    @Transactional
+    @Test
+    void testGetTasksByState() throws Exception {
+        User user = new User();
+        user.setUsername("stateUser");
+        user = userService.saveUser(user);
+        Task running = saveTask(user, "running");
+        Task paused = saveTask(user, "paused");
+        saveTask(user, "idle");
+        taskService.startTask(running.getId());
+        taskService.startTask(paused.getId());
+        taskService.pauseTask(paused.getId());
+
+        mockMvc.perform(get("/users/stateUser/tasks").param("state", "ONGOING"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("running"))
+                .andExpect(jsonPath("$[0].state").value("ONGOING"));
+
+        mockMvc.perform(get("/users/stateUser/tasks").param("state", "PAUSED"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("paused"));
+
+        mockMvc.perform(get("/users/stateUser/tasks"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3));
+    }
+
+    @Test
+    void testClosedRangeReportIsServedWithETag() throws Exception { // not transactional: only committed reports are cached
+        User user = new User();
+        user.setUsername("etagUser");
+        user = userService.saveUser(user);
+        try {
+            Task task = saveTask(user, "etag");
+            saveTimeLog(task, LocalDateTime.of(2023, 6, 1, 10, 0), LocalDateTime.of(2023, 6, 1, 10, 30));
+
+            String eTag = mockMvc.perform(get("/users/etagUser/work_effort")
+                            .param("start", "2023-06-01T00:00:00")
+                            .param("end", "2023-06-02T00:00:00"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string("00:30"))
+                    .andExpect(header().exists(HttpHeaders.ETAG))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            double hits = reportCacheGets("hit");
+            mockMvc.perform(get("/users/etagUser/work_effort")
+                            .param("start", "2023-06-01T00:00:00")
+                            .param("end", "2023-06-02T00:00:00")
+                            .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                    .andExpect(status().isNotModified());
+            assertEquals(hits + 1, reportCacheGets("hit"));
+
+            String listETag = mockMvc.perform(get("/users/etagUser/time_logs/date_range")
+                            .param("start", "2023-06-01T00:00:00")
+                            .param("end", "2023-06-02T00:00:00"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0]").value("etag - 00:30"))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            mockMvc.perform(get("/users/etagUser/time_logs/date_range")
+                            .param("start", "2023-06-01T00:00:00")
+                            .param("end", "2023-06-02T00:00:00")
+                            .header(HttpHeaders.IF_NONE_MATCH, listETag))
+                    .andExpect(status().isNotModified());
+
+            // an edit of the past evicts the reports of the user
+            saveTimeLog(task, LocalDateTime.of(2023, 6, 1, 11, 0), LocalDateTime.of(2023, 6, 1, 12, 0));
+            String editedETag = mockMvc.perform(get("/users/etagUser/work_effort")
+                            .param("start", "2023-06-01T00:00:00")
+                            .param("end", "2023-06-02T00:00:00")
+                            .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string("01:30"))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertNotEquals(eTag, editedETag);
+
+            // a range that is not over yet is neither cached nor tagged
+            mockMvc.perform(get("/users/etagUser/work_effort")
+                            .param("start", "2023-06-01T00:00:00")
+                            .param("end", LocalDateTime.now().plusDays(1).withNano(0).toString()))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+        } finally {
+            processService.deleteTimeLogsAndTasks("etagUser");
+            userService.deleteUser("etagUser");
+        }
+    }
+
+    private double reportCacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", ReportCache.REPORT_CACHE).tag("result", result)
+                .functionCounter().count();
+    }
+
+    private Task saveTask(User user, String name) {
+        Task task = new Task();
+        task.setName(name);
+        task.setUser(user);
+        return taskService.saveTask(task);
+    }
+
+    private void saveTimeLog(Task task, LocalDateTime start, LocalDateTime end) {
+        TimeLog timeLog = new TimeLog();
+        timeLog.setTask(task);
+        timeLog.setStartTime(start);
+        timeLog.setEndTime(end);
+        timeLog.setTaskState(TaskState.USER_STOPPED);
+        timeLogService.saveTimeLog(timeLog);
+    }
 }
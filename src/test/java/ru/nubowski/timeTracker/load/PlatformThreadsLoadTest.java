@@ -0,0 +1,12 @@
+package ru.nubowski.timeTracker.load;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * The load benchmark with Spring Boot's pools of platform threads.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "threads.mode=PLATFORM")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class PlatformThreadsLoadTest extends ThreadsLoadBenchmark {
+}
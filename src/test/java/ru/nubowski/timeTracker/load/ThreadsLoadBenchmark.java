@@ -0,0 +1,179 @@
+package ru.nubowski.timeTracker.load;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import ru.nubowski.timeTracker.config.ThreadsProperties;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TaskState;
+import ru.nubowski.timeTracker.model.TimeLog;
+import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.service.ProcessService;
+import ru.nubowski.timeTracker.service.impl.TaskService;
+import ru.nubowski.timeTracker.service.impl.TimeLogService;
+import ru.nubowski.timeTracker.service.impl.UserService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Load benchmark of the start/stop and report endpoints over real HTTP, run once per {@link ThreadsProperties.Mode}
+ * by its subclasses. Every client owns a task and loops start, stop and an open range report (not cached),
+ * all clients released at once after a warm-up round. The latency percentiles and the throughput of every endpoint
+ * are logged, to be compared between the modes.
+ * <p>
+ * Skipped unless the system property "loadtest" is true: {@code mvn -P load-test test}, with {@code -P java21} on
+ * a Java 21 JDK for the virtual threads. The size is set with -Dloadtest.clients and -Dloadtest.iterations.
+ */
+abstract class ThreadsLoadBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThreadsLoadBenchmark.class);
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 256);
+    private static final int ITERATIONS = Integer.getInteger("loadtest.iterations", 20);
+    private static final int HISTORY_DAYS = 30;
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private ThreadsProperties threadsProperties;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TaskService taskService;
+    @Autowired
+    private TimeLogService timeLogService;
+    @Autowired
+    private ProcessService processService;
+
+    private final Map<String, List<Long>> latencies = new ConcurrentHashMap<>();
+    private final AtomicInteger failures = new AtomicInteger();
+    private HttpClient client;
+    private String username;
+    private List<Long> taskIds;
+
+    @BeforeEach
+    void setUp() {
+        username = "load_" + threadsProperties.getMode().name().toLowerCase();
+        User user = new User();
+        user.setUsername(username);
+        user = userService.saveUser(user);
+        taskIds = new ArrayList<>();
+        LocalDateTime day = LocalDateTime.now().toLocalDate().atStartOfDay().minusDays(HISTORY_DAYS);
+        for (int i = 0; i < CLIENTS; i++) {
+            Task task = new Task();
+            task.setName("load task " + i);
+            task.setUser(user);
+            task = taskService.saveTask(task);
+            taskIds.add(task.getId());
+            if (i % 8 == 0) { // some history for the report
+                for (int d = 0; d < HISTORY_DAYS; d++) {
+                    TimeLog timeLog = new TimeLog();
+                    timeLog.setTask(task);
+                    timeLog.setStartTime(day.plusDays(d).plusHours(9));
+                    timeLog.setEndTime(day.plusDays(d).plusHours(10));
+                    timeLog.setTaskState(TaskState.USER_STOPPED);
+                    timeLogService.saveTimeLog(timeLog);
+                }
+            }
+        }
+        client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(Math.max(4, CLIENTS / 8)))
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        processService.deleteTimeLogsAndTasks(username);
+        userService.deleteUser(username);
+    }
+
+    @Test
+    void benchmarkStartStopAndReports() throws Exception {
+        String reportQuery = "/users/" + username + "/time_logs/date_range?start="
+                + LocalDateTime.now().minusDays(HISTORY_DAYS).withNano(0) + "&end=" + LocalDateTime.now().plusDays(1).withNano(0);
+        runRound(1, reportQuery);
+        latencies.clear();
+        failures.set(0);
+
+        long started = System.nanoTime();
+        runRound(ITERATIONS, reportQuery);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        LOGGER.info("threads.mode={}: {} clients x {} iterations in {} s", threadsProperties.getMode(), CLIENTS, ITERATIONS,
+                String.format("%.2f", seconds));
+        for (Map.Entry<String, List<Long>> entry : latencies.entrySet()) {
+            List<Long> sorted = new ArrayList<>(entry.getValue());
+            Collections.sort(sorted);
+            LOGGER.info("threads.mode={} {}: n={} throughput={}/s p50={} ms p95={} ms p99={} ms max={} ms",
+                    threadsProperties.getMode(), entry.getKey(), sorted.size(),
+                    String.format("%.1f", sorted.size() / seconds), millis(sorted, 0.50), millis(sorted, 0.95),
+                    millis(sorted, 0.99), millis(sorted, 1.0));
+        }
+        assertEquals(0, failures.get(), "every request must succeed");
+    }
+
+    private void runRound(int iterations, String reportQuery) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<?>> done = new ArrayList<>();
+            for (Long taskId : taskIds) {
+                done.add(clients.submit(() -> {
+                    go.await();
+                    for (int i = 0; i < iterations; i++) {
+                        call("start", "POST", "/tasks/start/" + taskId);
+                        call("stop", "POST", "/tasks/stop/" + taskId);
+                        call("report", "GET", reportQuery);
+                    }
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    private void call(String endpoint, String method, String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        long start = System.nanoTime();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        latencies.computeIfAbsent(endpoint, key -> Collections.synchronizedList(new ArrayList<>()))
+                .add(System.nanoTime() - start);
+        if (response.statusCode() >= 300) {
+            failures.incrementAndGet();
+        }
+    }
+
+    private static String millis(List<Long> sorted, double percentile) {
+        int index = Math.max(0, (int) Math.ceil(percentile * sorted.size()) - 1);
+        return String.format("%.1f", sorted.get(index) / 1e6);
+    }
+}
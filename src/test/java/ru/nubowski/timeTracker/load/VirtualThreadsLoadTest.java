@@ -0,0 +1,14 @@
+package ru.nubowski.timeTracker.load;
+
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * The load benchmark with a virtual thread per request, only on Java 21 and later.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "threads.mode=VIRTUAL")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@EnabledIf("ru.nubowski.timeTracker.util.VirtualThreads#isSupported")
+class VirtualThreadsLoadTest extends ThreadsLoadBenchmark {
+}
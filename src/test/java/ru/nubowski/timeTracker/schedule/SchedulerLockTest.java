@@ -0,0 +1,80 @@
+package ru.nubowski.timeTracker.schedule;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.nubowski.timeTracker.config.SchedulerLockProperties;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class SchedulerLockTest {
+    @Autowired
+    private SchedulerLock schedulerLock;
+    @Autowired
+    private SchedulerLockProperties schedulerLockProperties;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testJobIsSkippedWhileAnotherInstanceHoldsItsLock() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        long minimumHoldMillis = schedulerLockProperties.getMinimumHoldMillis();
+        schedulerLockProperties.setMinimumHoldMillis(0);
+        try (Connection otherInstance = dataSource.getConnection()) {
+            advisoryLock(otherInstance, "pg_advisory_lock", "lockedJob");
+            assertFalse(schedulerLock.runLocked("lockedJob", runs::incrementAndGet));
+            assertEquals(0, runs.get());
+            assertEquals(1, meterRegistry.get("timetracker.scheduler.lock.skipped").tag("job", "lockedJob")
+                    .counter().count());
+
+            advisoryLock(otherInstance, "pg_advisory_unlock", "lockedJob"); // as if the other instance were done
+            assertTrue(schedulerLock.runLocked("lockedJob", runs::incrementAndGet));
+            assertEquals(1, runs.get());
+            assertEquals(1, meterRegistry.get("timetracker.scheduler.lock.held").tag("job", "lockedJob")
+                    .timer().count());
+            assertTrue(schedulerLock.runLocked("lockedJob", runs::incrementAndGet)); // released at once
+        } finally {
+            schedulerLockProperties.setMinimumHoldMillis(minimumHoldMillis);
+        }
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void testLockIsHeldForItsMinimumTime() {
+        AtomicInteger runs = new AtomicInteger();
+        assertTrue(schedulerLock.runLocked("quickJob", runs::incrementAndGet));
+        assertFalse(schedulerLock.runLocked("quickJob", runs::incrementAndGet)); // the same trigger, a bit later
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void testFailingJobReleasesItsLock() {
+        long minimumHoldMillis = schedulerLockProperties.getMinimumHoldMillis();
+        schedulerLockProperties.setMinimumHoldMillis(0);
+        try {
+            assertThrows(IllegalStateException.class, () -> schedulerLock.runLocked("failingJob", () -> {
+                throw new IllegalStateException("job failure");
+            }));
+            assertTrue(schedulerLock.runLocked("failingJob", () -> { }));
+        } finally {
+            schedulerLockProperties.setMinimumHoldMillis(minimumHoldMillis);
+        }
+    }
+
+    private void advisoryLock(Connection connection, String function, String job) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + function + "(?, ?)")) {
+            statement.setInt(1, SchedulerLock.LOCK_NAMESPACE);
+            statement.setInt(2, job.hashCode());
+            statement.execute();
+        }
+    }
+}
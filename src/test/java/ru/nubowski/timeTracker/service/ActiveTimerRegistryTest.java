@@ -0,0 +1,213 @@
+package ru.nubowski.timeTracker.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import ru.nubowski.timeTracker.dto.TaskTimer;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TaskState;
+import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.service.impl.TaskService;
+import ru.nubowski.timeTracker.service.impl.TimeLogService;
+import ru.nubowski.timeTracker.service.impl.UserService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@TestPropertySource(properties = "timers.reconcileCronExpression=-") // disabled, the test reconciles on its own
+public class ActiveTimerRegistryTest {
+    private static final String USERNAME = "activeTimerUser";
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TaskService taskService;
+    @Autowired
+    private TimeLogService timeLogService;
+    @Autowired
+    private ProcessService processService;
+    @Autowired
+    private ActiveTimerRegistry activeTimerRegistry;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Task task;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername(USERNAME);
+        user = userService.saveUser(user);
+        task = new Task();
+        task.setName("activeTimerTask");
+        task.setUser(user);
+        task = taskService.saveTask(task);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (userService.userIsPresent(USERNAME)) { // unless the test deleted it
+            processService.deleteTimeLogsAndTasks(USERNAME);
+            userService.deleteUser(USERNAME);
+        }
+        activeTimerRegistry.reconcile();
+    }
+
+    @Test
+    void testTransitionsUpdateRegistryOnCommit() {
+        taskService.startTask(task.getId());
+        TaskTimer timer = runningTimer();
+        assertNotNull(timer);
+        assertEquals(user.getId(), timer.getUserId());
+        assertEquals(1, taskService.getActiveTimers(user.getId()).size());
+
+        taskService.pauseTask(task.getId());
+        assertNull(runningTimer());
+        assertTrue(activeTimerRegistry.getElapsed(task.getId(), LocalDateTime.now()).isEmpty());
+
+        taskService.resumeTask(task.getId());
+        assertNotNull(runningTimer());
+        taskService.stopTask(task.getId());
+        assertNull(runningTimer());
+    }
+
+    @Test
+    void testElapsedOfRunningTaskFromMemory() {
+        taskService.startTask(task.getId());
+        LocalDateTime start = runningTimer().getOpenSegmentStart();
+        // changed behind the registry's back, so a value read from memory is told apart from one read from the table
+        jdbcTemplate.update("UPDATE tasks SET closed_millis = 60000 WHERE id = ?", task.getId());
+
+        assertEquals(Duration.ofMinutes(5), activeTimerRegistry.getElapsed(task.getId(), start.plusMinutes(5)).orElseThrow());
+
+        activeTimerRegistry.reconcile();
+        assertEquals(Duration.ofMinutes(6), activeTimerRegistry.getElapsed(task.getId(), start.plusMinutes(5)).orElseThrow());
+    }
+
+    @Test
+    void testReconcilePicksUpChangesBehindTheRegistry() {
+        taskService.startTask(task.getId());
+        jdbcTemplate.update("UPDATE time_logs SET end_time = start_time, task_state = 'AUTO_STOPPED' WHERE task_id = ?", task.getId());
+        jdbcTemplate.update("UPDATE tasks SET open_segment_start = NULL, version = version + 1 WHERE id = ?", task.getId());
+        assertNotNull(runningTimer());
+
+        activeTimerRegistry.reconcile();
+
+        assertNull(runningTimer());
+    }
+
+    @Test
+    void testAutoEndTasksStopsTimers() {
+        taskService.startTask(task.getId());
+
+        timeLogService.autoEndTasks();
+
+        assertNull(runningTimer());
+    }
+
+    @Test
+    void testAutoEndTasksAtEndOfDayStopsTheTimeZonesAtTheirEndOfDay() {
+        taskService.startTask(task.getId());
+        User update = new User();
+        update.setUsername(USERNAME);
+        update.setTimeZone(zoneAt(LocalTime.of(11, 52)));
+        userService.saveUser(update);
+
+        timeLogService.autoEndTasksAtEndOfDay();
+        assertNotNull(runningTimer()); // noon in the time zone of the user
+
+        update.setTimeZone(zoneAt(LocalTime.of(23, 52)));
+        userService.saveUser(update);
+        timeLogService.autoEndTasksAtEndOfDay();
+        assertNull(runningTimer());
+        assertEquals(TaskState.AUTO_STOPPED, taskService.getTask(task.getId()).getCurrentState());
+    }
+
+    @Test
+    void testAutoEndTasksAtEndOfDayCatchesUpOnTheEndedDays() {
+        taskService.startTask(task.getId());
+        User update = new User();
+        update.setUsername(USERNAME);
+        update.setTimeZone(zoneAt(LocalTime.of(11, 52)));
+        userService.saveUser(update);
+        // started before the last midnight of the user, missed by the run at the end of that day
+        jdbcTemplate.update("UPDATE time_logs SET start_time = start_time - INTERVAL '13 hours' " +
+                "WHERE task_id = ? AND end_time IS NULL", task.getId());
+        jdbcTemplate.update("UPDATE tasks SET open_segment_start = open_segment_start - INTERVAL '13 hours', " +
+                "version = version + 1 WHERE id = ?", task.getId());
+        activeTimerRegistry.reconcile();
+
+        LocalDateTime now = LocalDateTime.now();
+        timeLogService.autoEndTasksAtEndOfDay(); // almost 12 hours late
+
+        assertNull(runningTimer());
+        assertEquals(TaskState.AUTO_STOPPED, taskService.getTask(task.getId()).getCurrentState());
+        LocalDateTime end = jdbcTemplate.queryForObject("SELECT end_time FROM time_logs WHERE task_id = ?",
+                LocalDateTime.class, task.getId());
+        long sinceMidnight = Duration.between(end, now).toMinutes(); // ended at the midnight of the user, not now
+        assertTrue(Math.abs(sinceMidnight - (11 * 60 + 52)) <= 1, "ended at " + end);
+    }
+
+    @Test
+    void testDeleteOldUsersForgetsTheirTimers() {
+        taskService.startTask(task.getId());
+        jdbcTemplate.update("UPDATE app_user SET created_at = ? WHERE id = ?", LocalDateTime.of(2000, 1, 1, 0, 0), user.getId());
+
+        processService.deleteOldUsers(LocalDateTime.of(2000, 6, 1, 0, 0));
+
+        assertNull(runningTimer()); // without waiting for a reconciliation
+    }
+
+    @Test
+    void testDeleteTaskForgetsItsTimer() {
+        taskService.startTask(task.getId());
+
+        taskService.deleteTask(task.getId());
+
+        assertNull(runningTimer());
+        assertTrue(activeTimerRegistry.getElapsed(task.getId(), LocalDateTime.now()).isEmpty());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM time_logs WHERE task_id = ?", Integer.class,
+                task.getId())); // deleted by the cascade
+    }
+
+    @Test
+    void testDeleteOldTasksForgetsTheirTimers() {
+        taskService.startTask(task.getId());
+        jdbcTemplate.update("UPDATE tasks SET created_at = ? WHERE id = ?", LocalDateTime.of(2000, 1, 1, 0, 0), task.getId());
+
+        taskService.deleteOldTasks(LocalDateTime.of(2000, 6, 1, 0, 0));
+
+        assertNull(runningTimer()); // without waiting for a reconciliation
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM time_logs WHERE task_id = ?", Integer.class,
+                task.getId())); // deleted by the cascade
+    }
+
+    /**
+     * A time zone whose local time is the given one right now.
+     */
+    private static String zoneAt(LocalTime localTime) {
+        long seconds = Duration.between(LocalTime.now(ZoneOffset.UTC), localTime).getSeconds();
+        long halfDay = Duration.ofHours(12).getSeconds();
+        seconds = seconds > halfDay ? seconds - 2 * halfDay : seconds < -halfDay ? seconds + 2 * halfDay : seconds;
+        return ZoneOffset.ofTotalSeconds((int) seconds).getId();
+    }
+
+    private TaskTimer runningTimer() {
+        return activeTimerRegistry.getRunningTimers().stream()
+                .filter(timer -> timer.getTaskId().equals(task.getId()))
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,132 @@
+package ru.nubowski.timeTracker.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import ru.nubowski.timeTracker.config.RollupProperties;
+import ru.nubowski.timeTracker.model.DailyEffort;
+import ru.nubowski.timeTracker.model.DailyEffortId;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TimeLog;
+import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.repository.DailyEffortRepository;
+import ru.nubowski.timeTracker.repository.TimeLogRepository;
+import ru.nubowski.timeTracker.service.impl.TimeLogService;
+import ru.nubowski.timeTracker.service.impl.UserService;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.nubowski.timeTracker.service.TaskFixtures.timeLog;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Import(TaskFixtures.class)
+public class DailyEffortServiceTest {
+    @Autowired
+    private TaskFixtures taskFixtures;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TimeLogService timeLogService;
+    @Autowired
+    private ProcessService processService;
+    @Autowired
+    private TimeLogRepository timeLogRepository;
+    @Autowired
+    private DailyEffortRepository dailyEffortRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Transactional
+    @Test
+    void testClosedSegmentIsSplitAtMidnight() {
+        Task task = taskFixtures.saveTask("rollupSplitUser", "rollupTask");
+
+        timeLogService.saveTimeLog(timeLog(task, LocalDateTime.of(2023, 3, 10, 22, 0), LocalDateTime.of(2023, 3, 11, 2, 30)));
+
+        assertEquals(7200, seconds(task, LocalDate.of(2023, 3, 10)));
+        assertEquals(9000, seconds(task, LocalDate.of(2023, 3, 11)));
+    }
+
+    @Transactional
+    @Test
+    void testDeletedSegmentIsTakenOut() {
+        Task task = taskFixtures.saveTask("rollupDeleteUser", "rollupTask");
+        TimeLog first = timeLogService.saveTimeLog(timeLog(task, LocalDateTime.of(2023, 3, 10, 9, 0), LocalDateTime.of(2023, 3, 10, 10, 0)));
+        timeLogService.saveTimeLog(timeLog(task, LocalDateTime.of(2023, 3, 10, 11, 0), LocalDateTime.of(2023, 3, 10, 11, 30)));
+
+        timeLogService.deleteTimeLog(first.getId());
+
+        assertEquals(1800, seconds(task, LocalDate.of(2023, 3, 10)));
+    }
+
+    @Transactional
+    @Test
+    void testAutoStopRollsUp() {
+        Task task = taskFixtures.saveTask("rollupAutoStopUser", "rollupTask");
+        timeLogService.saveTimeLog(timeLog(task, LocalDateTime.of(2023, 4, 1, 23, 0), null));
+
+        int stopped = timeLogRepository.autoStopOngoingChunk(LocalDateTime.of(2023, 4, 2, 1, 0), 1000);
+
+        assertTrue(stopped >= 1);
+        assertEquals(3600, seconds(task, LocalDate.of(2023, 4, 1)));
+        assertEquals(3600, seconds(task, LocalDate.of(2023, 4, 2)));
+    }
+
+    @Transactional
+    @Test
+    void testTotalEffortCombinesRollupAndEdges() {
+        Task task = taskFixtures.saveTask("rollupReportUser", "rollupTask");
+        User user = task.getUser();
+        // 1h before the range, 1h within the partial first day
+        timeLogService.saveTimeLog(timeLog(task, LocalDateTime.of(2023, 5, 1, 9, 0), LocalDateTime.of(2023, 5, 1, 11, 0)));
+        // full day: 3h, crossing into the partial last day: 2h on the full day + 0:30
+        timeLogService.saveTimeLog(timeLog(task, LocalDateTime.of(2023, 5, 2, 8, 0), LocalDateTime.of(2023, 5, 2, 11, 0)));
+        timeLogService.saveTimeLog(timeLog(task, LocalDateTime.of(2023, 5, 2, 22, 0), LocalDateTime.of(2023, 5, 3, 0, 30)));
+        // after the range
+        timeLogService.saveTimeLog(timeLog(task, LocalDateTime.of(2023, 5, 3, 12, 0), LocalDateTime.of(2023, 5, 3, 13, 0)));
+
+        Duration total = timeLogService.getTotalWorkEffortByUserAndDataRange(user,
+                LocalDateTime.of(2023, 5, 1, 10, 0), LocalDateTime.of(2023, 5, 3, 12, 0));
+
+        assertEquals(Duration.ofMinutes(60 + 180 + 150), total);
+        assertEquals(Duration.ofMinutes(30), timeLogService.getTotalWorkEffortByUserAndDataRange(user,
+                LocalDateTime.of(2023, 5, 1, 10, 30), LocalDateTime.of(2023, 5, 1, 12, 0))); // within one day
+    }
+
+    @Test
+    void testRebuildMatchesIncrementalRollup() throws Exception {
+        String username = "rollupRebuildUser";
+        Task task = taskFixtures.saveTask(username, "rollupTask");
+        try {
+            // written behind the rollup's back
+            timeLogRepository.save(timeLog(task, LocalDateTime.of(2023, 6, 30, 20, 0), LocalDateTime.of(2023, 7, 1, 4, 0)));
+            timeLogRepository.save(timeLog(task, LocalDateTime.of(2023, 7, 1, 10, 0), LocalDateTime.of(2023, 7, 1, 10, 45)));
+            assertEquals(0, seconds(task, LocalDate.of(2023, 7, 1)));
+
+            RollupProperties rollupProperties = new RollupProperties();
+            rollupProperties.setRebuildThreads(2);
+            new DailyEffortRebuildRunner(timeLogRepository, dailyEffortRepository, transactionManager, rollupProperties).rebuild();
+
+            assertEquals(4 * 3600, seconds(task, LocalDate.of(2023, 6, 30)));
+            assertEquals(4 * 3600 + 45 * 60, seconds(task, LocalDate.of(2023, 7, 1)));
+        } finally {
+            processService.deleteTimeLogsAndTasks(username);
+            userService.deleteUser(username);
+        }
+    }
+
+    private double seconds(Task task, LocalDate day) {
+        return dailyEffortRepository.findById(new DailyEffortId(task.getId(), day))
+                .map(DailyEffort::getSeconds)
+                .orElse(0.0);
+    }
+}
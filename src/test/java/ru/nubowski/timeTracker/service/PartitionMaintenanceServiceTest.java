@@ -0,0 +1,59 @@
+package ru.nubowski.timeTracker.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import ru.nubowski.timeTracker.config.PartitionProperties;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@TestPropertySource(properties = "partitions.cronExpression=-")
+public class PartitionMaintenanceServiceTest {
+    @Autowired
+    private PartitionMaintenanceService partitionMaintenanceService;
+    @Autowired
+    private PartitionProperties partitionProperties;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testCreateUpcomingPartitions() {
+        partitionMaintenanceService.createUpcomingPartitions();
+
+        List<YearMonth> months = partitionMaintenanceService.getPartitionMonths();
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= partitionProperties.getMonthsAhead(); i++) {
+            assertTrue(months.contains(current.plusMonths(i)), "no partition for " + current.plusMonths(i));
+        }
+    }
+
+    @Test
+    void testDropPartitionsBefore() {
+        createPartition(YearMonth.of(2000, 1));
+        createPartition(YearMonth.of(2000, 2));
+
+        int dropped = partitionMaintenanceService.dropPartitionsBefore(LocalDateTime.of(2000, 2, 15, 0, 0));
+
+        List<YearMonth> months = partitionMaintenanceService.getPartitionMonths();
+        assertEquals(1, dropped);
+        assertFalse(months.contains(YearMonth.of(2000, 1)));
+        assertTrue(months.contains(YearMonth.of(2000, 2))); // the cutoff month is cleaned up row by row
+
+        jdbcTemplate.execute("DROP TABLE " + PartitionMaintenanceService.partitionName(YearMonth.of(2000, 2)));
+    }
+
+    private void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + PartitionMaintenanceService.partitionName(month) +
+                " PARTITION OF time_logs FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+}
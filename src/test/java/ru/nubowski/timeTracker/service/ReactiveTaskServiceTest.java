@@ -0,0 +1,55 @@
+package ru.nubowski.timeTracker.service;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import reactor.core.publisher.Mono;
+import ru.nubowski.timeTracker.dto.TaskTotals;
+import ru.nubowski.timeTracker.dto.TaskTransition;
+import ru.nubowski.timeTracker.exception.ConcurrentTransitionException;
+import ru.nubowski.timeTracker.repository.ReactiveTaskRepository;
+import ru.nubowski.timeTracker.service.impl.ReactiveTaskService;
+import ru.nubowski.timeTracker.service.impl.TaskService;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ReactiveTaskServiceTest {
+    private ReactiveTaskRepository reactiveTaskRepository;
+    private ReactiveTaskService reactiveTaskService;
+
+    @BeforeEach
+    void setUp() {
+        reactiveTaskRepository = mock(ReactiveTaskRepository.class);
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.getCache()).thenReturn(mock(Cache.class));
+        reactiveTaskService = new ReactiveTaskService(LocalDateTime::now, reactiveTaskRepository, entityManagerFactory,
+                mock(ActiveTimerRegistry.class), mock(ReportCache.class));
+        TaskTotals stopped = mock(TaskTotals.class);
+        when(reactiveTaskRepository.findTotalsById(1L)).thenReturn(Mono.just(stopped));
+    }
+
+    @Test
+    void testStartTaskRetriesLockFailures() {
+        TaskTransition started = mock(TaskTransition.class);
+        when(reactiveTaskRepository.startSegment(eq(1L), any(LocalDateTime.class)))
+                .thenReturn(Mono.error(new CannotAcquireLockException("deadlock detected")), Mono.just(started));
+
+        assertSame(started, reactiveTaskService.startTask(1L).block());
+        verify(reactiveTaskRepository, times(2)).startSegment(eq(1L), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testStartTaskGivesUpAfterRepeatedLockFailures() {
+        when(reactiveTaskRepository.startSegment(eq(1L), any(LocalDateTime.class)))
+                .thenReturn(Mono.error(new CannotAcquireLockException("deadlock detected")));
+
+        assertThrows(ConcurrentTransitionException.class, () -> reactiveTaskService.startTask(1L).block());
+        verify(reactiveTaskRepository, times(TaskService.MAX_TRANSITION_ATTEMPTS))
+                .startSegment(eq(1L), any(LocalDateTime.class));
+    }
+}
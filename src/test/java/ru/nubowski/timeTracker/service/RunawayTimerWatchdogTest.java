@@ -0,0 +1,119 @@
+package ru.nubowski.timeTracker.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import ru.nubowski.timeTracker.dto.TaskTransition;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TaskState;
+import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.service.impl.TaskService;
+import ru.nubowski.timeTracker.service.impl.UserService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@TestPropertySource(properties = "timers.reconcileCronExpression=-") // disabled, the test reconciles on its own
+public class RunawayTimerWatchdogTest {
+    private static final String USERNAME = "watchdogUser";
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TaskService taskService;
+    @Autowired
+    private ProcessService processService;
+    @Autowired
+    private ActiveTimerRegistry activeTimerRegistry;
+    @Autowired
+    private RunawayTimerWatchdog runawayTimerWatchdog;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Task task;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername(USERNAME);
+        user.setMaxSegmentMinutes(1);
+        user = userService.saveUser(user);
+        task = new Task();
+        task.setName("watchdogTask");
+        task.setUser(user);
+        task = taskService.saveTask(task);
+    }
+
+    @AfterEach
+    void tearDown() {
+        processService.deleteTimeLogsAndTasks(USERNAME);
+        userService.deleteUser(USERNAME);
+        activeTimerRegistry.reconcile();
+    }
+
+    @Test
+    void testSegmentPastTheMaximumOfItsUserIsAutoStoppedAtItsEnd() {
+        TaskTransition started = taskService.startTask(task.getId());
+        int watched = runawayTimerWatchdog.getWatchedCount();
+        assertTrue(watched >= 1);
+        runawayTimerWatchdog.tick();
+        assertEquals(TaskState.ONGOING, taskService.getTask(task.getId()).getCurrentState());
+
+        LocalDateTime start = startedMinutesAgo(2);
+        runawayTimerWatchdog.tick();
+
+        assertEquals(TaskState.AUTO_STOPPED, taskService.getTask(task.getId()).getCurrentState());
+        assertEquals(start.plusMinutes(1), jdbcTemplate.queryForObject(
+                "SELECT end_time FROM time_logs WHERE id = ?", LocalDateTime.class, started.getId()));
+        assertTrue(activeTimerRegistry.getElapsed(task.getId(), LocalDateTime.now()).isEmpty());
+        assertEquals(watched - 1, runawayTimerWatchdog.getWatchedCount());
+    }
+
+    @Test
+    void testMaximumOfTheTaskComesBeforeItsUsers() {
+        jdbcTemplate.update("UPDATE tasks SET max_segment_minutes = 10 WHERE id = ?", task.getId());
+        taskService.startTask(task.getId());
+
+        startedMinutesAgo(2);
+        runawayTimerWatchdog.tick();
+
+        assertEquals(TaskState.ONGOING, taskService.getTask(task.getId()).getCurrentState());
+    }
+
+    @Test
+    void testOnlyTheExpiringSegmentIsStopped() {
+        TaskTransition first = taskService.startTask(task.getId());
+        taskService.stopTask(task.getId());
+        TaskTransition second = taskService.startTask(task.getId());
+
+        assertTrue(taskService.stopRunawaySegment(task.getId(), first.getStartTime(),
+                first.getStartTime().plus(Duration.ofMinutes(1))).isEmpty());
+
+        assertEquals(TaskState.ONGOING, taskService.getTask(task.getId()).getCurrentState());
+        assertEquals(second.getStartTime(), activeTimerRegistry.getRunningTimers().stream()
+                .filter(timer -> timer.getTaskId().equals(task.getId()))
+                .findFirst().orElseThrow().getOpenSegmentStart());
+    }
+
+    /**
+     * Moves the open segment of the task back in time behind the registry's back, then reconciles the registry,
+     * which hands it to the watchdog.
+     *
+     * @return the new start of the segment
+     */
+    private LocalDateTime startedMinutesAgo(int minutes) {
+        jdbcTemplate.update("UPDATE time_logs SET start_time = start_time - make_interval(mins => ?) " +
+                "WHERE task_id = ? AND end_time IS NULL", minutes, task.getId());
+        jdbcTemplate.update("UPDATE tasks SET open_segment_start = open_segment_start - make_interval(mins => ?), " +
+                "version = version + 1 WHERE id = ?", minutes, task.getId());
+        activeTimerRegistry.reconcile();
+        return jdbcTemplate.queryForObject("SELECT open_segment_start FROM tasks WHERE id = ?", LocalDateTime.class,
+                task.getId());
+    }
+}
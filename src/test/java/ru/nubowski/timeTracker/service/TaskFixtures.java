@@ -0,0 +1,66 @@
+package ru.nubowski.timeTracker.service;
+
+import org.springframework.boot.test.context.TestComponent;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TaskState;
+import ru.nubowski.timeTracker.model.TimeLog;
+import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.service.impl.TaskService;
+import ru.nubowski.timeTracker.service.impl.UserService;
+
+import java.time.LocalDateTime;
+
+/**
+ * Saves the users and tasks the service tests work on, and builds their time logs.
+ * Imported by the tests that need it.
+ */
+@TestComponent
+public class TaskFixtures {
+    private final UserService userService;
+    private final TaskService taskService;
+
+    /**
+     * Constructor for TaskFixtures.
+     *
+     * @param userService service saving the users
+     * @param taskService service saving the tasks
+     */
+    public TaskFixtures(UserService userService, TaskService taskService) {
+        this.userService = userService;
+        this.taskService = taskService;
+    }
+
+    /**
+     * Saves a new user and a task of theirs.
+     *
+     * @param username the username of the new user
+     * @param taskName the name of the task
+     * @return the saved task
+     */
+    public Task saveTask(String username, String taskName) {
+        User user = new User();
+        user.setUsername(username);
+        user = userService.saveUser(user);
+        Task task = new Task();
+        task.setName(taskName);
+        task.setUser(user);
+        return taskService.saveTask(task);
+    }
+
+    /**
+     * Builds an unsaved time log of the task, stopped by its user if it has an end and ongoing otherwise.
+     *
+     * @param task the task
+     * @param start the start time
+     * @param end the end time, null for an ongoing time log
+     * @return the time log
+     */
+    public static TimeLog timeLog(Task task, LocalDateTime start, LocalDateTime end) {
+        TimeLog timeLog = new TimeLog();
+        timeLog.setTask(task);
+        timeLog.setStartTime(start);
+        timeLog.setEndTime(end);
+        timeLog.setTaskState(end != null ? TaskState.USER_STOPPED : TaskState.ONGOING);
+        return timeLog;
+    }
+}
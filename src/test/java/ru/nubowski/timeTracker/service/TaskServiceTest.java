@@ -5,10 +5,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import ru.nubowski.timeTracker.dto.TaskTotals;
+import ru.nubowski.timeTracker.dto.TaskTransition;
+import ru.nubowski.timeTracker.exception.ConcurrentTransitionException;
 import ru.nubowski.timeTracker.exception.TaskNotFoundException;
 import ru.nubowski.timeTracker.model.Task;
 import ru.nubowski.timeTracker.repository.TaskRepository;
+import ru.nubowski.timeTracker.repository.TimeLogRepository;
 import ru.nubowski.timeTracker.service.impl.TaskService;
 
 import java.time.LocalDateTime;
@@ -28,6 +33,9 @@ public class TaskServiceTest {
     @MockBean
     private TaskRepository taskRepository;
 
+    @MockBean
+    private TimeLogRepository timeLogRepository;
+
     @Autowired // another way is @BeforeEach and constructor injection
     private TaskService taskService;
 
@@ -85,18 +93,43 @@ public class TaskServiceTest {
 
     @Test
     void testDeleteTask() {
-        doNothing().when(taskRepository).deleteById(any());
+        when(taskRepository.deleteReturningUserId(1L)).thenReturn(Optional.of(2L));
         taskService.deleteTask(1L);
-        verify(taskRepository, times(1)).deleteById(any());
+        verify(taskRepository, times(1)).deleteReturningUserId(1L);
+        verify(taskRepository, never()).findById(any()); // neither the task nor its time logs are loaded
     }
 
     @Test
     void testDeleteOldTask () {
-        Task oldTask = new Task();
-        oldTask.setCreatedAt(LocalDateTime.now().minusDays(2));
-        when(taskRepository.findByCreatedAtBefore(any(LocalDateTime.class))).thenReturn(List.of(oldTask));
+        List<Long> oldTaskIds = List.of(-1L);
+        when(taskRepository.findIdsCreatedBefore(any(LocalDateTime.class), anyInt())).thenReturn(oldTaskIds);
+        when(taskRepository.deleteByIds(anyCollection())).thenReturn(oldTaskIds.size());
 
         taskService.deleteOldTasks(LocalDateTime.now().minusDays(1));
-        verify(taskRepository, times(1)).deleteAll(anyList());
+        verify(taskRepository, times(1)).deleteByIds(oldTaskIds); // one chunk, smaller than chunk size
+        verify(taskRepository, never()).deleteAll(anyList());
+    }
+
+    @Test
+    void testStartTaskRetriesLockFailures() {
+        TaskTransition started = mock(TaskTransition.class);
+        when(started.getTaskId()).thenReturn(1L);
+        when(timeLogRepository.startSegment(eq(1L), any(LocalDateTime.class)))
+                .thenThrow(new CannotAcquireLockException("deadlock detected"))
+                .thenReturn(Optional.of(started));
+
+        assertThat(taskService.startTask(1L)).isSameAs(started);
+        verify(timeLogRepository, times(2)).startSegment(eq(1L), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testStartTaskGivesUpAfterRepeatedLockFailures() {
+        when(timeLogRepository.startSegment(eq(1L), any(LocalDateTime.class)))
+                .thenThrow(new CannotAcquireLockException("deadlock detected"));
+        when(taskRepository.findTotalsById(1L)).thenReturn(Optional.of(mock(TaskTotals.class)));
+
+        assertThatThrownBy(() -> taskService.startTask(1L))
+                .isInstanceOf(ConcurrentTransitionException.class);
+        verify(timeLogRepository, times(TaskService.MAX_TRANSITION_ATTEMPTS)).startSegment(eq(1L), any(LocalDateTime.class));
     }
 }
@@ -0,0 +1,190 @@
+package ru.nubowski.timeTracker.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+import ru.nubowski.timeTracker.dto.TaskTotals;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TimeLog;
+import ru.nubowski.timeTracker.repository.TaskRepository;
+import ru.nubowski.timeTracker.repository.TimeLogRepository;
+import ru.nubowski.timeTracker.service.impl.TaskService;
+import ru.nubowski.timeTracker.service.impl.TaskTotalsService;
+import ru.nubowski.timeTracker.service.impl.TimeLogService;
+import ru.nubowski.timeTracker.service.impl.UserService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.nubowski.timeTracker.service.TaskFixtures.timeLog;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Import(TaskFixtures.class)
+@TestPropertySource(properties = "totals.cronExpression=-") // disabled, a scheduled run would race the direct calls below
+public class TaskTotalsServiceTest {
+    @Autowired
+    private TaskFixtures taskFixtures;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TaskService taskService;
+    @Autowired
+    private TimeLogService timeLogService;
+    @Autowired
+    private TaskTotalsService taskTotalsService;
+    @Autowired
+    private TaskRepository taskRepository;
+    @Autowired
+    private TimeLogRepository timeLogRepository;
+    @Autowired
+    private ProcessService processService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Transactional
+    @Test
+    void testStartPauseResumeStopKeepTotals() {
+        Task task = taskFixtures.saveTask("totalsFlowUser", "totalsTask");
+
+        taskService.startTask(task.getId());
+        assertNotNull(totals(task).getOpenSegmentStart());
+        taskService.pauseTask(task.getId());
+        assertNull(totals(task).getOpenSegmentStart());
+        taskService.resumeTask(task.getId());
+        taskService.stopTask(task.getId());
+
+        assertEquals(0, taskRepository.findTotalsMismatches().stream()
+                .filter(mismatch -> mismatch.getTaskId().equals(task.getId())).count());
+        assertNull(totals(task).getOpenSegmentStart());
+    }
+
+    @Transactional
+    @Test
+    void testElapsedFromTotals() {
+        Task task = taskFixtures.saveTask("totalsElapsedUser", "totalsTask");
+        timeLogService.saveTimeLog(timeLog(task, LocalDateTime.of(2023, 3, 10, 9, 0), LocalDateTime.of(2023, 3, 10, 10, 0)));
+        TimeLog edited = timeLogService.saveTimeLog(timeLog(task, LocalDateTime.of(2023, 3, 10, 11, 0), LocalDateTime.of(2023, 3, 10, 11, 30)));
+        edited.setEndTime(LocalDateTime.of(2023, 3, 10, 11, 45));
+        timeLogService.saveTimeLog(edited);
+        LocalDateTime openStart = LocalDateTime.of(2023, 3, 10, 12, 0);
+        timeLogService.saveTimeLog(timeLog(task, openStart, null));
+
+        assertEquals(Duration.ofMinutes(60 + 45), Duration.ofMillis(totals(task).getClosedMillis()));
+        assertEquals(Duration.ofMinutes(60 + 45 + 30), taskTotalsService.getElapsed(task.getId(), openStart.plusMinutes(30)));
+    }
+
+    @Transactional
+    @Test
+    void testAutoStopClosesOpenSegment() {
+        Task task = taskFixtures.saveTask("totalsAutoStopUser", "totalsTask");
+        timeLogService.saveTimeLog(timeLog(task, LocalDateTime.of(2023, 4, 1, 23, 0), null));
+
+        timeLogRepository.autoStopOngoingChunk(LocalDateTime.of(2023, 4, 2, 1, 0), 1000);
+
+        assertNull(totals(task).getOpenSegmentStart());
+        assertEquals(Duration.ofHours(2), Duration.ofMillis(totals(task).getClosedMillis()));
+        assertEquals("AUTO_STOPPED", currentState(task));
+    }
+
+    @Transactional
+    @Test
+    void testVerifyRepairsMismatchingTotals() {
+        Task task = taskFixtures.saveTask("totalsRepairUser", "totalsTask");
+        timeLogService.saveTimeLog(timeLog(task, LocalDateTime.of(2023, 3, 10, 9, 0), LocalDateTime.of(2023, 3, 10, 10, 0)));
+        jdbcTemplate.update("UPDATE tasks SET closed_millis = 1, open_segment_start = ?, current_state = 'ONGOING' WHERE id = ?",
+                LocalDateTime.of(2023, 3, 10, 12, 0), task.getId());
+
+        assertTrue(taskTotalsService.verifyTotals() >= 1);
+
+        assertEquals(Duration.ofHours(1).toMillis(), totals(task).getClosedMillis());
+        assertNull(totals(task).getOpenSegmentStart());
+        assertEquals("USER_STOPPED", currentState(task));
+    }
+
+    @Transactional
+    @Test
+    void testCurrentStateFollowsTransitionsAndEdits() {
+        Task task = taskFixtures.saveTask("totalsCurrentStateUser", "totalsTask");
+        assertNull(currentState(task));
+
+        taskService.startTask(task.getId());
+        assertEquals("ONGOING", currentState(task));
+        taskService.pauseTask(task.getId());
+        assertEquals("PAUSED", currentState(task));
+        taskService.resumeTask(task.getId());
+        Long resumedLogId = jdbcTemplate.queryForObject("SELECT current_log_id FROM tasks WHERE id = ?", Long.class, task.getId());
+        assertEquals("ONGOING", timeLogService.getTimeLog(resumedLogId).getTaskState().name());
+        taskService.stopTask(task.getId());
+        assertEquals("USER_STOPPED", currentState(task));
+
+        timeLogService.deleteTimeLog(resumedLogId);
+        assertEquals("USER_STOPPED", currentState(task)); // the paused one, tagged USER_STOPPED on resume
+        String dailyEfforts = "SELECT COUNT(*) FROM daily_effort WHERE task_id = ?";
+        assertTrue(jdbcTemplate.queryForObject(dailyEfforts, Integer.class, task.getId()) > 0);
+        timeLogService.deleteTimeLogsByTask(task);
+        assertNull(currentState(task));
+        assertEquals(0, jdbcTemplate.queryForObject(dailyEfforts, Integer.class, task.getId()));
+    }
+
+    @Test
+    void testCleanupKeepsTotals() {
+        createPartition(YearMonth.of(2000, 1));
+        createPartition(YearMonth.of(2000, 2));
+        Task kept = taskFixtures.saveTask("totalsCleanupKeptUser", "totalsTask");
+        Task reopened = taskFixtures.saveTask("totalsCleanupOpenUser", "totalsTask");
+        Task emptied = taskFixtures.saveTask("totalsCleanupEmptiedUser", "totalsTask");
+        try {
+            timeLogService.saveTimeLog(timeLog(kept, LocalDateTime.of(2000, 1, 10, 9, 0), LocalDateTime.of(2000, 1, 10, 10, 0)));
+            timeLogService.saveTimeLog(timeLog(kept, LocalDateTime.of(2000, 2, 10, 9, 0), LocalDateTime.of(2000, 2, 10, 9, 30)));
+            timeLogService.saveTimeLog(timeLog(kept, LocalDateTime.of(2000, 2, 20, 9, 0), LocalDateTime.of(2000, 2, 20, 9, 15)));
+            timeLogService.saveTimeLog(timeLog(reopened, LocalDateTime.of(2000, 2, 1, 9, 0), null));
+            timeLogService.saveTimeLog(timeLog(reopened, LocalDateTime.of(2000, 2, 20, 9, 0), LocalDateTime.of(2000, 2, 20, 10, 0)));
+            timeLogService.saveTimeLog(timeLog(emptied, LocalDateTime.of(2000, 1, 20, 9, 0), LocalDateTime.of(2000, 1, 20, 10, 0)));
+            timeLogService.saveTimeLog(timeLog(emptied, LocalDateTime.of(2000, 2, 1, 9, 0), null));
+
+            // January is dropped with its partition, February up to the 15th deleted row by row
+            timeLogService.deleteOldTimeLogs(LocalDateTime.of(2000, 2, 15, 0, 0));
+
+            assertEquals(0, taskTotalsService.verifyTotals());
+            assertEquals(Duration.ofMinutes(15).toMillis(), totals(kept).getClosedMillis());
+            assertNull(totals(reopened).getOpenSegmentStart());
+            assertEquals(Duration.ofHours(1).toMillis(), totals(reopened).getClosedMillis());
+            assertEquals("USER_STOPPED", currentState(reopened));
+            assertEquals(0, totals(emptied).getClosedMillis());
+            assertNull(totals(emptied).getOpenSegmentStart());
+            assertNull(currentState(emptied));
+        } finally {
+            processService.deleteTimeLogsAndTasks("totalsCleanupKeptUser");
+            processService.deleteTimeLogsAndTasks("totalsCleanupOpenUser");
+            processService.deleteTimeLogsAndTasks("totalsCleanupEmptiedUser");
+            userService.deleteUser("totalsCleanupKeptUser");
+            userService.deleteUser("totalsCleanupOpenUser");
+            userService.deleteUser("totalsCleanupEmptiedUser");
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + PartitionMaintenanceService.partitionName(YearMonth.of(2000, 1)));
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + PartitionMaintenanceService.partitionName(YearMonth.of(2000, 2)));
+        }
+    }
+
+    private void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + PartitionMaintenanceService.partitionName(month) +
+                " PARTITION OF time_logs FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    private String currentState(Task task) {
+        taskRepository.flush();
+        return jdbcTemplate.queryForObject("SELECT current_state FROM tasks WHERE id = ?", String.class, task.getId());
+    }
+
+    private TaskTotals totals(Task task) {
+        return taskRepository.findTotalsById(task.getId()).orElseThrow();
+    }
+}
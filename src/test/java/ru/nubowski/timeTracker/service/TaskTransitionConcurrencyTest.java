@@ -0,0 +1,196 @@
+package ru.nubowski.timeTracker.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.nubowski.timeTracker.exception.ConcurrentTransitionException;
+import ru.nubowski.timeTracker.exception.OngoingTaskNotFoundException;
+import ru.nubowski.timeTracker.exception.TaskAlreadyStartedException;
+import ru.nubowski.timeTracker.model.Task;
+import ru.nubowski.timeTracker.model.TaskState;
+import ru.nubowski.timeTracker.model.TimeLog;
+import ru.nubowski.timeTracker.model.User;
+import ru.nubowski.timeTracker.repository.TimeLogRepository;
+import ru.nubowski.timeTracker.service.impl.TaskService;
+import ru.nubowski.timeTracker.service.impl.TimeLogService;
+import ru.nubowski.timeTracker.service.impl.UserService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class TaskTransitionConcurrencyTest {
+    private static final String USERNAME = "concurrentTransitionUser";
+    private static final int THREADS = 8;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TaskService taskService;
+    @Autowired
+    private TimeLogService timeLogService;
+    @Autowired
+    private ProcessService processService;
+    @Autowired
+    private TimeLogRepository timeLogRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Task task;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername(USERNAME);
+        user = userService.saveUser(user);
+        task = new Task();
+        task.setName("concurrentTask");
+        task.setUser(user);
+        task = taskService.saveTask(task);
+    }
+
+    @AfterEach
+    void tearDown() {
+        processService.deleteTimeLogsAndTasks(USERNAME);
+        userService.deleteUser(USERNAME);
+    }
+
+    @Test
+    void testConcurrentTransitionsOpenOneSegment() throws Exception {
+        assertEquals(1, race(taskService::startTask, TaskAlreadyStartedException.class));
+        assertEquals(1, openLogs());
+
+        assertEquals(1, race(taskService::pauseTask, OngoingTaskNotFoundException.class));
+        assertEquals(0, openLogs());
+
+        assertEquals(1, race(taskService::resumeTask, OngoingTaskNotFoundException.class));
+        assertEquals(1, openLogs());
+        assertEquals(0, timeLogService.getAllTimeLogsForTask(task).stream()
+                .filter(timeLog -> timeLog.getTaskState() == TaskState.PAUSED).count());
+
+        assertEquals(1, race(taskService::stopTask, OngoingTaskNotFoundException.class));
+        assertEquals(0, openLogs());
+        assertEquals(2, timeLogService.getAllTimeLogsForTask(task).size());
+    }
+
+    @Test
+    void testStopWaitsForAutoStopChunkInFlight() throws Exception {
+        taskService.startTask(task.getId());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch chunkDone = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        try {
+            Future<Integer> autoStop = executor.submit(() -> transactionTemplate.execute(status -> {
+                int stopped = timeLogRepository.autoStopOngoingChunk(LocalDateTime.now(), 1000);
+                chunkDone.countDown();
+                await(commit);
+                return stopped;
+            }));
+            assertTrue(chunkDone.await(10, TimeUnit.SECONDS));
+            Future<?> stop = executor.submit(() -> taskService.stopTask(task.getId()));
+            Thread.sleep(200);
+            assertFalse(stop.isDone()); // waiting for the lock of the task row, held by the chunk
+
+            commit.countDown();
+            assertTrue(autoStop.get(10, TimeUnit.SECONDS) >= 1);
+            Exception failure = assertThrows(Exception.class, () -> stop.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(OngoingTaskNotFoundException.class, failure.getCause());
+        } finally {
+            commit.countDown();
+            executor.shutdown();
+        }
+        assertEquals(TaskState.AUTO_STOPPED, taskService.getTask(task.getId()).getCurrentState());
+        assertEquals(0, openLogs());
+    }
+
+    @Test
+    void testAutoStopChunkWaitsForStopInFlight() throws Exception {
+        taskService.startTask(task.getId());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch stopDone = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        try {
+            Future<?> stop = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                taskService.stopTask(task.getId());
+                stopDone.countDown();
+                await(commit);
+            }));
+            assertTrue(stopDone.await(10, TimeUnit.SECONDS));
+            Future<Integer> autoStop = executor.submit(() -> transactionTemplate.execute(
+                    status -> timeLogRepository.autoStopOngoingChunk(LocalDateTime.now(), 1000)));
+            Thread.sleep(200);
+            assertFalse(autoStop.isDone()); // waiting for the lock of the task row, held by the stop
+
+            commit.countDown();
+            stop.get(10, TimeUnit.SECONDS);
+            autoStop.get(10, TimeUnit.SECONDS);
+        } finally {
+            commit.countDown();
+            executor.shutdown();
+        }
+        assertEquals(TaskState.USER_STOPPED, taskService.getTask(task.getId()).getCurrentState());
+        assertEquals(0, openLogs());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Runs the transition from all threads at once, returns how many succeeded. The others must be rejected.
+     */
+    private int race(LongFunction<?> transition, Class<? extends RuntimeException> rejected) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                Callable<Boolean> attempt = () -> {
+                    ready.await();
+                    try {
+                        transition.apply(task.getId());
+                        return true;
+                    } catch (ConcurrentTransitionException e) {
+                        return false;
+                    } catch (RuntimeException e) {
+                        assertInstanceOf(rejected, e);
+                        return false;
+                    }
+                };
+                results.add(executor.submit(attempt));
+            }
+            ready.countDown();
+            int succeeded = 0;
+            for (Future<Boolean> result : results) {
+                succeeded += result.get() ? 1 : 0;
+            }
+            return succeeded;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private long openLogs() {
+        return timeLogService.getAllTimeLogsForTask(task).stream().map(TimeLog::getEndTime).filter(end -> end == null).count();
+    }
+}
@@ -2,17 +2,25 @@ package ru.nubowski.timeTracker.service;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import ru.nubowski.timeTracker.dto.TimeLogCursor;
+import ru.nubowski.timeTracker.exception.InvalidCursorException;
 import ru.nubowski.timeTracker.exception.TimeLogNotFoundException;
 import ru.nubowski.timeTracker.model.Task;
 import ru.nubowski.timeTracker.model.TimeLog;
 import ru.nubowski.timeTracker.repository.TimeLogRepository;
 import ru.nubowski.timeTracker.service.impl.TimeLogService;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -92,4 +100,80 @@ public class TimeLogServiceTest {
         timeLogService.deleteTimeLog(1L);
         verify(timeLogRepository, times(1)).deleteById(anyLong());
     }
+
+    @Test
+    void testGetTimeLogsPageFirstPage() {
+        when(timeLogRepository.findFirstPage(anyInt())).thenReturn(List.of());
+
+        timeLogService.getTimeLogsPage(null, 5000);
+
+        verify(timeLogRepository, times(1)).findFirstPage(TimeLogService.MAX_PAGE_SIZE); // clamped
+        verify(timeLogRepository, never()).findPageAfter(any(), any(), anyInt());
+    }
+
+    @Test
+    void testGetTimeLogsPageAfterCursor() {
+        TimeLog last = new TimeLog();
+        last.setId(42L);
+        last.setStartTime(LocalDateTime.of(2023, 6, 15, 10, 30));
+        TimeLogCursor cursor = TimeLogCursor.decode(TimeLogCursor.after(last).encode());
+        when(timeLogRepository.findPageAfter(any(), any(), anyInt())).thenReturn(List.of());
+
+        timeLogService.getTimeLogsPage(cursor, 10);
+
+        verify(timeLogRepository, times(1)).findPageAfter(last.getStartTime(), 42L, 10);
+    }
+
+    @Test
+    void testInvalidCursor() {
+        assertThrows(InvalidCursorException.class, () -> TimeLogCursor.decode("not a cursor"));
+    }
+
+    @Test
+    void testAutoEndTasksInChunks() {
+        when(timeLogRepository.autoStopOngoingChunk(any(LocalDateTime.class), anyInt()))
+                .thenReturn(TimeLogService.AUTO_STOP_CHUNK_SIZE, 3);
+
+        long stopped = timeLogService.autoEndTasks();
+
+        assertEquals(TimeLogService.AUTO_STOP_CHUNK_SIZE + 3, stopped);
+        verify(timeLogRepository, times(2)).autoStopOngoingChunk(any(LocalDateTime.class), eq(TimeLogService.AUTO_STOP_CHUNK_SIZE));
+        verify(timeLogRepository, never()).save(any(TimeLog.class));
+    }
+
+    @Test
+    void testAutoEndTasksAtEndOfDayStopsTheEndedDaysOfEachTimeZone() {
+        String dueZone = ZoneOffset.ofTotalSeconds(secondsTo(LocalTime.of(23, 52))).getId();
+        String otherZone = ZoneOffset.ofTotalSeconds(secondsTo(LocalTime.of(11, 52))).getId();
+        String serverZone = ZoneId.systemDefault().getId();
+        when(timeLogRepository.findOngoingTimeZones(anyString())).thenReturn(List.of(dueZone, otherZone, "Not/AZone"));
+        when(timeLogRepository.autoStopOngoingChunkInZone(any(LocalDateTime.class), anyString(), anyString(), anyInt()))
+                .thenReturn(2);
+
+        LocalDateTime before = LocalDateTime.now();
+        assertEquals(4, timeLogService.autoEndTasksAtEndOfDay());
+        LocalDateTime after = LocalDateTime.now();
+
+        ArgumentCaptor<LocalDateTime> end = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(timeLogRepository).autoStopOngoingChunkInZone(end.capture(), eq(dueZone), eq(serverZone),
+                eq(TimeLogService.AUTO_STOP_CHUNK_SIZE));
+        // within the window, now
+        assertFalse(end.getValue().isBefore(before) || end.getValue().isAfter(after), "ended at " + end.getValue());
+        verify(timeLogRepository).autoStopOngoingChunkInZone(end.capture(), eq(otherZone), eq(serverZone),
+                eq(TimeLogService.AUTO_STOP_CHUNK_SIZE));
+        long sinceMidnight = Duration.between(end.getValue(), before).toMinutes(); // the run is hours late, ended at midnight
+        assertTrue(Math.abs(sinceMidnight - (11 * 60 + 52)) <= 1, "ended at " + end.getValue());
+        verify(timeLogRepository, times(2)).autoStopOngoingChunkInZone(any(LocalDateTime.class), anyString(), anyString(),
+                anyInt());
+        verify(timeLogRepository, never()).autoStopOngoingChunk(any(LocalDateTime.class), anyInt());
+    }
+
+    /**
+     * The offset of a time zone whose local time is the given one right now, within a day around UTC.
+     */
+    private static int secondsTo(LocalTime localTime) {
+        long seconds = Duration.between(LocalTime.now(ZoneOffset.UTC), localTime).getSeconds();
+        long halfDay = Duration.ofHours(12).getSeconds();
+        return (int) (seconds > halfDay ? seconds - 2 * halfDay : seconds < -halfDay ? seconds + 2 * halfDay : seconds);
+    }
 }
@@ -1,11 +1,14 @@
 package ru.nubowski.timeTracker.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import ru.nubowski.timeTracker.config.CleanupProperties;
+import ru.nubowski.timeTracker.exception.CleanupFailedException;
 import ru.nubowski.timeTracker.exception.UserNotFoundException;
 import ru.nubowski.timeTracker.model.User;
 import ru.nubowski.timeTracker.repository.UserRepository;
@@ -15,6 +18,7 @@ import ru.nubowski.timeTracker.service.impl.UserService;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -38,6 +42,10 @@ public class UserServiceTest {
 
     @Autowired
     private UserService userService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private CleanupProperties cleanupProperties;
 
     @Test
     void testGetAllUsers() {
@@ -129,14 +137,88 @@ public class UserServiceTest {
     @Test
     void testDeleteOldUsers() {
         LocalDateTime cutoff = LocalDateTime.now().minusDays(1);
-        User oldUser1 = new User();
-        oldUser1.setUsername("old1");
-        User oldUser2 = new User();
-        oldUser2.setUsername("old2");
-        when(userRepository.findByCreatedAtBefore(any(LocalDateTime.class))).thenReturn(Arrays.asList(oldUser1, oldUser2));
-        when(userRepository.findByUsername("old1")).thenReturn(Optional.of(oldUser1));
-        when(userRepository.findByUsername("old2")).thenReturn(Optional.of(oldUser2));
+        List<Long> oldUserIds = Arrays.asList(-1L, -2L);
+        when(userRepository.findIdsCreatedBefore(any(LocalDateTime.class), anyLong(), anyInt())).thenReturn(oldUserIds);
+        when(userRepository.deleteByIds(anyCollection())).thenReturn(oldUserIds.size());
         processService.deleteOldUsers(cutoff);
-        verify(userRepository, times(1)).deleteAll(Arrays.asList(oldUser1, oldUser2));
+        verify(userRepository, times(1)).deleteByIds(oldUserIds);
+        verify(userRepository, never()).findByUsername(anyString()); // no per user round trips anymore
+    }
+
+    @Test
+    void testGetUserIsCachedUntilSaved() {
+        User user = new User();
+        user.setId(42L);
+        user.setUsername("cachedUser");
+        user.setEmail("cached@test.com");
+        when(userRepository.findByUsername("cachedUser")).thenReturn(Optional.of(user));
+        double hits = cacheGets("hit");
+
+        assertEquals("cached@test.com", userService.getUser("cachedUser").getEmail());
+        assertTrue(userService.userIsPresent("cachedUser"));
+        assertEquals(42L, userService.getUserByUsernameNotOptional("cachedUser").getId());
+        verify(userRepository, times(1)).findByUsername("cachedUser");
+        assertEquals(hits + 2, cacheGets("hit"));
+
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        User update = new User();
+        update.setUsername("cachedUser");
+        update.setEmail("changed@test.com");
+        userService.saveUser(update);
+
+        assertEquals("changed@test.com", userService.getUser("cachedUser").getEmail());
+        assertNotSame(userService.getUser("cachedUser"), userService.getUser("cachedUser")); // copies, never shared
+    }
+
+    @Test
+    void testMissingUserIsNotCached() {
+        when(userRepository.findByUsername("notYetUser")).thenReturn(Optional.empty());
+        assertFalse(userService.userIsPresent("notYetUser"));
+
+        User user = new User();
+        user.setUsername("notYetUser");
+        when(userRepository.findByUsername("notYetUser")).thenReturn(Optional.of(user));
+        assertTrue(userService.userIsPresent("notYetUser"));
+    }
+
+    @Test
+    void testDeleteOldUsersEvictsThem() {
+        User user = new User();
+        user.setId(-3L);
+        user.setUsername("oldCachedUser");
+        when(userRepository.findByUsername("oldCachedUser")).thenReturn(Optional.of(user));
+        userService.getUser("oldCachedUser");
+        when(userRepository.findIdsCreatedBefore(any(LocalDateTime.class), anyLong(), anyInt())).thenReturn(List.of(-3L));
+        when(userRepository.deleteByIds(anyCollection())).thenReturn(1);
+
+        processService.deleteOldUsers(LocalDateTime.now());
+        when(userRepository.findByUsername("oldCachedUser")).thenReturn(Optional.empty());
+
+        assertFalse(userService.userIsPresent("oldCachedUser"));
+    }
+
+    @Test
+    void testDeleteOldUsersIsolatesFailingChunks() {
+        int chunkSize = cleanupProperties.getChunkSize();
+        cleanupProperties.setChunkSize(1);
+        try {
+            when(userRepository.findIdsCreatedBefore(any(LocalDateTime.class), eq(Long.MIN_VALUE), eq(1))).thenReturn(List.of(-3L));
+            when(userRepository.findIdsCreatedBefore(any(LocalDateTime.class), eq(-3L), eq(1))).thenReturn(List.of(-2L));
+            when(userRepository.findIdsCreatedBefore(any(LocalDateTime.class), eq(-2L), eq(1))).thenReturn(List.of(-1L));
+            when(userRepository.findIdsCreatedBefore(any(LocalDateTime.class), eq(-1L), eq(1))).thenReturn(List.of());
+            when(userRepository.deleteByIds(anyCollection())).thenReturn(1);
+            when(userRepository.deleteByIds(List.of(-2L))).thenThrow(new IllegalStateException("chunk failure"));
+
+            assertThrows(CleanupFailedException.class, () -> processService.deleteOldUsers(LocalDateTime.now()));
+            verify(userRepository, times(1)).deleteByIds(List.of(-3L));
+            verify(userRepository, times(1)).deleteByIds(List.of(-1L)); // the chunk after the failing one still ran
+        } finally {
+            cleanupProperties.setChunkSize(chunkSize);
+        }
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", UserService.USER_CACHE).tag("result", result)
+                .functionCounter().count();
     }
 }
@@ -0,0 +1,81 @@
+package ru.nubowski.timeTracker.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HierarchicalTimingWheelTest {
+    private static final long START = 1_700_000_000_000L;
+    private HierarchicalTimingWheel<Long> wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new HierarchicalTimingWheel<>(1000, 8, 2, START); // 64 seconds before the overflow
+    }
+
+    @Test
+    void testKeyExpiresAtItsDeadlineNotBefore() {
+        wheel.schedule(1L, START + 2500);
+        assertEquals(List.of(), wheel.advance(START + 2999));
+        assertTrue(wheel.isScheduled(1L));
+        assertEquals(List.of(1L), wheel.advance(START + 3000));
+        assertFalse(wheel.isScheduled(1L));
+        assertEquals(List.of(), wheel.advance(START + 10_000));
+    }
+
+    @Test
+    void testKeysCascadeFromHigherLevelsAndTheOverflow() {
+        wheel.schedule(1L, START + 20_000); // level 1
+        wheel.schedule(2L, START + 200_000); // overflow
+        wheel.schedule(3L, START + 5_000); // level 0
+        assertEquals(List.of(3L), wheel.advance(START + 19_000));
+        assertEquals(List.of(1L), wheel.advance(START + 20_000));
+        assertEquals(List.of(), wheel.advance(START + 199_000));
+        assertEquals(List.of(2L), wheel.advance(START + 200_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testRescheduleAndCancel() {
+        wheel.schedule(1L, START + 5_000);
+        wheel.schedule(2L, START + 5_000);
+        wheel.schedule(1L, START + 30_000);
+        assertTrue(wheel.cancel(2L));
+        assertFalse(wheel.cancel(2L));
+        assertEquals(List.of(), wheel.advance(START + 29_000));
+        assertEquals(List.of(1L), wheel.advance(START + 30_000));
+    }
+
+    @Test
+    void testPastDeadlineExpiresAtNextAdvance() {
+        wheel.advance(START + 10_000);
+        wheel.schedule(1L, START);
+        assertEquals(List.of(1L), wheel.advance(START + 10_000));
+        wheel.schedule(2L, START + 12_000);
+        assertEquals(List.of(), wheel.advance(START)); // going back in time
+        assertEquals(List.of(2L), wheel.advance(START + 12_000));
+    }
+
+    @Test
+    void testRandomDeadlinesExpireInTheTickOfTheirDeadline() {
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (long key = 0; key < 500; key++) {
+            long deadline = START + random.nextInt(300_000);
+            deadlines.add(deadline);
+            wheel.schedule(key, deadline);
+        }
+        for (long now = START; now <= START + 301_000; now += 1000) {
+            for (Long key : wheel.advance(now)) {
+                long deadline = deadlines.get(key.intValue());
+                assertTrue(deadline <= now && now - deadline < 1000, "key " + key + " expired at " + now);
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+}